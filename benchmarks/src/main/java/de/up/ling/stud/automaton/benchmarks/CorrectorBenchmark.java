@@ -0,0 +1,77 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.Corrector;
+import de.up.ling.stud.automaton.ResultBuffer;
+import de.up.ling.stud.automaton.StringTrieView;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the correction of a word in a trigram context without a cache.
+ * The Corrector raises its threshold until it finds enough candidates, so
+ * the threshold is controlled by the number of typing errors in the words:
+ * With 0 errors, all words are known and only their neighbours at a distance
+ * of 1 are searched. With more errors, all words are unknown and higher
+ * thresholds are reached.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorrectorBenchmark {
+
+    @Param({"0", "1", "2", "3"})
+    public int errors;
+    private Corrector corrector;
+    private ResultBuffer result;
+    private String[][] contexts;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringTrieView data = Fixtures.model(3);
+        corrector = new Corrector(data);
+        result = new ResultBuffer(5);
+        List<List<String>> sentences = Fixtures.corpus().sentences(256, Fixtures.wordsPerLine);
+        Random random = new Random(42);
+        Misspeller misspeller = new Misspeller(42);
+        contexts = new String[256][];
+        for (int i = 0; i < contexts.length; i++) {
+            List<String> sentence = sentences.get(i);
+            int end = 2 + random.nextInt(sentence.size() - 2);
+            String word = sentence.get(end);
+            if (errors > 0) {
+                String misspelled;
+                do {
+                    misspelled = misspeller.misspell(word, errors);
+                } while (misspelled.isEmpty() || data.contains(misspelled));
+                word = misspelled;
+            }
+            contexts[i] = new String[]{sentence.get(end - 2), sentence.get(end - 1), word};
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public int correctWordInContext() {
+        next = (next + 1) & (contexts.length - 1);
+        return corrector.correctWordInContext(contexts[next], result);
+    }
+}
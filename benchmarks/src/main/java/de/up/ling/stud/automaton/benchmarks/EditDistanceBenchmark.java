@@ -0,0 +1,64 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.CutOffEditDistance;
+import de.up.ling.stud.automaton.EditDistance;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the edit distance and the cut-off edit distance between a word
+ * and a variant of it with every fourth symbol substituted.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditDistanceBenchmark {
+
+    @Param({"4", "8", "16", "32"})
+    public int wordLength;
+    @Param({"2"})
+    public int threshold;
+    private int[] word;
+    private int[] variant;
+    private EditDistance editDistance;
+    private CutOffEditDistance cutOffEditDistance;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        word = new int[wordLength];
+        variant = new int[wordLength];
+        for (int i = 0; i < wordLength; i++) {
+            word[i] = 1 + random.nextInt(26);
+            variant[i] = (i % 4 == 3) ? 1 + random.nextInt(26) : word[i];
+        }
+        editDistance = new EditDistance();
+        cutOffEditDistance = new CutOffEditDistance(new EditDistance());
+    }
+
+    @Benchmark
+    public int calcDistance() {
+        return editDistance.calcDistance(word, variant);
+    }
+
+    @Benchmark
+    public int calcCutOffDistance() {
+        return cutOffEditDistance.calcCutOffDistance(word, variant, threshold);
+    }
+}
@@ -0,0 +1,48 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.StringTrie;
+import de.up.ling.stud.automaton.StringTrieView;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The models for the benchmarks. They are learned from the same synthetic
+ * corpus on every run, so the benchmarks need no data files. Each model is
+ * only learned once per JVM.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class Fixtures {
+
+    static final long seed = 20140101L;
+    static final int vocabularySize = 20000;
+    static final int lines = 20000;
+    static final int wordsPerLine = 12;
+    private static final SyntheticCorpus corpus = new SyntheticCorpus(seed, vocabularySize);
+    private static final Map<Integer, StringTrieView> models = new HashMap<Integer, StringTrieView>();
+
+    private Fixtures() {
+    }
+
+    static SyntheticCorpus corpus() {
+        return corpus;
+    }
+
+    /**
+     * Returns the frozen model with the given n-gram size.
+     *
+     * @param nGram
+     * @return Model.
+     * @throws IOException
+     */
+    static synchronized StringTrieView model(int nGram) throws IOException {
+        StringTrieView ret = models.get(nGram);
+        if (ret == null) {
+            StringTrie data = corpus.train(lines, wordsPerLine, nGram);
+            ret = data.freeze();
+            models.put(nGram, ret);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,64 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.StringTrieView;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the back-off probability of the n-grams of the corpus in a model
+ * of the same order. The model is asked through StringTrieView, which passes
+ * the key directly to BackOffModelTrie.getProbability(int[]).
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageModelBenchmark {
+
+    @Param({"1", "2", "3"})
+    public int nGram;
+    private StringTrieView data;
+    private int[][] keys;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = Fixtures.model(nGram);
+        List<List<String>> sentences = Fixtures.corpus().sentences(256, Fixtures.wordsPerLine);
+        keys = new int[1024][];
+        int index = 0;
+        for (List<String> sentence : sentences) {
+            for (int end = nGram - 1; end < sentence.size() && index < keys.length; end++) {
+                // The word itself is in cell 0, the context follows in reversed order.
+                int[] key = new int[nGram];
+                for (int i = 0; i < nGram; i++) {
+                    key[i] = data.getWordID(sentence.get(end - i));
+                }
+                keys[index++] = key;
+            }
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public double getProbability() {
+        next = (next + 1) & (keys.length - 1);
+        return data.getBackOffProbability(keys[next]);
+    }
+}
@@ -0,0 +1,76 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.LexiconTrie;
+import de.up.ling.stud.automaton.StringTrieView;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookup of words in the lexicon. Known words are drawn from the
+ * lexicon, unknown words are misspelled versions of them.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexiconBenchmark {
+
+    @Param({"true", "false"})
+    public boolean known;
+    private LexiconTrie lexicon;
+    private int[][] words;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringTrieView data = Fixtures.model(2);
+        lexicon = data.getLexicon();
+        List<String> vocabulary = Fixtures.corpus().getVocabulary();
+        Random random = new Random(42);
+        Misspeller misspeller = new Misspeller(42);
+        words = new int[1024][];
+        for (int i = 0; i < words.length; i++) {
+            String word;
+            do {
+                // Rare words of the vocabulary may not occur in the corpus.
+                word = vocabulary.get(random.nextInt(vocabulary.size()));
+            } while (!data.contains(word));
+            if (!known) {
+                do {
+                    word = misspeller.misspell(word, 1);
+                } while (data.contains(word));
+            }
+            words[i] = data.encode(word);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        next = (next + 1) & (words.length - 1);
+        return lexicon.contains(words[next]);
+    }
+
+    @Benchmark
+    public int getID() {
+        next = (next + 1) & (words.length - 1);
+        return lexicon.getID(words[next]);
+    }
+}
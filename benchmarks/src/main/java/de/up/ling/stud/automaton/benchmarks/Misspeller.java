@@ -0,0 +1,72 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Applies random typing errors to words: a symbol is inserted, deleted,
+ * substituted or two neighbouring symbols are transposed. The errors only
+ * depend on the seed.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class Misspeller {
+
+    private static final String letters = "abcdefghijklmnopqrstuvwxyz\u00e4\u00f6\u00fc";
+    private final Random random;
+
+    /**
+     * Creates a generator for a seed.
+     *
+     * @param seed
+     */
+    public Misspeller(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Applies a number of random edits to a word. Edits can cancel each
+     * other out, and a transposition counts as two edits for the Levenshtein
+     * distance, so the distance to the original word can be smaller or larger
+     * than 'edits'.
+     *
+     * @param word
+     * @param edits
+     * @return The misspelled word.
+     */
+    public String misspell(String word, int edits) {
+        StringBuilder buf = new StringBuilder(word);
+        for (int i = 0; i < edits; i++) {
+            edit(buf);
+        }
+        return buf.toString();
+    }
+
+    // Applies a single random edit.
+    private void edit(StringBuilder buf) {
+        int kind = buf.length() < 2 ? random.nextInt(2) * 2 : random.nextInt(4);
+        switch (kind) {
+            case 0: // insertion
+                buf.insert(random.nextInt(buf.length() + 1), randomLetter());
+                break;
+            case 1: // deletion
+                buf.deleteCharAt(random.nextInt(buf.length()));
+                break;
+            case 2: // substitution
+                if (buf.length() == 0) {
+                    buf.append(randomLetter());
+                } else {
+                    buf.setCharAt(random.nextInt(buf.length()), randomLetter());
+                }
+                break;
+            default: // transposition
+                int position = random.nextInt(buf.length() - 1);
+                char first = buf.charAt(position);
+                buf.setCharAt(position, buf.charAt(position + 1));
+                buf.setCharAt(position + 1, first);
+        }
+    }
+
+    private char randomLetter() {
+        return letters.charAt(random.nextInt(letters.length()));
+    }
+}
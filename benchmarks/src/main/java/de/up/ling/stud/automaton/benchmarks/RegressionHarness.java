@@ -0,0 +1,303 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.CorrectionCache;
+import de.up.ling.stud.automaton.CorrectionSession;
+import de.up.ling.stud.automaton.Corrector;
+import de.up.ling.stud.automaton.ResultBuffer;
+import de.up.ling.stud.automaton.StringTrie;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end check of speed and quality. A model is learned from most lines
+ * of a corpus, every n-th line is held out. Random typing errors are put into
+ * the words of the held-out lines, which are then corrected like App does it
+ * for a file: with the same tokenizer, one CorrectionSession for the text and
+ * the best 5 candidates per word. The report is written as JSON:
+ *
+ * <pre>
+ * {"tokens": .., "misspelled": .., "seconds": .., "tokensPerSecond": ..,
+ *  "latencyMicros": {"p50": .., "p95": .., "p99": .., "max": ..},
+ *  "top1": .., "top5": .., "misspelledTop1": .., "misspelledTop5": .., ...}
+ * </pre>
+ *
+ * The accuracies are the shares of the tokens, whose original word is the best
+ * candidate (top1) or among the best five (top5). Runs with the same options
+ * and seed correct the same text, so their reports can be compared.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class RegressionHarness {
+
+    // The same tokenizer as in App.
+    private static final Pattern tokenizerPattern = Pattern.compile("[^\\p{L}]");
+    private String corpus = "";
+    private String encoding = "UTF-8";
+    private String output = "";
+    private int ngram = 3;
+    private int heldOut = 10;
+    private double errorRate = 0.1;
+    private int maxEdits = 1;
+    private long seed = 42;
+    private int generatedLines = 20000;
+    private int cacheSize = 100000;
+
+    /**
+     * Runs the harness.
+     *
+     * @param args See printInfo().
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        RegressionHarness harness = new RegressionHarness();
+        if (!harness.parseArguments(args)) {
+            printInfo();
+            System.exit(1);
+        }
+        String report = harness.run();
+        if (harness.output.equals("")) {
+            System.out.println(report);
+        } else {
+            Writer out = new OutputStreamWriter(new FileOutputStream(harness.output), "UTF-8");
+            out.write(report);
+            out.write('\n');
+            out.close();
+        }
+    }
+
+    /**
+     * Learns the model, corrects the held-out text and returns the report.
+     *
+     * @return The report as JSON.
+     * @throws IOException
+     */
+    public String run() throws IOException {
+        List<String> lines = readCorpus();
+        File training = File.createTempFile("training", ".txt");
+        List<String[]> testLines = new ArrayList<String[]>();
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(training), encoding));
+            for (int i = 0; i < lines.size(); i++) {
+                if (i % heldOut == heldOut - 1) {
+                    testLines.add(tokenizerPattern.split(lines.get(i)));
+                } else {
+                    out.write(lines.get(i));
+                    out.newLine();
+                }
+            }
+            out.close();
+
+            long start = System.nanoTime();
+            StringTrie data = new StringTrie(ngram);
+            data.putFile(training.getPath(), encoding);
+            data.postProcessing();
+            double trainingSeconds = (System.nanoTime() - start) / 1e9;
+            return correct(data, testLines, trainingSeconds);
+        } finally {
+            training.delete();
+        }
+    }
+
+    // Misspells and corrects the tokens of the held-out lines and builds the report.
+    private String correct(StringTrie data, List<String[]> testLines, double trainingSeconds) {
+        Corrector corrector = new Corrector(data);
+        if (cacheSize > 0) {
+            corrector.setCache(new CorrectionCache(cacheSize, cacheSize));
+        }
+        CorrectionSession session = new CorrectionSession(corrector, ngram);
+        ResultBuffer result = new ResultBuffer(5);
+        Random random = new Random(seed);
+        Misspeller misspeller = new Misspeller(seed);
+
+        long[] latencies = new long[1024];
+        int tokens = 0;
+        int misspelled = 0;
+        int top1 = 0;
+        int top5 = 0;
+        int misspelledTop1 = 0;
+        int misspelledTop5 = 0;
+        long start = System.nanoTime();
+        for (String[] tokenized : testLines) {
+            for (String original : tokenized) {
+                if (original.length() == 0) {
+                    continue;
+                }
+                String word = original;
+                if (random.nextDouble() < errorRate) {
+                    word = misspeller.misspell(original, 1 + random.nextInt(maxEdits));
+                }
+                boolean isMisspelled = !word.equals(original);
+
+                long before = System.nanoTime();
+                session.correctNext(word, result);
+                long latency = System.nanoTime() - before;
+
+                if (tokens == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+                }
+                latencies[tokens++] = latency;
+                int rank = rankOf(original, result);
+                if (rank == 0) {
+                    ++top1;
+                }
+                if (rank >= 0) {
+                    ++top5;
+                }
+                if (isMisspelled) {
+                    ++misspelled;
+                    if (rank == 0) {
+                        ++misspelledTop1;
+                    }
+                    if (rank >= 0) {
+                        ++misspelledTop5;
+                    }
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies, 0, tokens);
+
+        StringBuilder ret = new StringBuilder("{");
+        append(ret, "tokens", tokens).append(", ");
+        append(ret, "misspelled", misspelled).append(", ");
+        append(ret, "errorRate", errorRate).append(", ");
+        append(ret, "seed", seed).append(", ");
+        append(ret, "trainingSeconds", trainingSeconds).append(", ");
+        append(ret, "seconds", seconds).append(", ");
+        append(ret, "tokensPerSecond", tokens / seconds).append(", ");
+        ret.append("\"latencyMicros\": {");
+        append(ret, "p50", percentile(latencies, tokens, 0.50) / 1e3).append(", ");
+        append(ret, "p95", percentile(latencies, tokens, 0.95) / 1e3).append(", ");
+        append(ret, "p99", percentile(latencies, tokens, 0.99) / 1e3).append(", ");
+        append(ret, "max", (tokens == 0 ? 0 : latencies[tokens - 1]) / 1e3).append("}, ");
+        append(ret, "top1", share(top1, tokens)).append(", ");
+        append(ret, "top5", share(top5, tokens)).append(", ");
+        append(ret, "misspelledTop1", share(misspelledTop1, misspelled)).append(", ");
+        append(ret, "misspelledTop5", share(misspelledTop5, misspelled));
+        return ret.append('}').toString();
+    }
+
+    // Returns the rank of a word in the result or -1.
+    private static int rankOf(String word, ResultBuffer result) {
+        for (int rank = 0; rank < result.size(); rank++) {
+            if (word.equals(result.getWord(rank))) {
+                return rank;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the value below which the given share of the sorted values lies.
+    private static long percentile(long[] sorted, int size, double share) {
+        if (size == 0) {
+            return 0;
+        }
+        return sorted[Math.min(size - 1, (int) Math.ceil(share * size) - 1)];
+    }
+
+    private static double share(int count, int total) {
+        return total == 0 ? 0 : (double) count / total;
+    }
+
+    private static StringBuilder append(StringBuilder buf, String key, long value) {
+        return buf.append('"').append(key).append("\": ").append(value);
+    }
+
+    private static StringBuilder append(StringBuilder buf, String key, double value) {
+        return buf.append('"').append(key).append("\": ").append(String.format(Locale.ROOT, "%.4f", value));
+    }
+
+    // Reads the lines of the corpus or generates them.
+    private List<String> readCorpus() throws IOException {
+        List<String> ret = new ArrayList<String>();
+        if (corpus.equals("")) {
+            SyntheticCorpus generated = new SyntheticCorpus(Fixtures.seed, Fixtures.vocabularySize);
+            for (List<String> sentence : generated.sentences(generatedLines, Fixtures.wordsPerLine)) {
+                StringBuilder line = new StringBuilder();
+                for (String word : sentence) {
+                    line.append(word).append(' ');
+                }
+                ret.add(line.toString().trim());
+            }
+        } else {
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(corpus), encoding));
+            String line;
+            while ((line = in.readLine()) != null) {
+                ret.add(line);
+            }
+            in.close();
+        }
+        return ret;
+    }
+
+    // Returns false, if the arguments are not valid.
+    private boolean parseArguments(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--help")) {
+                    return false;
+                } else if (i + 1 >= args.length) {
+                    System.err.println("Missing value for " + args[i]);
+                    return false;
+                } else if (args[i].equals("--corpus")) {
+                    corpus = args[++i];
+                } else if (args[i].equals("--encoding")) {
+                    encoding = args[++i];
+                } else if (args[i].equals("--output")) {
+                    output = args[++i];
+                } else if (args[i].equals("--ngram")) {
+                    ngram = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--held-out")) {
+                    heldOut = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--error-rate")) {
+                    errorRate = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--max-edits")) {
+                    maxEdits = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--lines")) {
+                    generatedLines = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--cache")) {
+                    cacheSize = Integer.parseInt(args[++i]);
+                } else {
+                    System.err.println("Unknown option: " + args[i]);
+                    return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Not a number: " + e.getMessage());
+            return false;
+        }
+        return heldOut >= 2 && maxEdits >= 1 && errorRate >= 0 && errorRate <= 1;
+    }
+
+    private static void printInfo() {
+        System.err.println("RegressionHarness: Measures the speed and accuracy of the spell checker on held-out text with random typing errors.\n"
+                + "Usage:  java -cp benchmarks.jar de.up.ling.stud.automaton.benchmarks.RegressionHarness [options]\n"
+                + "\n"
+                + "Options:\n"
+                + "  --cache <arg>                 The number of cached results. Default is 100000 like in App, 0 disables the cache.\n"
+                + "  --corpus <arg>                The corpus. Default is a synthetic corpus.\n"
+                + "  --encoding <arg>              The encoding of the corpus. Default is UTF-8.\n"
+                + "  --error-rate <arg>            The share of the words that get typing errors. Default is 0.1.\n"
+                + "  --held-out <arg>              Every n-th line is held out for the correction. Default is 10.\n"
+                + "  --lines <arg>                 The number of lines of the synthetic corpus. Default is 20000.\n"
+                + "  --max-edits <arg>             The maximal number of typing errors in a word. Default is 1.\n"
+                + "  --ngram <arg>                 The n-gram size of the language model. Default is 3.\n"
+                + "  --output <arg>                The file for the JSON report. Default is stdout.\n"
+                + "  --seed <arg>                  The seed for the typing errors. Default is 42.\n");
+    }
+}
@@ -0,0 +1,159 @@
+package de.up.ling.stud.automaton.benchmarks;
+
+import de.up.ling.stud.automaton.StringTrie;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates a text corpus from a seed, so that benchmarks can train the same
+ * models again without any data files. The vocabulary consists of random
+ * lowercase words, whose frequencies follow Zipf's law. To give the language
+ * model something to learn, every word prefers a few successors.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class SyntheticCorpus {
+
+    private static final String letters = "abcdefghijklmnopqrstuvwxyz\u00e4\u00f6\u00fc";
+    private final long seed;
+    private final String[] vocabulary;
+    // cumulative[i] = sum of the weights of the words 0..i
+    private final double[] cumulative;
+    // Every word is followed by one of its successors in half of the cases.
+    private final int[][] successors;
+
+    /**
+     * Creates the vocabulary for a seed.
+     *
+     * @param seed
+     * @param vocabularySize Number of distinct words.
+     */
+    public SyntheticCorpus(long seed, int vocabularySize) {
+        this.seed = seed;
+        Random random = new Random(seed);
+        Set<String> seen = new HashSet<String>();
+        this.vocabulary = new String[vocabularySize];
+        this.cumulative = new double[vocabularySize];
+        this.successors = new int[vocabularySize][4];
+        double sum = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            String word;
+            do {
+                // Frequent words are short.
+                int length = 1 + random.nextInt(3) + Math.min(9, (int) Math.log(i + 2)) + random.nextInt(3);
+                StringBuilder buf = new StringBuilder(length);
+                for (int j = 0; j < length; j++) {
+                    buf.append(letters.charAt(random.nextInt(letters.length())));
+                }
+                word = buf.toString();
+            } while (!seen.add(word));
+            vocabulary[i] = word;
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            for (int j = 0; j < successors[i].length; j++) {
+                successors[i][j] = sample(random);
+            }
+        }
+    }
+
+    /**
+     * Returns all words of the vocabulary, the most frequent one first.
+     *
+     * @return Vocabulary.
+     */
+    public List<String> getVocabulary() {
+        return Arrays.asList(vocabulary);
+    }
+
+    /**
+     * Returns the sentences of the corpus. Every call with the same arguments
+     * returns the same sentences.
+     *
+     * @param lines Number of sentences.
+     * @param wordsPerLine
+     * @return The sentences as lists of words.
+     */
+    public List<List<String>> sentences(int lines, int wordsPerLine) {
+        Random random = new Random(seed + 1);
+        List<List<String>> ret = new ArrayList<List<String>>(lines);
+        for (int line = 0; line < lines; line++) {
+            List<String> sentence = new ArrayList<String>(wordsPerLine);
+            int previous = sample(random);
+            sentence.add(vocabulary[previous]);
+            for (int i = 1; i < wordsPerLine; i++) {
+                int next = random.nextBoolean()
+                        ? successors[previous][random.nextInt(successors[previous].length)]
+                        : sample(random);
+                sentence.add(vocabulary[next]);
+                previous = next;
+            }
+            ret.add(sentence);
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the sentences of the corpus to a file (UTF-8), one per line.
+     *
+     * @param file
+     * @param lines
+     * @param wordsPerLine
+     * @throws IOException
+     */
+    public void write(File file, int lines, int wordsPerLine) throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (List<String> sentence : sentences(lines, wordsPerLine)) {
+                for (int i = 0; i < sentence.size(); i++) {
+                    if (i > 0) {
+                        out.write(' ');
+                    }
+                    out.write(sentence.get(i));
+                }
+                out.newLine();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Learns a lexicon and a language model from the corpus with
+     * StringTrie.putFile(String, String).
+     *
+     * @param lines
+     * @param wordsPerLine
+     * @param nGram
+     * @return The trained data.
+     * @throws IOException
+     */
+    public StringTrie train(int lines, int wordsPerLine, int nGram) throws IOException {
+        File file = File.createTempFile("corpus", ".txt");
+        try {
+            write(file, lines, wordsPerLine);
+            StringTrie ret = new StringTrie(nGram);
+            ret.putFile(file.getPath(), "UTF-8");
+            return ret;
+        } finally {
+            file.delete();
+        }
+    }
+
+    // Draws the index of a word by its frequency.
+    private int sample(Random random) {
+        double value = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, value);
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+}
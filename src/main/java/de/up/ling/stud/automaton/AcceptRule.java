@@ -0,0 +1,52 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * Decides, if a word that is in the lexicon is plausible enough in its
+ * context to be accepted without searching for other candidates. A word is
+ * accepted, if it has been seen at least minFrequency times while learning and
+ * if its (logarithmic) back-off probability in the context is at least
+ * minLogProbability.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class AcceptRule {
+
+    private final int minFrequency;
+    private final double minLogProbability;
+
+    /**
+     * Creates a new rule. Use 0 and Double.NEGATIVE_INFINITY to ignore one of
+     * the conditions.
+     *
+     * @param minFrequency
+     * @param minLogProbability
+     */
+    public AcceptRule(int minFrequency, double minLogProbability) {
+        this.minFrequency = minFrequency;
+        this.minLogProbability = minLogProbability;
+    }
+
+    /**
+     * Returns true, if a word with the given values should be accepted.
+     *
+     * @param frequency
+     * @param logProbability
+     * @return True, if the word is plausible.
+     */
+    public boolean accepts(int frequency, double logProbability) {
+        return frequency >= minFrequency && logProbability >= minLogProbability;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    public double getMinLogProbability() {
+        return minLogProbability;
+    }
+
+    @Override
+    public String toString() {
+        return "AcceptRule{" + "minFrequency=" + minFrequency + ", minLogProbability=" + minLogProbability + '}';
+    }
+}
@@ -0,0 +1,198 @@
+package de.up.ling.stud.automaton;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Maps the characters (Unicode code points) that occur in the lexicon to
+ * dense, small symbol codes. The tries and the edit distance work on these
+ * codes instead of the raw UTF-16 values, so a character outside of the basic
+ * plane is a single symbol as well. The code 0 is reserved for the delimiter,
+ * the first character gets the code 1 and so on. Characters that have never
+ * been seen are encoded as UNKNOWN_SYMBOL, which matches no character of the
+ * lexicon.
+ *
+ * New characters are only added while the lexicon is learned. Afterwards
+ * many threads can encode and decode words at once.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class Alphabet {
+
+    /**
+     * The code for all characters, that are not in the alphabet.
+     */
+    public static final int UNKNOWN_SYMBOL = -1;
+    /**
+     * The maximal number of codes. Words are stored as chars of codes.
+     */
+    public static final int MAX_SIZE = Character.MAX_VALUE + 1;
+    private final Int2IntOpenHashMap codes;
+    private final IntArrayList codePoints;
+
+    /**
+     * Creates an alphabet that contains only the delimiter.
+     */
+    public Alphabet() {
+        this.codes = new Int2IntOpenHashMap();
+        this.codes.defaultReturnValue(UNKNOWN_SYMBOL);
+        this.codePoints = new IntArrayList();
+        this.codePoints.add(0); // delimiter
+        this.codes.put(0, 0);
+    }
+
+    /**
+     * Returns the code for a character and adds the character, if it is new.
+     *
+     * @param codePoint
+     * @return Code for the character.
+     */
+    public int add(int codePoint) {
+        int code = codes.get(codePoint);
+        if (code == UNKNOWN_SYMBOL) {
+            code = codePoints.size();
+            if (code >= MAX_SIZE) {
+                throw new IllegalStateException("The alphabet can not hold more than " + MAX_SIZE + " characters.");
+            }
+            codes.put(codePoint, code);
+            codePoints.add(codePoint);
+        }
+        return code;
+    }
+
+    /**
+     * Encodes a word and adds all new characters to the alphabet.
+     *
+     * @param word
+     * @return Codes for the characters of the word.
+     */
+    public int[] addWord(String word) {
+        int[] ret = new int[word.codePointCount(0, word.length())];
+        int index = 0;
+        for (int i = 0; i < word.length(); i += Character.charCount(word.codePointAt(i))) {
+            ret[index++] = add(word.codePointAt(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the code of a character.
+     *
+     * @param codePoint
+     * @return Code or UNKNOWN_SYMBOL.
+     */
+    public int encode(int codePoint) {
+        return codes.get(codePoint);
+    }
+
+    /**
+     * Encodes a word without changing the alphabet.
+     *
+     * @param word
+     * @return Codes for the characters of the word.
+     */
+    public int[] encode(String word) {
+        int[] ret = new int[word.codePointCount(0, word.length())];
+        encode(word, ret);
+        return ret;
+    }
+
+    /**
+     * Encodes a word into the first cells of a buffer, that must be at least
+     * as long as the String.
+     *
+     * @param word
+     * @param buffer
+     * @return The number of symbols.
+     */
+    public int encode(String word, int[] buffer) {
+        int index = 0;
+        for (int i = 0; i < word.length(); i += Character.charCount(word.codePointAt(i))) {
+            buffer[index++] = codes.get(word.codePointAt(i));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the character for a code.
+     *
+     * @param code
+     * @return The code point or -1 for an unknown code.
+     */
+    public int decode(int code) {
+        return (code >= 0 && code < codePoints.size()) ? codePoints.getInt(code) : -1;
+    }
+
+    /**
+     * Decodes a word.
+     *
+     * @param word
+     * @return The word as a String.
+     */
+    public String decode(int[] word) {
+        StringBuilder buf = new StringBuilder(word.length);
+        for (int code : word) {
+            appendSymbol(buf, code);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends the character for a code. The delimiter is written as "0",
+     * unknown codes as U+FFFD.
+     *
+     * @param buf
+     * @param code
+     */
+    public void appendSymbol(StringBuilder buf, int code) {
+        if (code == 0) {
+            buf.append('0');
+        } else {
+            int codePoint = decode(code);
+            buf.appendCodePoint(codePoint < 0 ? 0xFFFD : codePoint);
+        }
+    }
+
+    /**
+     * Returns the number of codes including the delimiter.
+     *
+     * @return Size of the alphabet.
+     */
+    public int size() {
+        return codePoints.size();
+    }
+
+    /**
+     * Returns the code points of all codes from 1 on as a comma separated
+     * list, that can be read by parse(String).
+     *
+     * @return The alphabet as a String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (int code = 1; code < codePoints.size(); code++) {
+            if (code > 1) {
+                buf.append(',');
+            }
+            buf.append(codePoints.getInt(code));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Restores an alphabet, that has been written with toString().
+     *
+     * @param line
+     * @return The alphabet.
+     */
+    public static Alphabet parse(String line) {
+        Alphabet ret = new Alphabet();
+        if (line.length() > 0) {
+            for (String codePoint : line.split(",")) {
+                ret.add(Integer.parseInt(codePoint.trim()));
+            }
+        }
+        return ret;
+    }
+}
@@ -1,6 +1,5 @@
 package de.up.ling.stud.automaton;
 
-import de.saar.basic.Pair;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -10,12 +9,26 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import javax.management.JMException;
 
 /**
  * Main class that uses arguments from the command line and shows, how the
@@ -37,11 +50,31 @@ public class App {
     private static boolean verbose;
     private static boolean details;
     private static int ngram;
+    private static int servePort;
+    private static boolean pipe;
+    private static boolean lineSync;
+    private static long flushInterval;
+    private static int threads;
+    private static boolean parallelSearch;
+    private static int cacheSize;
+    private static int acceptFrequency;
+    private static double acceptScore;
+    private static long maxExpansions;
+    private static long timeout;
+    private static int indexDistance;
+    private static int indexPrefix;
+    private static boolean printStats;
+    private static long statsTokens;
+    private static int saveShards;
+    private static CorrectionCache cache;
+    private static DeletionIndex deletionIndex;
     private static StringTrie data;
     private static int numSuggestions;
     // Define a pattern for the tokenizer, that matches all characters, that are not letters.
     // This includes german umlauts as well. Taken from: http://stackoverflow.com/a/1612015
     private static final Pattern tokenizerPattern = Pattern.compile("[^\\p{L}]");
+    // Number of lines that are corrected as one chunk with --threads.
+    private static final int chunkLines = 256;
 
     /**
      * Takes a lot of arguments to create or load data and to check and correct
@@ -84,6 +117,9 @@ public class App {
             }
             assert data != null;
             data.setVerbose(verbose);
+            if (cacheSize > 0) {
+                cache = new CorrectionCache(cacheSize, cacheSize);
+            }
 
             if (!drawLexiconFile.equals("")) {
                 data.drawLexicon(drawLexiconFile);
@@ -93,11 +129,91 @@ public class App {
                 data.drawLanguageModel(drawModelFile);
             }
 
+            if (saveShards > 0) {
+                String prefix = saveTo.equals("") ? loadFile : saveTo;
+                ShardPartition partition = ShardPartition.byHash(saveShards);
+                for (int shard = 0; shard < saveShards; shard++) {
+                    verbose("Saving shard " + shard + " to " + prefix + ".shard" + shard);
+                    data.extractShard(partition, shard).saveToFile(prefix + ".shard" + shard, encoding);
+                }
+            }
+
+            if (printStats) {
+                printStats();
+            }
+
             if (!textFile.equals("")) {
                 assert !resultFile.equals("");
                 data.postProcessing();
-                correctFile(textFile, resultFile);
+                buildDeletionIndex();
+                if (threads > 1) {
+                    correctFileParallel(textFile, resultFile, threads);
+                } else {
+                    correctFile(textFile, resultFile);
+                }
+                if (cache != null) {
+                    verbose("Cache: " + cache);
+                }
+            }
+
+            if (pipe) {
+                data.postProcessing();
+                buildDeletionIndex();
+                correctPipe(lineSync, flushInterval);
             }
+
+            if (servePort >= 0) {
+                data.postProcessing();
+                buildDeletionIndex();
+                serve(servePort);
+            }
+        }
+    }
+
+    // Prints the report on the size of the model. stdout carries the corrected text in pipe mode.
+    private static void printStats() {
+        ModelReport report = data.report();
+        PrintStream out = pipe ? System.err : System.out;
+        out.print(report);
+        if (statsTokens > 0) {
+            out.print(report.project(statsTokens));
+        }
+    }
+
+    /**
+     * Keeps the loaded data in memory and answers correction requests on a
+     * local port, until the server is shut down.
+     *
+     * @param port
+     * @throws IOException
+     */
+    private static void serve(int port) throws IOException {
+        int numThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final CorrectionServer server = new CorrectionServer(data, port, numThreads);
+        if (parallelSearch) {
+            server.setParallelSearch(ForkJoinPool.commonPool());
+        }
+        server.setCache(cache);
+        server.setAcceptRule(acceptRule());
+        server.setBudget(maxExpansions, timeout, TimeUnit.MILLISECONDS);
+        server.setDeletionIndex(deletionIndex);
+        try {
+            server.getMetrics().registerMBean("port-" + server.getPort());
+        } catch (JMException e) {
+            System.err.println("The metrics are not available over JMX: " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.shutdown(5000);
+            }
+        });
+        server.start();
+        System.err.println("Listening on 127.0.0.1:" + server.getPort());
+        try {
+            server.awaitTermination();
+        } catch (InterruptedException e) {
+            server.shutdown(5000);
         }
     }
 
@@ -118,89 +234,310 @@ public class App {
         Writer textOutWriter = new OutputStreamWriter(textOutputStream, encoding);
         BufferedWriter textOut = new BufferedWriter(textOutWriter);
 
+        // Nobody reads the file while it is written, so the writer only flushes when its buffer is full.
+        correctStream(textIn, textOut, false, -1);
+        textIn.close();
+        textOut.close();
+    }
+
+    /**
+     * Reads the text from stdin and writes the corrections to stdout, so that
+     * the corrector can be used in a pipeline. Output is flushed when the
+     * buffer is full, when the input has no more data available right now or
+     * when flushInterval ms have passed since the last flush. In line
+     * synchronous mode, every input line results in exactly one output line
+     * (or a block of lines followed by an empty one with --details), that is
+     * flushed immediately.
+     *
+     * @param lineSync
+     * @param flushInterval
+     * @throws IOException
+     */
+    private static void correctPipe(boolean lineSync, long flushInterval) throws IOException {
+        BufferedReader textIn = new BufferedReader(new InputStreamReader(System.in, encoding));
+        BufferedWriter textOut = new BufferedWriter(new OutputStreamWriter(System.out, encoding), 1 << 16);
+
+        correctStream(textIn, textOut, lineSync, flushInterval);
+        textOut.flush();
+    }
+
+    /**
+     * Corrects all tokens read from textIn and writes the result to textOut.
+     * Uses the model, that main(String[]) has read or learned.
+     *
+     * @param textIn
+     * @param textOut
+     * @param lineSync If true, write one line per input line and flush after
+     * each of them.
+     * @param flushInterval Maximal time in ms between two flushes. Use a
+     * negative value to flush only when the buffer of textOut is full.
+     * @throws IOException
+     */
+    static void correctStream(BufferedReader textIn, BufferedWriter textOut, boolean lineSync, long flushInterval) throws IOException {
         String currentLine;
-        String currentWord;
+        long lastFlush = System.currentTimeMillis();
 
-        Corrector corrector = new Corrector(data);
+        // The session starts with an empty context.
+        Corrector corrector = newCorrector();
+        corrector.setStatsEnabled(verbose);
+        CorrectionSession session = new CorrectionSession(corrector, ngram);
+        ResultBuffer result = new ResultBuffer(numSuggestions);
 
-        // init context window
+        // Tokenize the current line.
+        while ((currentLine = textIn.readLine()) != null) {
+            correctLine(session, result, tokenizerPattern.split(currentLine), textOut, lineSync);
+
+            if (lineSync) {
+                textOut.newLine();
+                textOut.flush();
+            } else if (flushInterval >= 0) {
+                // Flush before reading would block, so that the other end of
+                // the pipe is never left waiting for output that sits in the buffer.
+                long now = System.currentTimeMillis();
+                if (!textIn.ready() || now - lastFlush >= flushInterval) {
+                    textOut.flush();
+                    lastFlush = now;
+                }
+            }
+        }
+        if (verbose) {
+            verbose("Search: " + corrector.getTotalStats());
+        }
+    }
+
+    /**
+     * Corrects a file like correctFile(String, String), but uses a pool of
+     * threads. The text is split in chunks of whole lines. Each chunk gets the
+     * last n-1 words before it as its context and is corrected by a worker
+     * with its own Corrector. The chunks are written in their original order.
+     *
+     * @param fileIn
+     * @param fileOut
+     * @param numThreads
+     * @throws IOException
+     */
+    private static void correctFileParallel(String fileIn, String fileOut, int numThreads) throws IOException {
+        BufferedReader textIn = new BufferedReader(new InputStreamReader(new FileInputStream(new File(fileIn)), encoding));
+        BufferedWriter textOut = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(fileOut)), encoding));
+
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        final ThreadLocal<Corrector> correctors = new ThreadLocal<Corrector>() {
+            @Override
+            protected Corrector initialValue() {
+                return newCorrector();
+            }
+        };
+        // Chunks that are corrected or waiting for a worker, in the order of the text.
+        // Limit their number, so that the whole file is never held in memory.
+        Deque<Future<String>> pending = new ArrayDeque<Future<String>>();
+        int maxPending = numThreads * 4;
+
+        // The last n-1 words that have been read. They are the context for the next chunk.
         String[] window = new String[ngram];
         for (int i = 0; i < ngram; i++) {
             window[i] = "";
         }
 
-        // Tokenize the current line.
-        while ((currentLine = textIn.readLine()) != null) {
-            String[] tokenized = tokenizerPattern.split(currentLine);
-            for (int i = 0; i < tokenized.length; i++) {
-                currentWord = tokenized[i];
-                if (currentWord.length() > 0) {
-                    for (int j = 0; j < ngram - 1; j++) {
-                        window[j] = window[j + 1]; // move the window to the left
+        try {
+            String currentLine;
+            List<String[]> chunk = new ArrayList<String[]>();
+            String[] chunkContext = window.clone();
+            while ((currentLine = textIn.readLine()) != null) {
+                String[] tokenized = tokenizerPattern.split(currentLine);
+                chunk.add(tokenized);
+                for (String currentWord : tokenized) {
+                    if (currentWord.length() > 0) {
+                        System.arraycopy(window, 1, window, 0, ngram - 1);
+                        window[ngram - 1] = currentWord;
                     }
+                }
 
-                    window[ngram - 1] = currentWord;
-
-                    Iterator<Pair<String, Double>> candidates = corrector.correctWordInContext(window).iterator();
-
-                    if (candidates.hasNext()) {
-                        if (details) {
-                            String space = "";
-                            for (int j = currentWord.length(); j < 30; ++j) {
-                                space = space.concat(" ");
-                            }
-
-                            verbose("Correcting the word \"" + currentWord + "\" to: ");
-
-                            // Case for the best candidate:
-                            Pair<String, Double> currentPair = candidates.next();
-                            String currentSuggestion = currentPair.left;
-                            if (currentSuggestion.equals(currentWord)) {
-                                textOut.write("\u2713 " + currentWord + space + " |Suggestions: ");
-                            } else {
-                                textOut.write("\u2717 " + currentWord + space + " |Suggestions: ");
-                            }
-
-                            verbose(" * " + currentSuggestion + "  \t(" + currentPair.right + ")");
-                            textOut.write(currentSuggestion + " (" + currentPair.right + ")");
-                            textOut.write((!candidates.hasNext()) ? "" : ", ");
-
-                            // Other candidates
-                            for (int j = 1; j < numSuggestions && candidates.hasNext(); j++) {
-                                currentPair = candidates.next();
-                                currentSuggestion = currentPair.left;
-                                verbose(" * " + currentSuggestion + "  \t(" + currentPair.right + ")");
-                                textOut.write(currentSuggestion + " (" + currentPair.right + ")");
-                                textOut.write((j == numSuggestions - 1 || !candidates.hasNext()) ? "" : ", ");
-                            }
-                            verbose("");
-                            textOut.newLine();
-                        } else {
-                            String currentSuggestion = candidates.next().left;
-                            textOut.write(currentSuggestion + " ");
-                            verbose("Correcting the word \"" + currentWord + "\" to \"" + currentSuggestion + "\".");
-                        }
-                    } else {
-                        verbose("No candidate found for \"" + currentWord + "\".");
-                        if (details) {
-                            String space = "";
-                            for (int j = currentWord.length(); j < 30; ++j) {
-                                space = space.concat(" ");
-                            }
-
-                            textOut.write("\u2717 " + currentWord + space + " |Suggestions: <NONE>\n");
-                        } else {
-                            textOut.write("<NOTFOUND>");
-                        }
+                if (chunk.size() == chunkLines) {
+                    pending.add(workers.submit(new ChunkCorrection(correctors, chunkContext, chunk)));
+                    chunk = new ArrayList<String[]>();
+                    chunkContext = window.clone();
+                    while (pending.size() >= maxPending) {
+                        textOut.write(pending.poll().get());
                     }
                 }
-                if (!details && currentWord.length() > 0) {
-                    textOut.write("\n");
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(workers.submit(new ChunkCorrection(correctors, chunkContext, chunk)));
+            }
+            while (!pending.isEmpty()) {
+                textOut.write(pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            // The result file is incomplete, so the caller must not take it for a result.
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while correcting " + fileIn);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            workers.shutdownNow();
+            textIn.close();
+            textOut.close();
+        }
+    }
+
+    /**
+     * Task that corrects a chunk of tokenized lines and returns the output for
+     * it as a String.
+     */
+    private static class ChunkCorrection implements Callable<String> {
+
+        private final ThreadLocal<Corrector> correctors;
+        private final String[] context;
+        private final List<String[]> lines;
+
+        ChunkCorrection(ThreadLocal<Corrector> correctors, String[] context, List<String[]> lines) {
+            this.correctors = correctors;
+            this.context = context;
+            this.lines = lines;
+        }
+
+        public String call() throws IOException {
+            StringWriter result = new StringWriter();
+            BufferedWriter textOut = new BufferedWriter(result);
+            CorrectionSession session = new CorrectionSession(correctors.get(), ngram);
+            for (String word : context) {
+                session.push(word);
+            }
+            ResultBuffer candidates = new ResultBuffer(numSuggestions);
+            for (String[] tokenized : lines) {
+                correctLine(session, candidates, tokenized, textOut, false);
+            }
+            textOut.close();
+            return result.toString();
+        }
+    }
+
+    /**
+     * Corrects the tokens of a single line and writes the result. The session
+     * holds the context of the previous words.
+     *
+     * @param session
+     * @param result Buffer for the candidates of a word.
+     * @param tokenized
+     * @param textOut
+     * @param lineSync If true, all corrections are written in a single line.
+     * @throws IOException
+     */
+    private static void correctLine(CorrectionSession session, ResultBuffer result, String[] tokenized, BufferedWriter textOut, boolean lineSync) throws IOException {
+        String currentWord;
+        boolean firstInLine = true;
+        for (int i = 0; i < tokenized.length; i++) {
+            currentWord = tokenized[i];
+            if (currentWord.length() > 0) {
+                session.correctNext(currentWord, result);
+                if (lineSync && !details) {
+                    if (!firstInLine) {
+                        textOut.write(" ");
+                    }
+                    textOut.write(bestCorrection(currentWord, result));
+                } else {
+                    writeCorrection(currentWord, result, textOut);
                 }
-                textOut.flush();
+                firstInLine = false;
+            }
+            if (!lineSync && !details && currentWord.length() > 0) {
+                textOut.write("\n");
+            }
+        }
+    }
+
+    // Returns the rule from the command line or null, if no rule was given.
+    private static AcceptRule acceptRule() {
+        if (acceptFrequency < 0 && Double.isNaN(acceptScore)) {
+            return null;
+        }
+        return new AcceptRule(Math.max(0, acceptFrequency), Double.isNaN(acceptScore) ? Double.NEGATIVE_INFINITY : acceptScore);
+    }
+
+    // Builds the index of deletion variants, if it has been requested and not built yet.
+    private static void buildDeletionIndex() {
+        if (indexDistance >= 0 && deletionIndex == null) {
+            verbose("Building the deletion index. This can take a while.");
+            deletionIndex = new DeletionIndex(data.freeze(), indexDistance, indexPrefix);
+            verbose("Done! " + deletionIndex.size() + " entries.");
+        }
+    }
+
+    // Creates a corrector for the data with the options from the command line.
+    private static Corrector newCorrector() {
+        Corrector corrector = new Corrector(data);
+        if (parallelSearch) {
+            corrector.setParallelSearch(ForkJoinPool.commonPool());
+        }
+        corrector.setCache(cache);
+        corrector.setAcceptRule(acceptRule());
+        corrector.setBudget(maxExpansions, timeout, TimeUnit.MILLISECONDS);
+        corrector.setDeletionIndex(deletionIndex);
+        return corrector;
+    }
+
+    // Returns the best of the candidates for a word (or <NOTFOUND>).
+    private static String bestCorrection(String currentWord, ResultBuffer candidates) {
+        if (candidates.size() > 0) {
+            String currentSuggestion = candidates.getWord(0);
+            verbose("Correcting the word \"" + currentWord + "\" to \"" + currentSuggestion + "\".");
+            return currentSuggestion;
+        } else {
+            verbose("No candidate found for \"" + currentWord + "\".");
+            return "<NOTFOUND>";
+        }
+    }
+
+    // Writes the candidates for a word in the format of correctFile.
+    private static void writeCorrection(String currentWord, ResultBuffer candidates, BufferedWriter textOut) throws IOException {
+        if (candidates.size() > 0) {
+            if (details) {
+                String space = "";
+                for (int j = currentWord.length(); j < 30; ++j) {
+                    space = space.concat(" ");
+                }
+
+                verbose("Correcting the word \"" + currentWord + "\" to: ");
+
+                // Case for the best candidate:
+                String currentSuggestion = candidates.getWord(0);
+                if (candidates.isCorrect()) {
+                    textOut.write("\u2713 " + currentWord + space + " |Suggestions: ");
+                } else {
+                    textOut.write("\u2717 " + currentWord + space + " |Suggestions: ");
+                }
+
+                verbose(" * " + currentSuggestion + "  \t(" + candidates.getScore(0) + ")");
+                textOut.write(currentSuggestion + " (" + candidates.getScore(0) + ")");
+                textOut.write((candidates.getTotal() == 1) ? "" : ", ");
+
+                // Other candidates
+                for (int j = 1; j < candidates.size(); j++) {
+                    currentSuggestion = candidates.getWord(j);
+                    verbose(" * " + currentSuggestion + "  \t(" + candidates.getScore(j) + ")");
+                    textOut.write(currentSuggestion + " (" + candidates.getScore(j) + ")");
+                    textOut.write((j == candidates.size() - 1) ? "" : ", ");
+                }
+                verbose("");
+                textOut.newLine();
+            } else {
+                String currentSuggestion = candidates.getWord(0);
+                textOut.write(currentSuggestion + " ");
+                verbose("Correcting the word \"" + currentWord + "\" to \"" + currentSuggestion + "\".");
+            }
+        } else {
+            verbose("No candidate found for \"" + currentWord + "\".");
+            if (details) {
+                String space = "";
+                for (int j = currentWord.length(); j < 30; ++j) {
+                    space = space.concat(" ");
+                }
+
+                textOut.write("\u2717 " + currentWord + space + " |Suggestions: <NONE>\n");
+            } else {
+                textOut.write("<NOTFOUND>");
             }
         }
-        textOut.close();
     }
 
     private static void parseArguments(String[] args) {
@@ -216,6 +553,22 @@ public class App {
         verbose = false;
         details = false;
         ngram = 3;
+        servePort = -1;
+        pipe = false;
+        lineSync = false;
+        flushInterval = 200;
+        threads = -1; // not set
+        parallelSearch = false;
+        cacheSize = 100000;
+        acceptFrequency = -1; // not set
+        acceptScore = Double.NaN; // not set
+        maxExpansions = Long.MAX_VALUE; // no limit
+        timeout = Long.MAX_VALUE; // no limit
+        indexDistance = -1; // no index
+        indexPrefix = 7;
+        printStats = false;
+        statsTokens = -1; // no projection
+        saveShards = 0;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("--verbose") || args[i].equals("-v")) {          // Verbose
@@ -295,6 +648,100 @@ public class App {
                     System.err.println("Please specify a correct filename to draw the language model in a dot-file.\nUse --help to view all commands.");
                     System.exit(1);
                 }
+            } else if (args[i].equals("--accept-frequency")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    acceptFrequency = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify how often a word must have been seen to be accepted.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--accept-score")) {
+                if (i + 1 < args.length) { // the score is a negative number
+                    acceptScore = Double.parseDouble(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the minimal log probability of an accepted word.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--cache")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    cacheSize = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the number of results that should be cached.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--max-expansions")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    maxExpansions = Long.parseLong(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the maximal number of trie nodes that are searched for a word.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--timeout")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    timeout = Long.parseLong(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the maximal time in ms to correct a word.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--deletion-index")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    indexDistance = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the maximal edit distance for the deletion index.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--index-prefix")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    indexPrefix = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the number of symbols of each word for the deletion index.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--stats")) {
+                printStats = true;
+            } else if (args[i].equals("--stats-tokens")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    printStats = true;
+                    statsTokens = Long.parseLong(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the number of tokens of the corpus for the projection.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--save-shards")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    saveShards = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the number of shards.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--parallel-search")) {
+                parallelSearch = true;
+            } else if (args[i].equals("--pipe")) {
+                pipe = true;
+            } else if (args[i].equals("--line-sync")) {
+                pipe = true;
+                lineSync = true;
+            } else if (args[i].equals("--flush-interval")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    flushInterval = Long.parseLong(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the maximal time in ms between two flushes.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--serve")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    servePort = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify a port for the server.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--threads")) {
+                if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                    threads = Integer.parseInt(args[i + 1]);
+                } else {
+                    System.err.println("Please specify the number of threads.\nUse --help to view all commands.");
+                    System.exit(1);
+                }
             } else if (args[i].equals("--details") || args[i].equals("-d")) {   // result info
                 details = true;
             } else if (args[i].equals("--info") || args[i].equals("--help") || args[i].equals("-h")) {   // result info
@@ -322,7 +769,12 @@ public class App {
             System.exit(1);
         }
 
-        if (resultFile.equals("") && details == true) {
+        if (pipe && !textFile.equals("")) {
+            System.err.println("Your arguments are not valid: Either correct a textfile (--check) or read from stdin (--pipe).\nUse --help to view all commands.");
+            System.exit(1);
+        }
+
+        if (resultFile.equals("") && details == true && !pipe) {
             System.err.println("Your arguments are not valid: If you cannot use the --details switch if you do not correct a textfile.\nUse --help to view all commands.");
             System.exit(1);
         }
@@ -339,10 +791,18 @@ public class App {
                 + "Usage:  java -jar SpellChecker.jar [options]\n"
                 + "\n"
                 + "Options:\n"
+                + "  --accept-frequency <arg>      Words of the lexicon that have been seen this often are accepted without\n"
+                + "                                looking for other candidates, if they also pass --accept-score.\n"
+                + "  --accept-score <arg>          Words of the lexicon whose log probability in the context is at least this value\n"
+                + "                                (e.g. -8) are accepted without looking for other candidates.\n"
+                + "  --cache <arg>                 The number of corrected words (and of contexts) that are cached. Default is 100000,\n"
+                + "                                0 disables the cache.\n"
                 + "  --check <arg>                 The textfile that should be corrected by the spell checker.\n"
                 + "  --corpus, -c <arg>            Creates a new lexicon and language model based on a text corpus\n "
                 + "                                that is stored in a single file.\n"
                 + "  --correct <arg>               See --check\n"
+                + "  --deletion-index <arg>        Looks up the candidates up to the given edit distance (e.g. 1 or 2) in an index of\n"
+                + "                                deletion variants instead of searching the lexicon. Needs more memory.\n"
                 + "  --details, -d                 The top 5 candidates for a word will be saved in the output file. \n"
                 + "                                This is a great way to understand the accuracy of the program.\n"
                 + "  --draw-lexicon <arg>          Saves the lexicon as a trie in graphviz-format. This should only be used, \n"
@@ -350,11 +810,35 @@ public class App {
                 + "  --draw-model <arg>            Saves the language model as a trie in graphviz-format. This should only be used, \n"
                 + "                                when trained on a very small corpus.\n"
                 + "  --encoding, --enc,  <arg>     The used encoding for textfile and corpus. Default is UTF-8\n"
+                + "  --flush-interval <arg>        Maximal time in ms between two flushes with --pipe. Default is 200.\n"
                 + "  --help, --info                Shows this message.\n"
+                + "  --index-prefix <arg>          The number of symbols of each word, that are stored in the deletion index. Longer\n"
+                + "                                prefixes need more memory, but give fewer false hits. Default is 7.\n"
+                + "  --line-sync                   Like --pipe, but writes one line for every line of the input and flushes it\n"
+                + "                                immediately. Use this for interactive callers.\n"
                 + "  --load, -l <arg>              Loads the data, that has been trained using --corpus and saved with --save.\n"
+                + "  --max-expansions <arg>        The maximal number of trie nodes that are searched for a single word. If the limit is\n"
+                + "                                reached, the best candidates found so far are used.\n"
                 + "  --ngram <arg>                 The number of ngrams that should be used to learn a language model. The default value is 3.\n"
+                + "  --parallel-search             Searches the candidates for long words with a high error threshold on all cores.\n"
+                + "  --pipe                        Reads the text from stdin and writes the corrections to stdout.\n"
                 + "  --result <arg>                If a textfile is specified by using --check, the result has to be saved in a file.\n"
                 + "  --save, -s <arg>              If data is learned from a corpus, it should be saved in a new file.\n"
+                + "  --save-shards <arg>           Splits the data into this number of shards by a hash of the words and saves them\n"
+                + "                                next to the file of --save or --load (file.shard0, file.shard1, ...). Each shard\n"
+                + "                                can be served by its own process and queried with a ShardedCorrector.\n"
+                + "  --serve <arg>                 Keeps the data in memory and answers requests on the given local port \n"
+                + "                                (0 chooses a free port). Send HEALTH, CORRECT n [context] word, METRICS,\n"
+                + "                                RELOAD file [encoding] (replaces the model without a restart) or SHUTDOWN.\n"
+                + "                                COMPLETE n [context] prefix and FUZZY n distance prefix complete a prefix.\n"
+                + "                                A server of a shard also answers NGRAM, IDS and SHARD for a RemoteShard.\n"
+                + "                                The metrics can also be read over JMX and HTTP (/metrics).\n"
+                + "  --stats                       Prints the number of nodes, n-grams and the estimated memory of the model.\n"
+                + "  --stats-tokens <arg>          Like --stats, but also projects the model to a corpus with this number of tokens.\n"
+                + "  --threads <arg>               The number of threads that correct the textfile in parallel. With --serve,\n"
+                + "                                the number of requests that are answered at once (default: number of cores).\n"
+                + "  --timeout <arg>               The maximal time in ms to search candidates for a single word. If the time is up,\n"
+                + "                                the best candidates found so far are used.\n"
                 + "  --verbose, -v                 Prints additional information.\n"
                 + "\n"
                 + "Examples:\n"
@@ -363,12 +847,19 @@ public class App {
                 + "--corpus /path/to/corpus --enc UTF-8 --ngram 2 --save /path/to/output.spell\n"
                 + "\n"
                 + "Load learned data and correct a file:\n"
-                + "--load /path/to/output.spell --check /path/to/text --result /path/to/corrected.file\n");
+                + "--load /path/to/output.spell --check /path/to/text --result /path/to/corrected.file\n"
+                + "\n"
+                + "Load learned data and correct the text of another program:\n"
+                + "cat /path/to/text | java -jar SpellChecker.jar --load /path/to/output.spell --pipe > /path/to/corrected.file\n"
+                + "\n"
+                + "Load learned data and answer requests on port 8765:\n"
+                + "--load /path/to/output.spell --serve 8765\n");
     }
 
     private static void verbose(String text) {
         if (verbose) {
-            System.out.println(text);
+            // stdout carries the corrected text in pipe mode
+            (pipe ? System.err : System.out).println(text);
         }
     }
 
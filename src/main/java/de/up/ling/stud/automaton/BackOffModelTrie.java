@@ -3,7 +3,9 @@ package de.up.ling.stud.automaton;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -129,6 +131,92 @@ public class BackOffModelTrie {
         return finalState;
     }
 
+    /**
+     * Check, if there is a transition for a word from this (sub)trie. In the
+     * top trie, this is true for all words that have been seen while learning.
+     *
+     * @param wordID
+     * @return True, if there is a transition for wordID.
+     */
+    public boolean containsWord(int wordID) {
+        return branches.containsKey(wordID);
+    }
+
+    /**
+     * Returns how often a word has been seen after this (sub)trie. In the top
+     * trie, this is the frequency of the word in the corpus.
+     *
+     * @param wordID
+     * @return Count for the word or 0, if it is unknown.
+     */
+    public int getWordCount(int wordID) {
+        BackOffModelTrie nextTrie = branches.get(wordID);
+        return (nextTrie == null) ? 0 : nextTrie.count;
+    }
+
+    /**
+     * Returns the words, that have a transition from this (sub)trie. In the
+     * top trie, these are all words that have been seen while learning.
+     *
+     * @return Set of wordIDs. It must not be changed.
+     */
+    IntSet getWords() {
+        return branches.keySet();
+    }
+
+    /**
+     * Returns a top trie with the same count as this one, that only keeps the
+     * n-grams of the given words. Because the count of the top trie is the
+     * same, the probabilities of these n-grams do not change. The subtries are
+     * shared with this trie.
+     *
+     * @param wordIDs
+     * @return Trie for a part of the words.
+     */
+    BackOffModelTrie restrictTo(IntSet wordIDs) {
+        BackOffModelTrie ret = new BackOffModelTrie(nGram, allNGram);
+        ret.count = count;
+        ret.locked = locked;
+        IntIterator wordIt = wordIDs.iterator();
+        while (wordIt.hasNext()) {
+            int wordID = wordIt.nextInt();
+            BackOffModelTrie nextTrie = branches.get(wordID);
+            if (nextTrie != null) {
+                ret.branches.put(wordID, nextTrie);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the count of this (sub)trie. In the top trie, this is the
+     * number of n-grams, that the probabilities of single words are based on.
+     *
+     * @return Count.
+     */
+    int getCount() {
+        return count;
+    }
+
+    // Overwrites the count of the top trie, when a part of a model is restored.
+    void setCount(int count) {
+        this.count = count;
+    }
+
+    /**
+     * Counts this trie and all subtries for a ModelReport. A node at depth n
+     * stands for an n-gram.
+     *
+     * @param stats
+     * @param depth Depth of this trie, 0 for the root.
+     */
+    void collectStats(ModelReport.TrieStats stats, int depth) {
+        stats.addNode(depth, branches.size(), finalState, count);
+        for (BackOffModelTrie nextTrie : branches.values()) {
+            nextTrie.collectStats(stats, depth + 1);
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     ///// Recursive functions
     ////////////////////////////////////////////////////////////////////////////
@@ -278,7 +366,7 @@ public class BackOffModelTrie {
                 nodes.add("node [shape = " + (branches.get(a).isFinal() ? "doublecircle" : "circle") + ", label=\""
                         + nextState + "\\n" + branches.get(a).printExtra()
                         + "\", fontsize=12] \"" + nextState + "\";");
-                ret.append("   \"" + currentState + "\" -> \"" + nextState + "\" [ label = \"" + StringTrie.intArrayToString(translator.getWordByID(a)) + "(" + label + ")\" ];\n");
+                ret.append("   \"" + currentState + "\" -> \"" + nextState + "\" [ label = \"" + translator.getWordAsString(a) + "(" + label + ")\" ];\n");
                 ret.append(branches.get(a).drawTransitions(newHistory, nextState, nodes, translator));
             }
         }
@@ -0,0 +1,215 @@
+package de.up.ling.stud.automaton;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Searches the candidates of many words with a single walk through the
+ * lexicon. Every word keeps one row of its edit distance matrix per depth of
+ * the walk, so a trie node is visited once for all words, that are still
+ * within the threshold below it, instead of once per word. A word is dropped
+ * from a subtrie as soon as its cut-off distance exceeds the threshold.
+ *
+ * The words are sorted, so that neighbours share their prefixes: The cells of
+ * a row that only depend on a common prefix are copied from the word before.
+ *
+ * A search must only be used by one thread at a time.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class BatchSearch {
+
+    private final StringTrieView data;
+    private final int errorThreshold;
+    // The words in sorted order, their index in the array of the caller and their profiles.
+    private final int[][] words;
+    private final int[] order;
+    private final Corrector.SymbolProfile[] profiles;
+    // sharedPrefix[q] = length of the common prefix of the words q-1 and q
+    private final int[] sharedPrefix;
+    // rows[q][n] = distances between the first n symbols of the path and all prefixes of word q
+    private final int[][][] rows;
+    // live[n] = the words that are still within the threshold at depth n, liveCount[n] of them
+    private final int[][] live;
+    private final int[] liveCount;
+    private final CandidateSet[] candidates;
+
+    /**
+     * Prepares a search for some words.
+     *
+     * @param data
+     * @param misspelledWords Distinct words.
+     * @param errorThreshold
+     */
+    BatchSearch(StringTrieView data, int[][] misspelledWords, int errorThreshold) {
+        this.data = data;
+        this.errorThreshold = errorThreshold;
+        final int[][] unsorted = misspelledWords;
+        Integer[] sorted = new Integer[unsorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer firstIndex, Integer secondIndex) {
+                int[] first = unsorted[firstIndex];
+                int[] second = unsorted[secondIndex];
+                for (int i = 0; i < first.length && i < second.length; i++) {
+                    if (first[i] != second[i]) {
+                        return first[i] < second[i] ? -1 : 1;
+                    }
+                }
+                return first.length - second.length;
+            }
+        });
+
+        int numWords = unsorted.length;
+        int maxDepth = 0;
+        this.words = new int[numWords][];
+        this.order = new int[numWords];
+        for (int q = 0; q < numWords; q++) {
+            order[q] = sorted[q];
+            words[q] = unsorted[order[q]];
+        }
+        this.profiles = new Corrector.SymbolProfile[numWords];
+        this.sharedPrefix = new int[numWords];
+        this.rows = new int[numWords][][];
+        this.candidates = new CandidateSet[numWords];
+        for (int q = 0; q < numWords; q++) {
+            int[] word = words[q];
+            profiles[q] = new Corrector.SymbolProfile(word);
+            if (q > 0) {
+                int[] previous = words[q - 1];
+                int shared = 0;
+                while (shared < word.length && shared < previous.length && word[shared] == previous[shared]) {
+                    ++shared;
+                }
+                sharedPrefix[q] = shared;
+            }
+            // Below this depth, the cut-off distance is always above the threshold.
+            int depth = word.length + errorThreshold + 1;
+            rows[q] = new int[depth + 1][word.length + 1];
+            for (int i = 0; i <= word.length; i++) {
+                rows[q][0][i] = i;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+            candidates[q] = new CandidateSet();
+        }
+        this.live = new int[maxDepth + 2][numWords];
+        this.liveCount = new int[maxDepth + 2];
+    }
+
+    /**
+     * Searches the candidates of all words.
+     *
+     * @return The candidates of each word with their edit distance, in the
+     * order of the words in the constructor.
+     */
+    CandidateSet[] search() {
+        for (int q = 0; q < words.length; q++) {
+            live[0][q] = q;
+        }
+        liveCount[0] = words.length;
+        visit(data.getLexicon(), 0, 0L);
+
+        // Return the sets in the order of the caller.
+        CandidateSet[] ret = new CandidateSet[words.length];
+        for (int q = 0; q < words.length; q++) {
+            ret[order[q]] = candidates[q];
+        }
+        return ret;
+    }
+
+    // Adds the final state to the candidates of its words and visits all
+    // subtries, that are within the threshold for at least one word.
+    private void visit(LexiconTrie trie, int depth, long pathMask) {
+        int[] currentLive = live[depth];
+        int currentCount = liveCount[depth];
+
+        if (trie.isFinal()) {
+            int wordID = trie.getID();
+            if (data.isInLanguageModel(wordID)) {
+                for (int k = 0; k < currentCount; k++) {
+                    int q = currentLive[k];
+                    int distance = rows[q][depth][words[q].length];
+                    if (distance <= errorThreshold) {
+                        candidates[q].add(wordID, distance);
+                    }
+                }
+            }
+        }
+
+        int nextDepth = depth + 1;
+        int[] nextLive = live[nextDepth];
+        IntIterator symbolIt = trie.getAllTransitions().iterator();
+        while (symbolIt.hasNext()) {
+            int transitionSymbol = symbolIt.next();
+            LexiconTrie nextTrie = trie.getSubtrieByTransitionSymbol(transitionSymbol);
+            int minLength = nextDepth + nextTrie.getMinRemainingLength();
+            int maxLength = nextDepth + nextTrie.getMaxRemainingLength();
+            long nextMask = pathMask | LexiconTrie.symbolBit(transitionSymbol);
+            long subtrieMask = nextMask | nextTrie.getSymbolMask();
+
+            int nextCount = 0;
+            int previous = -1; // the last word, whose row has been computed for this symbol
+            for (int k = 0; k < currentCount; k++) {
+                int q = currentLive[k];
+                int wordLength = words[q].length;
+                // The same lower bounds of the edit distance as in Corrector.expand().
+                if (minLength - wordLength > errorThreshold || wordLength - maxLength > errorThreshold
+                        || nextDepth >= rows[q].length
+                        || profiles[q].countMissing(subtrieMask) > errorThreshold) {
+                    continue;
+                }
+                int shared = 0;
+                if (previous >= 0) {
+                    shared = Integer.MAX_VALUE;
+                    for (int j = previous + 1; j <= q; j++) {
+                        shared = Math.min(shared, sharedPrefix[j]);
+                    }
+                }
+                if (computeRow(q, nextDepth, transitionSymbol, previous, shared) <= errorThreshold) {
+                    nextLive[nextCount++] = q;
+                }
+                previous = q;
+            }
+
+            if (nextCount > 0) {
+                liveCount[nextDepth] = nextCount;
+                visit(nextTrie, nextDepth, nextMask);
+            }
+        }
+    }
+
+    // Computes the row of word q for a path of the given length, that ends with 'symbol',
+    // and returns the cut-off distance. The first 'shared' cells are copied from word p.
+    private int computeRow(int q, int n, int symbol, int p, int shared) {
+        int[] word = words[q];
+        int[] last = rows[q][n - 1];
+        int[] row = rows[q][n];
+        int i = 0;
+        if (shared > 0) {
+            // The cells 0..shared only depend on the path and the common prefix.
+            System.arraycopy(rows[p][n], 0, row, 0, shared + 1);
+            i = shared + 1;
+        } else {
+            row[0] = n;
+            i = 1;
+        }
+        for (; i <= word.length; i++) {
+            if (word[i - 1] == symbol) {
+                row[i] = last[i - 1];
+            } else {
+                row[i] = 1 + Math.min(last[i - 1], Math.min(last[i], row[i - 1]));
+            }
+        }
+
+        // The cut-off distance as in CutOffEditDistance.
+        int ret = Integer.MAX_VALUE;
+        int to = Math.min(word.length, n + errorThreshold);
+        for (i = Math.max(1, n - errorThreshold); i <= to; i++) {
+            ret = Math.min(ret, row[i]);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,75 @@
+package de.up.ling.stud.automaton;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * All words of the lexicon that are within an error threshold of a misspelled
+ * word, together with their edit distance. The set does not depend on the
+ * context of the word, so it can be reused for every occurrence of the word.
+ * It must not be changed after it has been completed.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class CandidateSet {
+
+    private final IntArrayList wordIDs;
+    private final IntArrayList distances;
+    private int threshold;
+    private boolean partial;
+
+    CandidateSet() {
+        this.wordIDs = new IntArrayList();
+        this.distances = new IntArrayList();
+        this.threshold = 0;
+        this.partial = false;
+    }
+
+    void add(int wordID, int distance) {
+        wordIDs.add(wordID);
+        distances.add(distance);
+    }
+
+    void addAll(CandidateSet other) {
+        wordIDs.addAll(other.wordIDs);
+        distances.addAll(other.distances);
+    }
+
+    int size() {
+        return wordIDs.size();
+    }
+
+    int getWordID(int index) {
+        return wordIDs.getInt(index);
+    }
+
+    int getDistance(int index) {
+        return distances.getInt(index);
+    }
+
+    /**
+     * Returns the error threshold that was used to find the candidates.
+     *
+     * @return Error threshold.
+     */
+    int getThreshold() {
+        return threshold;
+    }
+
+    void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns true, if the search has been stopped before all candidates
+     * were found. A word can be in a partial set twice.
+     *
+     * @return True, if the set is incomplete.
+     */
+    boolean isPartial() {
+        return partial;
+    }
+
+    void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+}
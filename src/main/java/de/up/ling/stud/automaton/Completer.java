@@ -0,0 +1,305 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Completes the prefix of a word to the most probable words of the lexicon,
+ * e.g. for type-ahead in an editor. The best words below every node of the
+ * lexicon, that has at least minWords words below it, are computed once when
+ * the completer is created, so a completion only has to find the node of the
+ * prefix and copy its list. The words below a smaller node are collected when
+ * they are needed, there are only a few of them. A node with a single
+ * successor, that is not a word itself, shares the list of its successor.
+ *
+ * The lists are sorted by the frequency of the words. Completions in a
+ * context reorder the list of the prefix by the language model, so a word
+ * that is rare on its own but likely in the context can be missed, if it is
+ * not among the listSize most frequent words of the prefix.
+ *
+ * A completer can be used by many threads at once.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class Completer {
+
+    private final StringTrieView data;
+    private final int listSize;
+    private final int minWords;
+    // The best words below the large nodes of the lexicon.
+    private final Reference2ObjectOpenHashMap<LexiconTrie, int[]> lists;
+    private long storedWords;
+    // Distance calculators for the typo tolerant completion. They keep mutable matrices.
+    private final ThreadLocal<EditDistance> editDistances;
+    private final ThreadLocal<CutOffEditDistance> cutOffEditDistances;
+    // Sorts wordIDs by their frequency, the most frequent word first.
+    private final AbstractIntComparator byFrequency = new AbstractIntComparator() {
+        @Override
+        public int compare(int wordID1, int wordID2) {
+            int cmp = Integer.compare(data.getFrequency(wordID2), data.getFrequency(wordID1));
+            return cmp != 0 ? cmp : Integer.compare(wordID1, wordID2);
+        }
+    };
+
+    /**
+     * Creates a completer, that keeps 10 words for every node with at least
+     * 32 words below it.
+     *
+     * @param data
+     */
+    public Completer(StringTrieView data) {
+        this(data, 10, 32);
+    }
+
+    /**
+     * Creates a completer for the data and computes the lists of the best
+     * words. This walks once through the whole lexicon.
+     *
+     * @param data
+     * @param listSize Maximal number of completions, that are kept for a
+     * prefix.
+     * @param minWords Lists are only kept for the nodes, that have at least
+     * this many words below them. Smaller values need more memory, but make
+     * completions of long prefixes faster.
+     */
+    public Completer(StringTrieView data, int listSize, int minWords) {
+        if (listSize < 1) {
+            throw new IllegalArgumentException("listSize must be at least 1: " + listSize);
+        }
+        this.data = data;
+        this.listSize = listSize;
+        this.minWords = minWords;
+        this.lists = new Reference2ObjectOpenHashMap<LexiconTrie, int[]>();
+        this.storedWords = 0;
+        this.editDistances = new ThreadLocal<EditDistance>() {
+            @Override
+            protected EditDistance initialValue() {
+                return new EditDistance();
+            }
+        };
+        this.cutOffEditDistances = new ThreadLocal<CutOffEditDistance>() {
+            @Override
+            protected CutOffEditDistance initialValue() {
+                return new CutOffEditDistance(new EditDistance());
+            }
+        };
+        build(data.getLexicon(), new int[1]);
+        lists.trim();
+    }
+
+    // Returns the best words below a node and keeps them, if the node is large enough.
+    // 'count' receives the number of words below the node.
+    private int[] build(LexiconTrie node, int[] count) {
+        IntArrayList merged = new IntArrayList();
+        int words = 0;
+        if (node.isFinal() && data.isInLanguageModel(node.getID())) {
+            merged.add(node.getID());
+            ++words;
+        }
+        int successors = 0;
+        int[] lastList = null;
+        int[] successorCount = new int[1];
+        IntIterator symbolIt = node.getAllTransitions().iterator();
+        while (symbolIt.hasNext()) {
+            lastList = build(node.getSubtrieByTransitionSymbol(symbolIt.nextInt()), successorCount);
+            words += successorCount[0];
+            merged.addElements(merged.size(), lastList);
+            ++successors;
+        }
+        int[] ret = (successors == 1 && merged.size() == lastList.length) ? lastList : best(merged.toIntArray());
+        count[0] = words;
+        if (words >= minWords) {
+            lists.put(node, ret);
+            if (ret != lastList) {
+                storedWords += ret.length;
+            }
+        }
+        return ret;
+    }
+
+    // Sorts the words by their frequency and returns at most listSize of them.
+    private int[] best(int[] wordIDs) {
+        IntArrays.quickSort(wordIDs, byFrequency);
+        return wordIDs.length <= listSize ? wordIDs : IntArrays.trim(wordIDs, listSize);
+    }
+
+    // Returns the best words below a node, from its list or by collecting them.
+    private int[] wordsBelow(LexiconTrie node) {
+        int[] ret = lists.get(node);
+        if (ret == null) {
+            IntArrayList words = new IntArrayList();
+            Stack<LexiconTrie> agenda = new Stack<LexiconTrie>();
+            agenda.push(node);
+            while (!agenda.empty()) {
+                LexiconTrie current = agenda.pop();
+                if (current.isFinal() && data.isInLanguageModel(current.getID())) {
+                    words.add(current.getID());
+                }
+                IntIterator symbolIt = current.getAllTransitions().iterator();
+                while (symbolIt.hasNext()) {
+                    agenda.push(current.getSubtrieByTransitionSymbol(symbolIt.nextInt()));
+                }
+            }
+            ret = best(words.toIntArray());
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the most frequent words, that start with a prefix, together with
+     * their (logarithmic) probability.
+     *
+     * @param prefix
+     * @param maxResults At most listSize completions are returned.
+     * @return Completions, the most probable one first.
+     */
+    public List<Pair<String, Double>> complete(String prefix, int maxResults) {
+        return completeInContext(new String[]{prefix}, maxResults);
+    }
+
+    /**
+     * Returns the most probable words in a context, that start with a prefix.
+     *
+     * @param context [PrevWord1, PrevWord2, Prefix]
+     * @param maxResults At most listSize completions are returned.
+     * @return Completions with their (logarithmic) back-off probability in the
+     * context, the most probable one first.
+     */
+    public List<Pair<String, Double>> completeInContext(String[] context, int maxResults) {
+        List<Pair<String, Double>> ret = new ArrayList<Pair<String, Double>>();
+        LexiconTrie node = data.getLexicon().find(data.encode(context[context.length - 1]));
+        if (node == null) {
+            return ret;
+        }
+        int[] wordIDs = wordsBelow(node);
+        int[] key = resolveContext(context);
+        final double[] probabilities = new double[wordIDs.length];
+        Integer[] order = new Integer[wordIDs.length];
+        for (int i = 0; i < wordIDs.length; i++) {
+            key[0] = wordIDs[i];
+            probabilities[i] = data.getBackOffProbability(key);
+            order[i] = i;
+        }
+        if (key.length > 1) {
+            // Without context the list is already sorted. Sorting is stable, so ties keep their order.
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer i, Integer j) {
+                    return Double.compare(probabilities[j], probabilities[i]);
+                }
+            });
+        }
+        for (int rank = 0; rank < maxResults && rank < order.length; rank++) {
+            ret.add(new Pair<String, Double>(data.getWordAsString(wordIDs[order[rank]]), probabilities[order[rank]]));
+        }
+        return ret;
+    }
+
+    /**
+     * Completes a prefix, that may contain typing errors. Like the search of
+     * the Corrector, the lexicon is walked as long as the cut-off edit
+     * distance between the prefix and the path stays within the threshold.
+     * Every node, whose path is within the threshold, adds the best words
+     * below it. The completions are sorted by the edit distance of their
+     * prefix and then by their frequency.
+     *
+     * @param prefix
+     * @param maxDistance Maximal edit distance between the prefix and the
+     * beginning of a completion.
+     * @param maxResults
+     * @return Completions with their (logarithmic) probability.
+     */
+    public List<Pair<String, Double>> completeWithErrors(String prefix, int maxDistance, int maxResults) {
+        int[] typed = data.encode(prefix);
+        EditDistance editDistance = editDistances.get();
+        CutOffEditDistance cutOffEditDistance = cutOffEditDistances.get();
+        final Int2IntOpenHashMap distances = new Int2IntOpenHashMap();
+
+        Stack<int[]> paths = new Stack<int[]>();
+        Stack<LexiconTrie> nodes = new Stack<LexiconTrie>();
+        paths.push(new int[0]);
+        nodes.push(data.getLexicon());
+        while (!nodes.empty()) {
+            int[] path = paths.pop();
+            LexiconTrie node = nodes.pop();
+            int distance = (typed.length - path.length > maxDistance) ? Integer.MAX_VALUE : editDistance.calcDistance(typed, path);
+            if (distance <= maxDistance) {
+                for (int wordID : wordsBelow(node)) {
+                    if (!distances.containsKey(wordID) || distances.get(wordID) > distance) {
+                        distances.put(wordID, distance);
+                    }
+                }
+            }
+            IntIterator symbolIt = node.getAllTransitions().iterator();
+            while (symbolIt.hasNext()) {
+                int symbol = symbolIt.nextInt();
+                int[] nextPath = Arrays.copyOf(path, path.length + 1);
+                nextPath[path.length] = symbol;
+                // No extension of the path can get closer to the prefix than its cut-off distance.
+                if (cutOffEditDistance.calcCutOffDistance(typed, nextPath, maxDistance) <= maxDistance) {
+                    paths.push(nextPath);
+                    nodes.push(node.getSubtrieByTransitionSymbol(symbol));
+                }
+            }
+        }
+
+        int[] wordIDs = distances.keySet().toIntArray();
+        IntArrays.quickSort(wordIDs, new AbstractIntComparator() {
+            @Override
+            public int compare(int wordID1, int wordID2) {
+                int cmp = Integer.compare(distances.get(wordID1), distances.get(wordID2));
+                return cmp != 0 ? cmp : byFrequency.compare(wordID1, wordID2);
+            }
+        });
+        List<Pair<String, Double>> ret = new ArrayList<Pair<String, Double>>();
+        int[] key = new int[1];
+        for (int rank = 0; rank < maxResults && rank < wordIDs.length; rank++) {
+            key[0] = wordIDs[rank];
+            ret.add(new Pair<String, Double>(data.getWordAsString(wordIDs[rank]), data.getBackOffProbability(key)));
+        }
+        return ret;
+    }
+
+    // Returns the IDs of the previous words in reversed order, cell 0 is the place for the completion.
+    private int[] resolveContext(String[] context) {
+        int length = Math.min(context.length, data.getNGram());
+        int[] ret = new int[length];
+        for (int i = 1; i < length; i++) {
+            ret[i] = data.getWordID(context[context.length - 1 - i]);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of nodes, that keep a list of their best words.
+     *
+     * @return Number of lists.
+     */
+    public int getStoredLists() {
+        return lists.size();
+    }
+
+    /**
+     * Returns the number of entries in all lists. Lists that are shared by
+     * several nodes are counted once.
+     *
+     * @return Number of wordIDs in the lists.
+     */
+    public long getStoredWords() {
+        return storedWords;
+    }
+
+    @Override
+    public String toString() {
+        return "Completer{" + "listSize=" + listSize + ", minWords=" + minWords + ", lists=" + lists.size() + ", storedWords=" + storedWords + '}';
+    }
+}
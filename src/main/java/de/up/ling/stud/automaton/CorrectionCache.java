@@ -0,0 +1,84 @@
+package de.up.ling.stud.automaton;
+
+import java.util.List;
+
+/**
+ * Cache for the Corrector, that can be shared by all correctors of the same
+ * data. It has two tiers: The first one maps a word and the IDs of its context
+ * to the final ranking of the candidates. The second one maps a word alone to
+ * its candidates and their edit distances, so that a known word in a new
+ * context only has to be scored by the language model again.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class CorrectionCache {
+
+    private final SegmentedLruCache<IntArrayKey, RankedCandidates> results;
+    private final SegmentedLruCache<IntArrayKey, CandidateSet> candidates;
+
+    /**
+     * Creates a cache with a maximal number of entries for each tier.
+     *
+     * @param maxResults Maximal number of rankings (word in context).
+     * @param maxWords Maximal number of candidate sets (word without
+     * context).
+     */
+    public CorrectionCache(int maxResults, int maxWords) {
+        this.results = new SegmentedLruCache<IntArrayKey, RankedCandidates>(maxResults);
+        this.candidates = new SegmentedLruCache<IntArrayKey, CandidateSet>(maxWords);
+    }
+
+    RankedCandidates getResult(IntArrayKey wordInContext) {
+        return results.get(wordInContext);
+    }
+
+    void putResult(IntArrayKey wordInContext, RankedCandidates result) {
+        results.put(wordInContext, result);
+    }
+
+    CandidateSet getCandidates(IntArrayKey word) {
+        return candidates.get(word);
+    }
+
+    void putCandidates(IntArrayKey word, CandidateSet candidateSet) {
+        candidates.put(word, candidateSet);
+    }
+
+    // Returns the words, whose candidates are in the cache.
+    List<IntArrayKey> getCandidateKeys() {
+        return candidates.keys();
+    }
+
+    /**
+     * Removes all entries. This must be done, when the data changes, because
+     * the entries are based on wordIDs.
+     */
+    public void clear() {
+        results.clear();
+        candidates.clear();
+    }
+
+    /**
+     * Returns the tier for words in context, e.g. to read its statistics.
+     *
+     * @return Cache for rankings.
+     */
+    public SegmentedLruCache<?, ?> getResultCache() {
+        return results;
+    }
+
+    /**
+     * Returns the tier for words without context, e.g. to read its
+     * statistics.
+     *
+     * @return Cache for candidate sets.
+     */
+    public SegmentedLruCache<?, ?> getCandidateCache() {
+        return candidates;
+    }
+
+    @Override
+    public String toString() {
+        return "results: " + results + ", candidates: " + candidates;
+    }
+}
@@ -0,0 +1,303 @@
+package de.up.ling.stud.automaton;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latencies and counters of the correctors, that share this object (see
+ * Corrector.setMetrics(CorrectionMetrics)). The latencies of the words are
+ * kept in separate histograms for words of the lexicon and unknown words and
+ * for the threshold, up to which the candidates have been searched. Words that
+ * have been accepted without a search and results from the cache have their
+ * own histograms.
+ *
+ * Every corrector records into its own Recorder, so many threads can record
+ * at once without sharing a single cell. Reading the metrics merges the
+ * recorders. The metrics can be read over JMX (see registerMBean(String)) or
+ * as text in the Prometheus exposition format (see toText()).
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class CorrectionMetrics implements CorrectionMetricsMBean {
+
+    /**
+     * The threshold of a word, that has been accepted without a search.
+     */
+    public static final int ACCEPTED = -2;
+    /**
+     * The threshold of a word, whose result has been found in the cache.
+     */
+    public static final int CACHED = -1;
+    // Histograms per kind of word: accepted, cached and the thresholds up to SearchStats.THRESHOLDS - 1.
+    private static final int OUTCOMES = SearchStats.THRESHOLDS + 2;
+    // cells of the counters
+    private static final int CORRECTIONS = 0;
+    private static final int ACCEPTED_WORDS = 1;
+    private static final int RESULT_CACHE_HITS = 2;
+    private static final int CANDIDATE_CACHE_HITS = 3;
+    private static final int PARTIAL_RESULTS = 4;
+    private static final double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+    private final List<Recorder> recorders;
+
+    /**
+     * Records the latencies of a single corrector. Only one thread may record
+     * at a time.
+     */
+    static final class Recorder {
+
+        // histograms[0] for unknown words, [1] for words of the lexicon
+        private final LatencyHistogram[][] histograms;
+        private final AtomicLongArray counters;
+
+        private Recorder() {
+            this.histograms = new LatencyHistogram[2][OUTCOMES];
+            for (int known = 0; known < 2; known++) {
+                for (int i = 0; i < OUTCOMES; i++) {
+                    histograms[known][i] = new LatencyHistogram();
+                }
+            }
+            this.counters = new AtomicLongArray(5);
+        }
+
+        /**
+         * Records the correction of a word.
+         *
+         * @param known True, if the word is in the lexicon.
+         * @param threshold The threshold that has been searched, ACCEPTED or
+         * CACHED.
+         * @param candidatesCached True, if the candidates have been found in
+         * the cache.
+         * @param partial True, if the search ran out of its budget.
+         * @param nanos Latency.
+         */
+        void record(boolean known, int threshold, boolean candidatesCached, boolean partial, long nanos) {
+            histograms[known ? 1 : 0][outcome(threshold)].record(nanos);
+            increment(CORRECTIONS);
+            if (threshold == ACCEPTED) {
+                increment(ACCEPTED_WORDS);
+            } else if (threshold == CACHED) {
+                increment(RESULT_CACHE_HITS);
+            } else if (candidatesCached) {
+                increment(CANDIDATE_CACHE_HITS);
+            }
+            if (partial) {
+                increment(PARTIAL_RESULTS);
+            }
+        }
+
+        private void increment(int counter) {
+            counters.lazySet(counter, counters.get(counter) + 1);
+        }
+    }
+
+    /**
+     * Creates empty metrics.
+     */
+    public CorrectionMetrics() {
+        this.recorders = new CopyOnWriteArrayList<Recorder>();
+    }
+
+    /**
+     * Returns a new recorder for a corrector.
+     *
+     * @return Recorder, whose values are part of these metrics.
+     */
+    Recorder newRecorder() {
+        Recorder ret = new Recorder();
+        recorders.add(ret);
+        return ret;
+    }
+
+    private static int outcome(int threshold) {
+        return Math.min(threshold, SearchStats.THRESHOLDS - 1) + 2;
+    }
+
+    private long sum(int counter) {
+        long ret = 0;
+        for (Recorder recorder : recorders) {
+            ret += recorder.counters.get(counter);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the latencies of a kind of word, merged from all correctors.
+     *
+     * @param known True for the words of the lexicon.
+     * @param threshold The threshold that has been searched, ACCEPTED or
+     * CACHED. Higher thresholds are counted with SearchStats.THRESHOLDS - 1.
+     * @return Copy of the histogram.
+     */
+    public LatencyHistogram getLatencies(boolean known, int threshold) {
+        LatencyHistogram ret = new LatencyHistogram();
+        for (Recorder recorder : recorders) {
+            ret.add(recorder.histograms[known ? 1 : 0][outcome(threshold)]);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the latencies of all kinds of words for known or unknown words.
+     *
+     * @param known True for the words of the lexicon.
+     * @return Copy of the histogram.
+     */
+    public LatencyHistogram getLatencies(boolean known) {
+        LatencyHistogram ret = new LatencyHistogram();
+        for (Recorder recorder : recorders) {
+            for (LatencyHistogram histogram : recorder.histograms[known ? 1 : 0]) {
+                ret.add(histogram);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the latencies of all words.
+     *
+     * @return Copy of the histogram.
+     */
+    public LatencyHistogram getLatencies() {
+        LatencyHistogram ret = getLatencies(false);
+        ret.add(getLatencies(true));
+        return ret;
+    }
+
+    public long getCorrections() {
+        return sum(CORRECTIONS);
+    }
+
+    public long getAccepted() {
+        return sum(ACCEPTED_WORDS);
+    }
+
+    public long getResultCacheHits() {
+        return sum(RESULT_CACHE_HITS);
+    }
+
+    public long getCandidateCacheHits() {
+        return sum(CANDIDATE_CACHE_HITS);
+    }
+
+    public long getPartialResults() {
+        return sum(PARTIAL_RESULTS);
+    }
+
+    public double getMeanMicros() {
+        return getLatencies().getMean() / 1e3;
+    }
+
+    public double getP50Micros() {
+        return getLatencies().getValueAtPercentile(50) / 1e3;
+    }
+
+    public double getP90Micros() {
+        return getLatencies().getValueAtPercentile(90) / 1e3;
+    }
+
+    public double getP99Micros() {
+        return getLatencies().getValueAtPercentile(99) / 1e3;
+    }
+
+    public double getP999Micros() {
+        return getLatencies().getValueAtPercentile(99.9) / 1e3;
+    }
+
+    public double getMaxMicros() {
+        return getLatencies().getMax() / 1e3;
+    }
+
+    public double getKnownWordP99Micros() {
+        return getLatencies(true).getValueAtPercentile(99) / 1e3;
+    }
+
+    public double getUnknownWordP99Micros() {
+        return getLatencies(false).getValueAtPercentile(99) / 1e3;
+    }
+
+    public String getText() {
+        return toText();
+    }
+
+    /**
+     * Registers these metrics at the platform MBean server with the name
+     * de.up.ling.stud.automaton:type=CorrectionMetrics,name=...
+     *
+     * @param name
+     * @return The name of the MBean.
+     * @throws JMException
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName ret = new ObjectName("de.up.ling.stud.automaton:type=CorrectionMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, ret);
+        return ret;
+    }
+
+    /**
+     * Returns the metrics in the text format of Prometheus: the counters and
+     * a summary with the quantiles 0.5, 0.9, 0.99 and 0.999 of the latencies
+     * in seconds for every kind of word, that has been seen.
+     *
+     * @return Metrics, one per line.
+     */
+    public String toText() {
+        StringBuilder buf = new StringBuilder();
+        appendCounter(buf, "spellchecker_corrections_total", "Corrected words.", "", getCorrections());
+        appendCounter(buf, "spellchecker_accepted_total", "Words accepted without a search.", "", getAccepted());
+        appendCounter(buf, "spellchecker_cache_hits_total", "Words found in the cache.", "{tier=\"results\"}", getResultCacheHits());
+        buf.append("spellchecker_cache_hits_total{tier=\"candidates\"} ").append(getCandidateCacheHits()).append('\n');
+        appendCounter(buf, "spellchecker_partial_results_total", "Searches that ran out of their budget.", "", getPartialResults());
+
+        buf.append("# HELP spellchecker_correction_seconds Latency of a word.\n");
+        buf.append("# TYPE spellchecker_correction_seconds summary\n");
+        for (int known = 0; known < 2; known++) {
+            for (int threshold = ACCEPTED; threshold < SearchStats.THRESHOLDS; threshold++) {
+                LatencyHistogram histogram = getLatencies(known == 1, threshold);
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                String labels = "word=\"" + (known == 1 ? "known" : "unknown") + "\",threshold=\"" + thresholdLabel(threshold) + "\"";
+                for (double quantile : quantiles) {
+                    buf.append("spellchecker_correction_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                            .append(seconds(histogram.getValueAtPercentile(100 * quantile))).append('\n');
+                }
+                buf.append("spellchecker_correction_seconds_sum{").append(labels).append("} ").append(seconds(histogram.getSum())).append('\n');
+                buf.append("spellchecker_correction_seconds_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+            }
+        }
+        return buf.toString();
+    }
+
+    private static void appendCounter(StringBuilder buf, String name, String help, String labels, long value) {
+        buf.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        buf.append("# TYPE ").append(name).append(" counter\n");
+        buf.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String thresholdLabel(int threshold) {
+        if (threshold == ACCEPTED) {
+            return "accepted";
+        } else if (threshold == CACHED) {
+            return "cached";
+        } else if (threshold == SearchStats.THRESHOLDS - 1) {
+            return threshold + "+";
+        }
+        return Integer.toString(threshold);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "corrections=%d accepted=%d resultCacheHits=%d candidateCacheHits=%d partial=%d p50=%.1fus p99=%.1fus max=%.1fus",
+                getCorrections(), getAccepted(), getResultCacheHits(), getCandidateCacheHits(), getPartialResults(),
+                getP50Micros(), getP99Micros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,43 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * The attributes of CorrectionMetrics, that are shown over JMX, e.g. in
+ * jconsole. The latencies are given in microseconds over all corrected words.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public interface CorrectionMetricsMBean {
+
+    long getCorrections();
+
+    long getAccepted();
+
+    long getResultCacheHits();
+
+    long getCandidateCacheHits();
+
+    long getPartialResults();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    double getKnownWordP99Micros();
+
+    double getUnknownWordP99Micros();
+
+    /**
+     * Returns all metrics in the text format of CorrectionMetrics.toText().
+     *
+     * @return Metrics as text.
+     */
+    String getText();
+}
@@ -0,0 +1,576 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running server that keeps a loaded StringTrie in memory and answers
+ * correction requests on a local port. The server only binds to the loopback
+ * interface. Every connection has a thread of its own, that reads its
+ * requests, and each request is answered by a worker of a bounded pool. So a
+ * worker is only busy while it answers a request, and clients can keep their
+ * connections open without blocking others. HEALTH, METRICS and HTTP requests
+ * are answered by the thread of the connection right away, so they never wait
+ * for a worker. Connections beyond the limit (see setMaxConnections(int)) are
+ * refused with a line starting with ERR. All workers share the same frozen
+ * view of the data, but every request takes a Corrector of the model, that no
+ * other request uses at the same time, because a Corrector holds mutable
+ * matrices for the edit distance. The data can be replaced while the server
+ * is running (see ModelHandle), a request is always answered with the model,
+ * that was current when it arrived.
+ *
+ * The protocol is line based (UTF-8). Each request is a single line, each
+ * response is a single line, except for METRICS:
+ *
+ * <pre>
+ * HEALTH                           -> OK
+ * STATS                            -> OK results: size=.. hits=.. ...
+ * METRICS                          -> the metrics (see CorrectionMetrics.toText()),
+ *                                     several lines ended by an empty line
+ * RELOAD file [encoding]           -> OK generation n (after the model from the
+ *                                     file has replaced the current one)
+ * CORRECT n [prev2 prev1] word     -> OK cand1 score1 cand2 score2 ...
+ *                                     (PARTIAL instead of OK, if the search
+ *                                     ran out of its budget)
+ * COMPLETE n [prev2 prev1] prefix  -> OK word1 logprob1 word2 logprob2 ...
+ * FUZZY n distance prefix          -> OK word1 logprob1 ... (the prefix may
+ *                                     contain errors, see Completer)
+ * NGRAM                            -> OK n (the n-gram size of the model)
+ * IDS word1 word2 ...              -> OK id1 id2 ... (- for the empty word)
+ * SHARD n known word [id1 id2 ...] -> OK result (see ShardResult.toString(),
+ *                                     for a RemoteShard)
+ * SHUTDOWN                         -> OK (the server stops afterwards)
+ * QUIT                             -> closes the connection
+ * </pre>
+ *
+ * Unknown or malformed requests are answered with a line starting with ERR.
+ * A scraper can also read the metrics with an HTTP request for /metrics.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class CorrectionServer {
+
+    private final ModelHandle models;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final ExecutorService readers;
+    private volatile int maxConnections;
+    private final ThreadLocal<CorrectionMetrics.Recorder> recorders;
+    private final Set<Socket> connections;
+    private final Thread acceptThread;
+    private volatile ForkJoinPool parallelSearch;
+    private volatile AcceptRule acceptRule;
+    private volatile long maxExpansions;
+    private volatile long timeoutNanos;
+    private final CorrectionMetrics metrics;
+    private volatile boolean running;
+    private static final String encoding = "UTF-8";
+
+    /**
+     * Creates a new server for a given StringTrie. The trie will be frozen.
+     * Use port 0 to let the system choose a free port. The server does not
+     * accept connections, before start() is called.
+     *
+     * @param data
+     * @param port
+     * @param threads Maximal number of requests that are answered at once.
+     * @throws IOException
+     */
+    public CorrectionServer(StringTrie data, int port, int threads) throws IOException {
+        this(new ModelHandle(data), port, threads);
+    }
+
+    /**
+     * Creates a new server for the models of a handle. Use port 0 to let the
+     * system choose a free port. The server does not accept connections,
+     * before start() is called.
+     *
+     * @param models
+     * @param port
+     * @param threads Maximal number of requests that are answered at once.
+     * @throws IOException
+     */
+    public CorrectionServer(ModelHandle models, int port, int threads) throws IOException {
+        this.models = models;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.readers = Executors.newCachedThreadPool();
+        this.maxConnections = 256;
+        this.connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+        this.running = false;
+        this.maxExpansions = Long.MAX_VALUE;
+        this.timeoutNanos = Long.MAX_VALUE;
+        this.metrics = new CorrectionMetrics();
+
+        // Every worker records into its own part of the metrics, see acquireCorrector(ModelHandle.Model).
+        this.recorders = new ThreadLocal<CorrectionMetrics.Recorder>() {
+            @Override
+            protected CorrectionMetrics.Recorder initialValue() {
+                return metrics.newRecorder();
+            }
+        };
+
+        this.acceptThread = new Thread(new Runnable() {
+            public void run() {
+                acceptConnections();
+            }
+        }, "CorrectionServer-accept");
+    }
+
+    /**
+     * Limits the number of open connections (default: 256). Further
+     * connections are answered with an error and closed. Must be called before
+     * start().
+     *
+     * @param maxConnections
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Lets the correctors of this server split the search for long words
+     * between the threads of a pool. Must be called before start().
+     *
+     * @param pool
+     */
+    public void setParallelSearch(ForkJoinPool pool) {
+        this.parallelSearch = pool;
+    }
+
+    /**
+     * Lets all correctors of this server share a cache. Must be called before
+     * start(). The models that replace the current one get a cache of the
+     * same size.
+     *
+     * @param cache
+     */
+    public void setCache(CorrectionCache cache) {
+        models.setCache(cache);
+    }
+
+    /**
+     * Lets all correctors of this server accept plausible words of the lexicon
+     * without a search. Must be called before start().
+     *
+     * @param acceptRule
+     */
+    public void setAcceptRule(AcceptRule acceptRule) {
+        this.acceptRule = acceptRule;
+    }
+
+    /**
+     * Limits the work for every requested word, see
+     * Corrector.setBudget(long, long, TimeUnit). Must be called before
+     * start().
+     *
+     * @param maxExpansions
+     * @param timeout
+     * @param unit
+     */
+    public void setBudget(long maxExpansions, long timeout, TimeUnit unit) {
+        this.maxExpansions = maxExpansions;
+        this.timeoutNanos = (timeout == Long.MAX_VALUE) ? Long.MAX_VALUE : unit.toNanos(timeout);
+    }
+
+    /**
+     * Lets all correctors of this server look up candidates for small
+     * thresholds in an index, that has been built for the same data. Must be
+     * called before start(). The models that replace the current one get an
+     * index of their own.
+     *
+     * @param deletionIndex
+     */
+    public void setDeletionIndex(DeletionIndex deletionIndex) {
+        models.setDeletionIndex(deletionIndex);
+    }
+
+    /**
+     * Returns the handle for the models of this server, e.g. to swap in a new
+     * one.
+     *
+     * @return Handle of the models.
+     */
+    public ModelHandle getModels() {
+        return models;
+    }
+
+    /**
+     * Returns the latencies and counters of all requested words.
+     *
+     * @return Metrics of this server.
+     */
+    public CorrectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Builds the Completer of the model and starts accepting connections in a
+     * background thread.
+     */
+    public void start() {
+        // COMPLETE and FUZZY must not walk the lexicon on the first request.
+        models.enableCompletions();
+        running = true;
+        acceptThread.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return Port number.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns true, as long as the server accepts new requests.
+     *
+     * @return True, if the server is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops the server gracefully: No new connections are accepted, requests
+     * that are currently processed are answered, afterwards all connections
+     * are closed. Calling this method more than once has no effect.
+     *
+     * @param timeout Maximal time in ms to wait for running requests.
+     */
+    public synchronized void shutdown(long timeout) {
+        if (!running && serverSocket.isClosed()) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close(); // unblocks accept()
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        // Closing the input side unblocks idle connections, while requests that
+        // are processed right now can still write their answer.
+        for (Socket socket : connections) {
+            try {
+                socket.shutdownInput();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        // Requests that are queued or answered right now are finished.
+        workers.shutdown();
+        readers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeout, TimeUnit.MILLISECONDS)
+                    || !readers.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                // Force the remaining connections to close.
+                for (Socket socket : connections) {
+                    closeQuietly(socket);
+                }
+                workers.shutdownNow();
+                readers.shutdownNow();
+            }
+            acceptThread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until the server has been shut down.
+     *
+     * @throws InterruptedException
+     */
+    public void awaitTermination() throws InterruptedException {
+        acceptThread.join();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        readers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    ///// Connection handling
+    ////////////////////////////////////////////////////////////////////////////
+    private void acceptConnections() {
+        while (running) {
+            try {
+                final Socket socket = serverSocket.accept();
+                if (connections.size() >= maxConnections) {
+                    refuse(socket);
+                    continue;
+                }
+                connections.add(socket);
+                readers.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            handleConnection(socket);
+                        } finally {
+                            connections.remove(socket);
+                            closeQuietly(socket);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The pool has been shut down in the meantime.
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Tells a client, that there are too many connections, and closes its socket.
+    private static void refuse(Socket socket) {
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), encoding));
+            out.write("ERR too many connections");
+            out.newLine();
+            out.flush();
+        } catch (IOException e) {
+            // the client is gone already
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), encoding));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), encoding));
+
+            String request;
+            while (running && (request = in.readLine()) != null) {
+                if (request.trim().equals("QUIT")) {
+                    break;
+                }
+                if (request.startsWith("GET ")) {
+                    answerHttp(request, in, out);
+                    break;
+                }
+                out.write(schedule(request.trim()));
+                out.newLine();
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // connection was closed by the client or during shutdown
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // Answers a request on a worker and waits for the answer. Requests that
+    // do not need a corrector are answered on the thread of the connection.
+    private String schedule(final String request) {
+        if (request.equals("HEALTH") || request.equals("METRICS")) {
+            return answer(request);
+        }
+        try {
+            return workers.submit(new Callable<String>() {
+                public String call() {
+                    return answer(request);
+                }
+            }).get();
+        } catch (RejectedExecutionException e) {
+            return "ERR shutting down";
+        } catch (ExecutionException e) {
+            return "ERR " + e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERR interrupted";
+        }
+    }
+
+    // Computes the response line for a single request line.
+    String answer(String request) {
+        String[] parts = request.split("\\s+");
+
+        if (parts[0].equals("HEALTH")) {
+            return running ? "OK" : "ERR shutting down";
+        } else if (parts[0].equals("CORRECT")) {
+            if (parts.length < 3) {
+                return "ERR usage: CORRECT n [context ...] word";
+            }
+            int numCandidates;
+            try {
+                numCandidates = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                return "ERR not a number: " + parts[1];
+            }
+            String[] words = new String[parts.length - 2];
+            System.arraycopy(parts, 2, words, 0, words.length);
+            return correct(words, numCandidates);
+        } else if (parts[0].equals("COMPLETE") || parts[0].equals("FUZZY")) {
+            boolean fuzzy = parts[0].equals("FUZZY");
+            if (parts.length < 3 || (fuzzy && parts.length != 4)) {
+                return fuzzy ? "ERR usage: FUZZY n distance prefix" : "ERR usage: COMPLETE n [context ...] prefix";
+            }
+            try {
+                int numCompletions = Integer.parseInt(parts[1]);
+                Completer completer = models.get().getCompleter();
+                if (fuzzy) {
+                    return format("OK", completer.completeWithErrors(parts[3], Integer.parseInt(parts[2]), numCompletions), numCompletions);
+                }
+                String[] words = new String[parts.length - 2];
+                System.arraycopy(parts, 2, words, 0, words.length);
+                return format("OK", completer.completeInContext(words, numCompletions), numCompletions);
+            } catch (NumberFormatException e) {
+                return "ERR not a number: " + e.getMessage();
+            }
+        } else if (parts[0].equals("NGRAM")) {
+            return "OK " + models.get().getData().getNGram();
+        } else if (parts[0].equals("IDS")) {
+            StringTrieView data = models.get().getData();
+            StringBuilder ret = new StringBuilder("OK");
+            for (int i = 1; i < parts.length; i++) {
+                ret.append(' ').append(data.getWordID(parts[i].equals("-") ? "" : parts[i]));
+            }
+            return ret.toString();
+        } else if (parts[0].equals("SHARD")) {
+            if (parts.length < 4) {
+                return "ERR usage: SHARD n known word [contextID ...]";
+            }
+            try {
+                return searchShard(parts);
+            } catch (NumberFormatException e) {
+                return "ERR " + e.getMessage();
+            }
+        } else if (parts[0].equals("STATS")) {
+            CorrectionCache cache = models.get().getCache();
+            return cache == null ? "OK no cache" : "OK " + cache;
+        } else if (parts[0].equals("METRICS")) {
+            return metrics.toText(); // ends with a line break, so the answer ends with an empty line
+        } else if (parts[0].equals("RELOAD")) {
+            if (parts.length < 2 || parts.length > 3) {
+                return "ERR usage: RELOAD file [encoding]";
+            }
+            return reload(parts[1], parts.length == 3 ? parts[2] : encoding);
+        } else if (parts[0].equals("SHUTDOWN")) {
+            // Shut down from another thread, so that this worker can finish its request.
+            new Thread(new Runnable() {
+                public void run() {
+                    shutdown(10000);
+                }
+            }, "CorrectionServer-shutdown").start();
+            return "OK";
+        } else {
+            return "ERR unknown command: " + parts[0];
+        }
+    }
+
+    // Answers an HTTP request for the metrics and ignores its headers.
+    private void answerHttp(String requestLine, BufferedReader in, BufferedWriter out) throws IOException {
+        for (String header = in.readLine(); header != null && header.length() > 0; header = in.readLine()) {
+            // skip
+        }
+        String[] parts = requestLine.split("\\s+");
+        if (parts.length >= 2 && parts[1].equals("/metrics")) {
+            byte[] body = metrics.toText().getBytes(encoding);
+            out.write("HTTP/1.0 200 OK\r\n"
+                    + "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"
+                    + "Content-Length: " + body.length + "\r\n\r\n");
+            out.write(new String(body, encoding));
+        } else {
+            out.write("HTTP/1.0 404 Not Found\r\nContent-Length: 0\r\n\r\n");
+        }
+        out.flush();
+    }
+
+    // Corrects the last word in 'words' and formats the top candidates.
+    private String correct(String[] words, int numCandidates) {
+        ModelHandle.Model model = models.get(); // used for the whole request
+        int nGram = model.getData().getNGram();
+
+        // Use the last n words as window.
+        String[] window = new String[Math.min(nGram, words.length)];
+        System.arraycopy(words, words.length - window.length, window, 0, window.length);
+
+        Corrector corrector = acquireCorrector(model);
+        try {
+            Iterable<Pair<String, Double>> candidates = corrector.correctWordInContext(window);
+            return format(corrector.isLastResultPartial() ? "PARTIAL" : "OK", candidates, numCandidates);
+        } finally {
+            model.releaseCorrector(corrector);
+        }
+    }
+
+    // Formats the first words and their scores.
+    private static String format(String status, Iterable<Pair<String, Double>> words, int numWords) {
+        Iterator<Pair<String, Double>> wordIt = words.iterator();
+        StringBuilder ret = new StringBuilder(status);
+        for (int i = 0; i < numWords && wordIt.hasNext(); i++) {
+            Pair<String, Double> word = wordIt.next();
+            ret.append(' ').append(word.left).append(' ').append(word.right);
+        }
+        return ret.toString();
+    }
+
+    // Searches the candidates of the shard, that this server holds, for a ShardedCorrector in another process.
+    private String searchShard(String[] parts) {
+        int maxResults = Integer.parseInt(parts[1]);
+        boolean known = parts[2].equals("1");
+        ModelHandle.Model model = models.get();
+        int[] context = new int[parts.length - 3]; // cell 0 is the place for the candidates
+        for (int i = 1; i < context.length; i++) {
+            context[i] = Integer.parseInt(parts[3 + i]);
+        }
+        Corrector corrector = acquireCorrector(model);
+        try {
+            return "OK " + corrector.searchShard(model.getData().encode(parts[3]), known, context, maxResults);
+        } finally {
+            model.releaseCorrector(corrector);
+        }
+    }
+
+    // Takes a corrector of the model for a request and sets the options of this server.
+    // No thread keeps a reference to a model after its request, so an old model is freed
+    // after a swap. The corrector records into the metrics of this worker.
+    private Corrector acquireCorrector(ModelHandle.Model model) {
+        Corrector corrector = model.acquireCorrector();
+        corrector.setParallelSearch(parallelSearch);
+        corrector.setAcceptRule(acceptRule);
+        corrector.setBudget(maxExpansions, timeoutNanos, TimeUnit.NANOSECONDS);
+        corrector.setMetricsRecorder(recorders.get());
+        return corrector;
+    }
+
+    // Loads a model and waits, until it has replaced the current one.
+    private String reload(String filename, String modelEncoding) {
+        try {
+            return "OK generation " + models.reload(filename, modelEncoding).get().getGeneration();
+        } catch (ExecutionException e) {
+            return "ERR " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERR interrupted";
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
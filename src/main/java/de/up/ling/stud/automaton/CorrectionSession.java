@@ -0,0 +1,114 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.util.Arrays;
+
+/**
+ * Corrects the words of a text one after another. The session keeps the IDs
+ * of the last n-1 words, so every word is looked up in the lexicon only once
+ * instead of once for every position it has in the context window. The
+ * symbols of the current word are decoded into a buffer that is reused for the
+ * next word.
+ *
+ * A session must only be used by one thread at a time, like its Corrector.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class CorrectionSession {
+
+    private final Corrector corrector;
+    private final StringTrieView data;
+    // IDs of the previous words in reversed order: The last word is in cell 1.
+    // Cell 0 is the place for the candidates.
+    private final int[] contextIDs;
+    private int[] wordBuffer;
+
+    /**
+     * Creates a session, that uses the n-gram size of the data as context.
+     *
+     * @param corrector
+     */
+    public CorrectionSession(Corrector corrector) {
+        this(corrector, corrector.getData().getNGram());
+    }
+
+    /**
+     * Creates a session, that uses the last nGram-1 words as context.
+     *
+     * @param corrector
+     * @param nGram
+     */
+    public CorrectionSession(Corrector corrector, int nGram) {
+        this.corrector = corrector;
+        this.data = corrector.getData();
+        this.contextIDs = new int[nGram];
+        this.wordBuffer = new int[32];
+        reset();
+    }
+
+    /**
+     * Corrects a word in the context of the words before it. Afterwards the
+     * word becomes part of the context.
+     *
+     * @param word
+     * @return Iterable over word-weight tuples
+     */
+    public Iterable<Pair<String, Double>> correctNext(String word) {
+        int length = decode(word);
+        int wordID = data.getWordID(wordBuffer, length);
+        Iterable<Pair<String, Double>> ret = corrector.correctWordInContext(wordBuffer, length, wordID, contextIDs);
+        shift(wordID);
+        return ret;
+    }
+
+    /**
+     * Corrects a word like correctNext(String), but writes the best candidates
+     * to a buffer.
+     *
+     * @param word
+     * @param result Buffer for the candidates. Its old content is replaced.
+     * @return Number of candidates in the buffer.
+     */
+    public int correctNext(String word, ResultBuffer result) {
+        int length = decode(word);
+        int wordID = data.getWordID(wordBuffer, length);
+        corrector.correctWordInContext(wordBuffer, length, wordID, contextIDs, result);
+        shift(wordID);
+        return result.size();
+    }
+
+    /**
+     * Adds a word to the context without correcting it.
+     *
+     * @param word
+     */
+    public void push(String word) {
+        int length = decode(word);
+        shift(data.getWordID(wordBuffer, length));
+    }
+
+    /**
+     * Forgets all previous words. The context is filled with delimiters, like
+     * at the beginning of a text.
+     */
+    public final void reset() {
+        Arrays.fill(contextIDs, StringTrie.DELIMITER_ID);
+        contextIDs[0] = StringTrie.UNKNOWN_WORD_ID; // dummy value
+    }
+
+    // Moves the context by one word.
+    private void shift(int wordID) {
+        if (contextIDs.length > 1) {
+            System.arraycopy(contextIDs, 1, contextIDs, 2, contextIDs.length - 2);
+            contextIDs[1] = wordID;
+        }
+    }
+
+    // Writes the symbol codes of the word to the buffer and returns its length.
+    private int decode(String word) {
+        if (word.length() > wordBuffer.length) {
+            wordBuffer = new int[Math.max(word.length(), 2 * wordBuffer.length)];
+        }
+        return data.getAlphabet().encode(word, wordBuffer);
+    }
+}
@@ -1,13 +1,21 @@
 package de.up.ling.stud.automaton;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
 import de.saar.basic.Pair;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Analyzes a given misspelled word that can be in a context and delivers a
@@ -17,10 +25,9 @@ import java.util.Stack;
  */
 public class Corrector {
 
-    private StringTrie data;
+    private final StringTrieView data;
     private final EditDistance editDistance;
     private final CutOffEditDistance cutOffEditDistance;
-    private final Comparator<WeightedWord> compareWeigtedWords;
     /**
      * The maximum error threshold for candidates.
      */
@@ -29,28 +36,110 @@ public class Corrector {
      * The minimal number of candidates that should be found.
      */
     private final int minCandidates;
+    static final int MIN_CANDIDATES = 5; // also used to merge the results of shards
+    /**
+     * The maximal number of ranked candidates that are returned.
+     */
+    private int maxResults;
+    /**
+     * The maximal number of expanded nodes and the time in ns for a single
+     * correction. Long.MAX_VALUE for no limit.
+     */
+    private long maxExpansions;
+    private long timeoutNanos;
+    // True, if the last result has been cut short by the budget.
+    private boolean lastResultPartial;
+    /**
+     * Pool for the parallel search or null, if every word is searched on the
+     * calling thread.
+     */
+    private ForkJoinPool pool;
+    /**
+     * Cache for results or null.
+     */
+    private CorrectionCache cache;
+    /**
+     * Rule to accept words of the lexicon without a search or null.
+     */
+    private AcceptRule acceptRule;
+    /**
+     * Index of deletion variants for small thresholds or null.
+     */
+    private DeletionIndex deletionIndex;
+    /**
+     * Skip subtries by the bounds of their words (see LexiconTrie.computeBounds()).
+     */
+    private boolean pruning;
+    /**
+     * Counters for all calls and for the last one or null, if nothing is
+     * counted.
+     */
+    private SearchStats totalStats;
+    private SearchStats lastStats;
+    /**
+     * Recorder for the latencies or null.
+     */
+    private CorrectionMetrics.Recorder metrics;
+    // How the last word has been corrected, for the metrics: the threshold that has been searched
+    // (CorrectionMetrics.ACCEPTED or CACHED without a search) and whether the candidates came from the cache.
+    private int lastThreshold;
+    private boolean lastCandidatesCached;
+    // Only every n-th word is recorded as a Flight Recorder event (see Events).
+    private static final int eventSampling = Math.max(1, Integer.getInteger("spellchecker.jfr.sampling", 100));
+    private int sinceEvent;
+    // Distance calculators for the threads of the pool. They keep mutable matrices.
+    private final ThreadLocal<EditDistance> editDistances;
+    private final ThreadLocal<CutOffEditDistance> cutOffEditDistances;
+    // Minimal estimated cost (words in the subtrie * wordlength * (threshold + 1)), from which on
+    // a subtrie is searched by a task of its own.
+    private static final long parallelMinCost = 8192;
 
     /**
      * Creates a new corrector based on a StringTrie, that has to contain some
-     * data.
+     * data. The trie will be frozen.
      *
      * @param data
      */
     public Corrector(StringTrie data) {
+        this(data.freeze());
+    }
+
+    /**
+     * Creates a new corrector based on a frozen StringTrie. Many correctors
+     * can share the same view, but a single corrector must only be used by
+     * one thread at a time.
+     *
+     * @param data
+     */
+    public Corrector(StringTrieView data) {
         this.data = data;
         this.maxThreshold = 5;
-        this.minCandidates = 5;
+        this.minCandidates = MIN_CANDIDATES;
+        this.maxResults = Integer.MAX_VALUE;
+        this.maxExpansions = Long.MAX_VALUE;
+        this.timeoutNanos = Long.MAX_VALUE;
+        this.lastResultPartial = false;
         this.editDistance = new EditDistance();
         this.cutOffEditDistance = new CutOffEditDistance(editDistance);
-
-        // define comparator for the queue
-        compareWeigtedWords = new Comparator<WeightedWord>() {
-            public int compare(WeightedWord elem1, WeightedWord elem2) {
-                return (elem1.getWordID() == elem2.getWordID())
-                        ? 0 // elements are equal
-                        : (elem1.getWeight() > elem2.getWeight()
-                        ? 1 // elem1 is greater
-                        : -1);		// elem1 is smaller
+        this.pool = null;
+        this.cache = null;
+        this.acceptRule = null;
+        this.pruning = true;
+        this.deletionIndex = null;
+        this.totalStats = null;
+        this.lastStats = null;
+        this.metrics = null;
+        this.sinceEvent = 0;
+        this.editDistances = new ThreadLocal<EditDistance>() {
+            @Override
+            protected EditDistance initialValue() {
+                return new EditDistance();
+            }
+        };
+        this.cutOffEditDistances = new ThreadLocal<CutOffEditDistance>() {
+            @Override
+            protected CutOffEditDistance initialValue() {
+                return new CutOffEditDistance(new EditDistance());
             }
         };
     }
@@ -70,50 +159,609 @@ public class Corrector {
      * @return Iterable over word-weight tuples
      */
     public Iterable<Pair<String, Double>> correctWordInContext(String[] context) {
+        return asPairs(rankInContext(context));
+    }
+
+    /**
+     * Corrects the last word in a given context and writes the best
+     * candidates to a buffer. Unlike correctWordInContext(String[]), no
+     * Strings or tuples are created for the candidates.
+     *
+     * @param context [PrevWord1, PrevWord2, MisspelledWord]
+     * @param result Buffer for the candidates. Its old content is replaced.
+     * @return Number of candidates in the buffer.
+     */
+    public int correctWordInContext(String[] context, ResultBuffer result) {
+        RankedCandidates ranking = rankInContext(context);
+        result.fill(ranking, data, data.getWordID(context[context.length - 1]));
+        return result.size();
+    }
+
+    /**
+     * Corrects the last word of many contexts at once. The words, that have
+     * neither been accepted nor been found in the cache, are searched with a
+     * single walk through the lexicon for each threshold, instead of one walk
+     * per word. This pays off for the many distinct unknown words of a whole
+     * document. The budget does not apply to a batch.
+     *
+     * @param contexts [PrevWord1, PrevWord2, MisspelledWord] for every word
+     * @return Iterable over word-weight tuples for every context, in the same
+     * order.
+     */
+    public List<Iterable<Pair<String, Double>>> correctBatch(List<String[]> contexts) {
+        int numQueries = contexts.size();
+        RankedCandidates[] results = new RankedCandidates[numQueries];
+        int[][] contextIDs = new int[numQueries][];
+        IntArrayKey[] resultKeys = new IntArrayKey[numQueries];
+
+        // Take the accepted and cached results, collect the other words only once.
+        Map<IntArrayKey, Integer> distinctWords = new HashMap<IntArrayKey, Integer>();
+        List<int[]> words = new ArrayList<int[]>();
+        List<Boolean> inLexicon = new ArrayList<Boolean>();
+        int[] wordIndex = new int[numQueries];
+        for (int i = 0; i < numQueries; i++) {
+            String[] context = contexts.get(i);
+            int[] word = data.encode(context[context.length - 1]);
+            int wordID = data.getWordID(word);
+            contextIDs[i] = resolveContext(context);
+            if (acceptRule != null) {
+                results[i] = acceptIfPlausible(wordID, contextIDs[i], null);
+            }
+            if (results[i] == null && cache != null) {
+                resultKeys[i] = IntArrayKey.forWordInContext(word, word.length, contextIDs[i], 1);
+                results[i] = cache.getResult(resultKeys[i]);
+            }
+            if (results[i] == null) {
+                IntArrayKey wordKey = new IntArrayKey(word);
+                Integer index = distinctWords.get(wordKey);
+                if (index == null) {
+                    index = words.size();
+                    distinctWords.put(wordKey, index);
+                    words.add(word);
+                    inLexicon.add(wordID != StringTrie.UNKNOWN_WORD_ID);
+                }
+                wordIndex[i] = index;
+            }
+        }
+
+        CandidateSet[] candidates = findCandidates(words, inLexicon);
+        List<Iterable<Pair<String, Double>>> ret = new ArrayList<Iterable<Pair<String, Double>>>(numQueries);
+        for (int i = 0; i < numQueries; i++) {
+            if (results[i] == null) {
+                results[i] = rank(candidates[wordIndex[i]], contextIDs[i], null);
+                if (cache != null) {
+                    cache.putResult(resultKeys[i], results[i]);
+                }
+            }
+            ret.add(asPairs(results[i]));
+        }
+        lastResultPartial = false;
+        return ret;
+    }
+
+    // Resolves the words of the context and ranks the candidates for the last one.
+    private RankedCandidates rankInContext(String[] context) {
         assert data != null;
+        int[] misspelledWord = data.encode(context[context.length - 1]);
+        return rankCandidates(misspelledWord, misspelledWord.length, data.getWordID(misspelledWord), resolveContext(context));
+    }
+
+    // Returns the IDs of the previous words of a context in reversed order.
+    private int[] resolveContext(String[] context) {
         int nGram = context.length;
         int[] wordIDs = new int[nGram];
-        int[] misspelledWord = StringTrie.stringToIntArray(context[nGram - 1]);
-        int localMaxThreshold = maxThreshold; // The maximum of editdistances that we consider.
 
         // create the context for the language model:
-        // Convert every context word to an int array and get the wordID of it.
-        // As soon as a context word is not found, stop the process.
+        // Convert every context word to its symbol codes and get the wordID of it.
+        // Unknown words get an ID, that is not in the language model, so it backs off there.
         // In the new array, the context is reversed so that the misspelled word is
         // at position 0. This is neccecary for an efficient lookup in the language model.
         for (int i = 1; i < nGram; i++) {
-            int[] wordAsIntArray = StringTrie.stringToIntArray(context[nGram - i - 1]);
-            wordIDs[i] = data.getWordID(wordAsIntArray);
+            wordIDs[i] = data.getWordID(context[nGram - i - 1]);
         }
         wordIDs[0] = -1; // Set a dummy value for the cell, where the candidates will be placed.
+        return wordIDs;
+    }
 
-        // Check first, if the word is in the lexicon (must not be the correct one though)
-        boolean inLexicon = data.contains(misspelledWord);
+    /**
+     * Corrects a word, whose ID and context have already been resolved. This
+     * is used by CorrectionSession, so that every token is resolved only once.
+     *
+     * @param word Buffer that holds the word in its first cells. It is not
+     * kept after the call.
+     * @param wordLength Length of the word.
+     * @param wordID ID of the word or StringTrie.UNKNOWN_WORD_ID.
+     * @param context IDs of the previous words, the nearest one in cell 1.
+     * Cell 0 is ignored.
+     * @return Iterable over word-weight tuples
+     */
+    Iterable<Pair<String, Double>> correctWordInContext(int[] word, int wordLength, int wordID, int[] context) {
+        return asPairs(rankCandidates(word, wordLength, wordID, context));
+    }
+
+    /**
+     * Like correctWordInContext(int[], int, int, int[]), but writes the best
+     * candidates to a buffer.
+     *
+     * @param word
+     * @param wordLength
+     * @param wordID
+     * @param context
+     * @param result
+     * @return Number of candidates in the buffer.
+     */
+    int correctWordInContext(int[] word, int wordLength, int wordID, int[] context, ResultBuffer result) {
+        result.fill(rankCandidates(word, wordLength, wordID, context), data, wordID);
+        return result.size();
+    }
+
+    // Returns the ranked candidates for a word from the cache or by searching them.
+    private RankedCandidates rankCandidates(int[] word, int wordLength, int wordID, int[] context) {
+        long start = (metrics != null) ? System.nanoTime() : 0;
+        Events.Correction event = null;
+        if (++sinceEvent >= eventSampling) {
+            sinceEvent = 0;
+            event = new Events.Correction();
+            event.begin();
+        }
+        SearchStats stats = null;
+        if (totalStats != null) {
+            stats = new SearchStats();
+            stats.countQuery();
+        }
+        RankedCandidates result = rankWithinBudget(word, wordLength, wordID, context, stats);
+        lastResultPartial = result.isPartial();
+        if (stats != null) {
+            totalStats.add(stats);
+            lastStats = stats;
+        }
+        if (metrics != null) {
+            metrics.record(wordID != StringTrie.UNKNOWN_WORD_ID, lastThreshold, lastCandidatesCached, result.isPartial(), System.nanoTime() - start);
+        }
+        if (event != null && event.shouldCommit()) {
+            event.wordLength = wordLength;
+            event.known = wordID != StringTrie.UNKNOWN_WORD_ID;
+            event.candidates = result.size();
+            event.partial = result.isPartial();
+            event.samplingInterval = eventSampling;
+            event.commit();
+        }
+        return result;
+    }
+
+    private RankedCandidates rankWithinBudget(int[] word, int wordLength, int wordID, int[] context, SearchStats stats) {
+        RankedCandidates result = null;
+        IntArrayKey resultKey = null;
+        lastThreshold = CorrectionMetrics.ACCEPTED;
+        lastCandidatesCached = false;
+        if (acceptRule != null) {
+            result = acceptIfPlausible(wordID, context, stats);
+        }
+        if (result == null && cache != null) {
+            lastThreshold = CorrectionMetrics.CACHED;
+            resultKey = IntArrayKey.forWordInContext(word, wordLength, context, 1);
+            result = cache.getResult(resultKey);
+            if (result != null && stats != null) {
+                stats.countCacheHit();
+            }
+        }
+        if (result == null) {
+            int[] misspelledWord = (word.length == wordLength) ? word : Arrays.copyOf(word, wordLength);
+            SearchBudget budget = (maxExpansions == Long.MAX_VALUE && timeoutNanos == Long.MAX_VALUE)
+                    ? null : new SearchBudget(maxExpansions, timeoutNanos);
+            CandidateSet candidates = findCandidates(misspelledWord, wordID != StringTrie.UNKNOWN_WORD_ID, budget, stats);
+            lastThreshold = candidates.getThreshold();
+            result = rank(candidates, context, stats);
+            // An incomplete result must not be returned for the next occurrence.
+            if (cache != null && !result.isPartial()) {
+                cache.putResult(resultKey, result);
+            }
+        }
+        return result;
+    }
+
+    // Transforms the candidates to strings only when needed.
+    private Iterable<Pair<String, Double>> asPairs(final RankedCandidates ranking) {
+        return new Iterable<Pair<String, Double>>() {
+            public Iterator<Pair<String, Double>> iterator() {
+                return new Iterator<Pair<String, Double>>() {
+                    private int rank = 0;
+
+                    public boolean hasNext() {
+                        return rank < ranking.size();
+                    }
+
+                    public Pair<String, Double> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        String wordAsString = data.getWordAsString(ranking.getWordID(rank));
+                        Pair<String, Double> ret = new Pair<String, Double>(wordAsString, ranking.getWeight(rank));
+                        ++rank;
+                        return ret;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    // Returns the data, that this corrector works on.
+    StringTrieView getData() {
+        return data;
+    }
+
+    /**
+     * Limits the work for a single word. When the budget is used up, the
+     * search stops and the best candidates found so far are returned. Such a
+     * result is marked as partial and is not cached.
+     *
+     * @param maxExpansions Maximal number of expanded trie nodes (exact up to
+     * a few hundred) or Long.MAX_VALUE for no limit.
+     * @param timeout Maximal time or Long.MAX_VALUE for no limit.
+     * @param unit Unit of the timeout.
+     */
+    public void setBudget(long maxExpansions, long timeout, TimeUnit unit) {
+        this.maxExpansions = maxExpansions;
+        this.timeoutNanos = (timeout == Long.MAX_VALUE) ? Long.MAX_VALUE : unit.toNanos(timeout);
+    }
+
+    /**
+     * Returns true, if the budget was used up while the last word was
+     * corrected, so that its candidates may be incomplete.
+     *
+     * @return True, if the last result is partial.
+     */
+    public boolean isLastResultPartial() {
+        return lastResultPartial;
+    }
+
+    /**
+     * Uses a cache for the results, that can be shared with other correctors
+     * of the same data. Pass null to disable caching (default).
+     *
+     * @param cache
+     */
+    public void setCache(CorrectionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Accepts words of the lexicon without a search, when the rule says they
+     * are plausible in their context. Other words, that are in the lexicon, are
+     * still compared to their neighbours with an edit distance of 1. Pass null
+     * to always search (default).
+     *
+     * @param acceptRule
+     */
+    public void setAcceptRule(AcceptRule acceptRule) {
+        this.acceptRule = acceptRule;
+    }
+
+    /**
+     * Enables or disables skipping subtries by the lengths and the symbols of
+     * their words (default: enabled). The results are the same, only the work
+     * differs, so this is meant for tests and measurements.
+     *
+     * @param enabled
+     */
+    void setPruning(boolean enabled) {
+        this.pruning = enabled;
+    }
+
+    /**
+     * Counts the work of every call in a SearchStats object. While counting
+     * is disabled (default), the counters cost nothing but a null check.
+     * Enabling it resets the counters.
+     *
+     * @param enabled
+     */
+    public void setStatsEnabled(boolean enabled) {
+        this.totalStats = enabled ? new SearchStats() : null;
+        this.lastStats = null;
+    }
+
+    /**
+     * Returns the counters of the last word, that has been corrected with
+     * counting enabled, or null. The object is not changed by later calls.
+     *
+     * @return Counters of the last call.
+     */
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Returns the sum of the counters of all words, that have been corrected
+     * since counting was enabled, or null, if counting is disabled. Words of a
+     * batch are not counted.
+     *
+     * @return Counters of all calls.
+     */
+    public SearchStats getTotalStats() {
+        return totalStats;
+    }
+
+    /**
+     * Records the latency of every word in shared metrics. Every corrector
+     * gets its own recorder, so correctors on many threads do not slow each
+     * other down. Pass null to record nothing (default).
+     *
+     * @param metrics
+     */
+    public void setMetrics(CorrectionMetrics metrics) {
+        this.metrics = (metrics == null) ? null : metrics.newRecorder();
+    }
+
+    // Records into a recorder, that is owned by the calling thread, e.g. of a server worker.
+    void setMetricsRecorder(CorrectionMetrics.Recorder recorder) {
+        this.metrics = recorder;
+    }
+
+    /**
+     * Searches the candidates of a word and puts them in the cache, so that
+     * the first request for the word is answered quickly. Does nothing
+     * without a cache.
+     *
+     * @param word
+     */
+    void prefetchCandidates(String word) {
+        if (cache != null) {
+            int[] misspelledWord = data.encode(word);
+            findCandidates(misspelledWord, data.getWordID(misspelledWord) != StringTrie.UNKNOWN_WORD_ID, null, null);
+        }
+    }
+
+    /**
+     * Searches the candidates for a word in the data of a single shard (see
+     * ShardedCorrector). Unlike a normal correction, the result keeps the edit
+     * distance of every candidate and the number of candidates for every
+     * distance, so that the results of all shards can be merged into the
+     * ranking, that a corrector for the whole model would return. A candidate
+     * is left out, if it can not be among the best maxResults candidates for
+     * any threshold.
+     *
+     * @param word Symbol codes of the word.
+     * @param known True, if the word is in the lexicon of any shard.
+     * @param context IDs of the previous words, the nearest one in cell 1.
+     * Cell 0 is ignored.
+     * @param maxResults
+     * @return Candidates of this shard.
+     */
+    ShardResult searchShard(int[] word, boolean known, int[] context, int maxResults) {
+        SearchBudget budget = (maxExpansions == Long.MAX_VALUE && timeoutNanos == Long.MAX_VALUE)
+                ? null : new SearchBudget(maxExpansions, timeoutNanos);
+        CandidateSet candidates = findCandidates(word, known, budget, null);
+        int size = candidates.size();
+        final int[] wordIDs = new int[size];
+        final double[] weights = new double[size];
+        int[] localContext = context.clone();
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            wordIDs[i] = candidates.getWordID(i);
+            localContext[0] = wordIDs[i];
+            weights[i] = weight(candidates.getDistance(i), data.getBackOffProbability(localContext));
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i, Integer j) {
+                int cmp = Double.compare(weights[i], weights[j]);
+                return cmp != 0 ? cmp : Integer.compare(wordIDs[i], wordIDs[j]);
+            }
+        });
+
+        // Walk from the best candidate on and keep it, if less than maxResults better
+        // candidates have the same or a smaller distance. A partial set can hold a word twice.
+        int threshold = candidates.getThreshold();
+        int[] counts = new int[threshold + 1];
+        IntOpenHashSet seen = new IntOpenHashSet(size);
+        IntArrayList kept = new IntArrayList();
+        for (int i : order) {
+            if (!seen.add(wordIDs[i])) {
+                continue;
+            }
+            int distance = candidates.getDistance(i);
+            int better = 0;
+            for (int d = 0; d <= distance; d++) {
+                better += counts[d];
+            }
+            if (better < maxResults) {
+                kept.add(i);
+            }
+            ++counts[distance];
+        }
+
+        int[] keptIDs = new int[kept.size()];
+        String[] keptWords = new String[kept.size()];
+        int[] keptDistances = new int[kept.size()];
+        double[] keptWeights = new double[kept.size()];
+        for (int k = 0; k < kept.size(); k++) {
+            int i = kept.getInt(k);
+            keptIDs[k] = wordIDs[i];
+            keptWords[k] = data.getWordAsString(wordIDs[i]);
+            keptDistances[k] = candidates.getDistance(i);
+            keptWeights[k] = weights[i];
+        }
+        lastResultPartial = candidates.isPartial();
+        return new ShardResult(threshold, counts, candidates.isPartial(), keptIDs, keptWords, keptDistances, keptWeights);
+    }
+
+    /**
+     * Looks up the candidates for all thresholds up to the maximal distance of
+     * an index instead of searching the trie. The index must have been built
+     * for the data of this corrector and can be shared with other correctors.
+     * Pass null to always search the trie (default).
+     *
+     * @param deletionIndex
+     */
+    public void setDeletionIndex(DeletionIndex deletionIndex) {
+        this.deletionIndex = deletionIndex;
+    }
+
+    // Returns the word itself as the only candidate, if it is in the lexicon and the language model
+    // and the accept rule says it is plausible in the context. Otherwise null. A word without
+    // n-grams has no probability (+inf), it must not be accepted with the best score.
+    private RankedCandidates acceptIfPlausible(int wordID, int[] context, SearchStats stats) {
+        if (wordID == StringTrie.UNKNOWN_WORD_ID || wordID == StringTrie.DELIMITER_ID || !data.isInLanguageModel(wordID)) {
+            return null;
+        }
+        int[] localContext = context.clone();
+        localContext[0] = wordID;
+        double backOffDistance = data.getBackOffProbability(localContext);
+        if (stats != null) {
+            stats.countLanguageModelLookups(1);
+        }
+        if (!acceptRule.accepts(data.getFrequency(wordID), backOffDistance)) {
+            return null;
+        }
+        if (stats != null) {
+            stats.countAccepted();
+        }
+        return new RankedCandidates(new int[]{wordID}, new double[]{weight(0, backOffDistance)});
+    }
+
+    // Returns all candidates for a word, that are within the smallest threshold
+    // that gives at least 'minCandidates' of them (but not more than 'maxThreshold').
+    // A word of the lexicon (must not be the correct one though) is only compared with its close neighbours.
+    private CandidateSet findCandidates(int[] misspelledWord, boolean inLexicon, SearchBudget budget, SearchStats stats) {
+        IntArrayKey wordKey = null;
+        if (cache != null) {
+            wordKey = IntArrayKey.copyOf(misspelledWord, misspelledWord.length);
+            CandidateSet candidates = cache.getCandidates(wordKey);
+            if (candidates != null) {
+                lastCandidatesCached = true;
+                if (stats != null) {
+                    stats.countCacheHit();
+                }
+                return candidates;
+            }
+        }
+
+        int localMaxThreshold = maxThreshold; // The maximum of editdistances that we consider.
         // If the current word is in the lexicon, we calculate only the distances from 1 to 2,
         // to check if the word is maybe very unplausible in the given context.
         if (inLexicon) {
             localMaxThreshold = 1;
         }
 
-        // Create a PriorityQueueSet, that has a special, destructive iterator (needed for the output -
-        // the default iterator ignores the order in the queue)
-        // and that makes sure, that there are no dublicted elements in the queue.
-        PriorityQueueSet<WeightedWord> candidates = new PriorityQueueSet<WeightedWord>(50, compareWeigtedWords);
+        // A search with a threshold finds all candidates of the smaller thresholds as well.
+        CandidateSet candidates;
+        CandidateSet complete = null; // the last set that has been searched completely
+        int threshold = 0;
+        while (true) {
+            candidates = correctWord(misspelledWord, threshold, budget, stats);
+            if (stats != null) {
+                stats.countSearch(threshold, candidates.size());
+            }
+            if (budget != null && budget.isExhausted()) {
+                // The search was stopped: Keep what has been found so far, but
+                // do not miss the candidates of the smaller threshold.
+                if (complete != null) {
+                    candidates.addAll(complete);
+                }
+                candidates.setPartial(true);
+                break;
+            }
+            if (candidates.size() >= minCandidates || threshold >= localMaxThreshold) {
+                break;
+            }
+            complete = candidates;
+            ++threshold;
+        }
+        candidates.setThreshold(threshold);
+        if (stats != null) {
+            stats.countThreshold(threshold, candidates.isPartial());
+        }
+
+        if (cache != null && !candidates.isPartial()) {
+            cache.putCandidates(wordKey, candidates);
+        }
+        return candidates;
+    }
 
-        for (int i = 0; i <= localMaxThreshold && candidates.size() < minCandidates; ++i) {
-            candidates.addAll(correctWord(misspelledWord, wordIDs, i));
+    // Like findCandidates(int[], boolean, SearchBudget, SearchStats) for many words. Each threshold
+    // is searched for all words, that still have too few candidates, at once.
+    private CandidateSet[] findCandidates(List<int[]> words, List<Boolean> inLexicon) {
+        CandidateSet[] ret = new CandidateSet[words.size()];
+        IntArrayKey[] wordKeys = new IntArrayKey[words.size()];
+        List<Integer> open = new ArrayList<Integer>();
+        for (int i = 0; i < words.size(); i++) {
+            if (cache != null) {
+                wordKeys[i] = new IntArrayKey(words.get(i));
+                ret[i] = cache.getCandidates(wordKeys[i]);
+            }
+            if (ret[i] == null) {
+                open.add(i);
+            }
         }
 
-        // Transform the items of the queue to strings only when needed
-        return Iterables.transform(candidates,
-                new Function<WeightedWord, Pair<String, Double>>() {
-            public Pair<String, Double> apply(WeightedWord word) {
-                int[] wordAsIntArray = data.getWordByID(word.getWordID());
-                String wordAsString = StringTrie.intArrayToString(wordAsIntArray);
+        int threshold = 0;
+        while (!open.isEmpty()) {
+            int[][] misspelledWords = new int[open.size()][];
+            for (int k = 0; k < open.size(); k++) {
+                misspelledWords[k] = words.get(open.get(k));
+            }
+            CandidateSet[] found;
+            if (deletionIndex != null && threshold <= deletionIndex.getMaxDistance()) {
+                found = new CandidateSet[misspelledWords.length];
+                for (int k = 0; k < misspelledWords.length; k++) {
+                    found[k] = lookUpCandidates(misspelledWords[k], threshold, null);
+                }
+            } else {
+                found = new BatchSearch(data, misspelledWords, threshold).search();
+            }
 
-                return new Pair<String, Double>(wordAsString, word.getWeight());
+            List<Integer> stillOpen = new ArrayList<Integer>();
+            for (int k = 0; k < open.size(); k++) {
+                int i = open.get(k);
+                int localMaxThreshold = inLexicon.get(i) ? 1 : maxThreshold;
+                if (found[k].size() >= minCandidates || threshold >= localMaxThreshold) {
+                    found[k].setThreshold(threshold);
+                    ret[i] = found[k];
+                    if (cache != null) {
+                        cache.putCandidates(wordKeys[i], found[k]);
+                    }
+                } else {
+                    stillOpen.add(i);
+                }
             }
-        });
+            open = stillOpen;
+            ++threshold;
+        }
+        return ret;
+    }
+
+    // Weights the candidates with the language model and sorts them.
+    private RankedCandidates rank(CandidateSet candidates, int[] context, SearchStats stats) {
+        // The heap keeps every word only once (with its best weight) and breaks ties by the wordID.
+        IndexedWordHeap queue = new IndexedWordHeap(candidates.size(), maxResults);
+        int[] localContext = context.clone();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            // Add the wordID of the candidate to the first cell of the context array.
+            localContext[0] = candidates.getWordID(i);
+            double backOffDistance = data.getBackOffProbability(localContext);
+            queue.offer(localContext[0], weight(candidates.getDistance(i), backOffDistance));
+        }
+        if (stats != null) {
+            stats.countLanguageModelLookups(candidates.size());
+        }
+        RankedCandidates ranking = queue.drain();
+        return candidates.isPartial() ? ranking.asPartial() : ranking;
+    }
+
+    // Combines the edit distance and the probability of a candidate. The smaller, the better.
+    private static double weight(int edDistance, double backOffDistance) {
+        // This is not the best way to weight the edit distance and the probability, but at least
+        // it is way...
+        if (backOffDistance == 0) { // Probaility of 1
+            return edDistance; //Avoid divistion by 0
+        } else {
+            return edDistance - (1 / backOffDistance);
+        }
     }
 
     /**
@@ -128,94 +776,203 @@ public class Corrector {
         return correctWordInContext(tempArray);
     }
 
-    //
     /**
-     * This method generates a priority queue for candidates the given word can
-     * be corrected to within a given error threshold.
+     * Returns only the best maxResults candidates for a word. The others are
+     * dropped while ranking, which saves time and memory, when a word has a
+     * lot of candidates. Default: all candidates are returned.
+     *
+     * @param maxResults
+     */
+    public void setMaxResults(int maxResults) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1: " + maxResults);
+        }
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Splits the search for a single word in subtries, that are searched in
+     * parallel by a fork/join pool. A subtrie gets a task of its own only, if
+     * it has enough words for the length of the word and the threshold,
+     * because otherwise the overhead is larger than the gain. Pass null to search on the calling thread only
+     * (default).
+     *
+     * @param pool
+     */
+    public void setParallelSearch(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * This method collects all candidates the given word can be corrected to
+     * within a given error threshold.
      *
      * @param misspelledWord
-     * @param context
      * @param errorThreshold
-     * @return PriorityQueue with all candidates for the misspelledWord.
+     * @param budget Budget for the search or null.
+     * @param stats Counters or null.
+     * @return All candidates for the misspelledWord with their edit distance.
      */
-    private PriorityQueue<WeightedWord> correctWord(int[] misspelledWord, int[] context, int errorThreshold) {
+    private CandidateSet correctWord(int[] misspelledWord, int errorThreshold, SearchBudget budget, SearchStats stats) {
+        // For small thresholds, a few lookups in the index are cheaper than the search.
+        if (deletionIndex != null && errorThreshold <= deletionIndex.getMaxDistance()) {
+            return lookUpCandidates(misspelledWord, errorThreshold, stats);
+        }
+
+        // Add a starting item: An empyy word and the whole trie (=> starting state)
+        AgendaItem start = new AgendaItem(new int[0], data.getLexicon(), 0L);
+        SymbolProfile profile = new SymbolProfile(misspelledWord);
+
+        if (pool != null && isLargeSubtrie(start.getTrie(), misspelledWord.length, errorThreshold)) {
+            SubtrieSearch task = new SubtrieSearch(misspelledWord, profile, errorThreshold, start, budget,
+                    stats == null ? null : new SearchStats());
+            CandidateSet candidates = pool.invoke(task);
+            if (stats != null) {
+                stats.add(task.stats);
+            }
+            return candidates;
+        }
+
+        // All possible candidates that the misspelled Word can be corrected to
+        // will be stored in this set.
+        CandidateSet candidates = new CandidateSet();
+        Stack<AgendaItem> agenda = new Stack<AgendaItem>();
+        agenda.push(start);
+        search(misspelledWord, profile, errorThreshold, agenda, editDistance, cutOffEditDistance, candidates, budget, stats);
+        return candidates;
+    }
+
+    // The number of cells that are computed for each visited state grows with the length of the word,
+    // the number of visited states grows with the threshold and the number of words in the subtrie.
+    private static boolean isLargeSubtrie(LexiconTrie trie, int wordLength, int errorThreshold) {
+        return (long) trie.getWordCount() * wordLength * (errorThreshold + 1) >= parallelMinCost;
+    }
+
+    // Verifies the hits of the deletion index with the exact edit distance. The lookup
+    // is not charged to the budget, its work does not grow with the size of the trie.
+    private CandidateSet lookUpCandidates(int[] misspelledWord, int errorThreshold, SearchStats stats) {
+        CandidateSet candidates = new CandidateSet();
+        if (stats != null) {
+            stats.countIndexLookup();
+        }
+        IntIterator hitIt = deletionIndex.lookup(misspelledWord, errorThreshold).iterator();
+        while (hitIt.hasNext()) {
+            int wordID = hitIt.next();
+            int[] word = data.getWordByID(wordID);
+            if (word == null || Math.abs(word.length - misspelledWord.length) > errorThreshold) {
+                continue;
+            }
+            int edDistance = editDistance.calcDistance(misspelledWord, word);
+            if (stats != null) {
+                stats.countDistance(misspelledWord.length, word.length);
+            }
+            if (edDistance <= errorThreshold && data.isInLanguageModel(wordID)) {
+                candidates.add(wordID, edDistance);
+            }
+        }
+        return candidates;
+    }
+
+    // Processes all items on the agenda and the items that are created for them.
+    private void search(int[] misspelledWord, SymbolProfile profile, int errorThreshold, Stack<AgendaItem> agenda,
+            EditDistance editDistance, CutOffEditDistance cutOffEditDistance, CandidateSet candidates, SearchBudget budget,
+            SearchStats stats) {
         // This is nearly a direct implementation of the algorithm of Oflazar.
         // It is agenda-driven (it hold unfinished concatenations of symbols
         // and a reference to the subtrie - a subtrie of 'lexicon'.
         // This reference is equivalent to the states that Oflazar uses).
-        Stack<AgendaItem> agenda = new Stack<AgendaItem>();
-        // All possible candidates that the misspelled Word can be corrected to
-        // will be stored in this sorted queue, so that the word with the highest
-        // probability is on the top.
-        PriorityQueue<WeightedWord> candidates = new PriorityQueue<WeightedWord>(20, compareWeigtedWords);
-
-        // Initializing variables:
-        LexiconTrie currentTrie;
-        int currentLength;
-        IntIterator symbolIt;
-        int coDistance;
-        int edDistance;
-
-        // Add a starting item: An empyy word and the whole trie (=> starting state)
-        agenda.add(new AgendaItem(new int[0], data.getLexicon()));
+        int sinceCheck = 0;
         while (!agenda.empty()) {
-            AgendaItem currentItem = agenda.pop();
-            int[] currentConcatenation = currentItem.getConcatenation();// current word
-            currentTrie = currentItem.getTrie();                   // current 'state'
-            currentLength = currentConcatenation.length;
-
-            // Iterate over all outgoing transitions
-            symbolIt = currentTrie.getAllTransitions().iterator();
-            while (symbolIt.hasNext()) {
-                int transitionSymbol = symbolIt.next();
-//                System.err.println("TransitionSymbol: " + (char) transitionSymbol);
-                // Creat the array for the new candidate. This candidate is like the
-                // current one, but with another symbol appended.
-                int[] newCandidate = new int[currentLength + 1];
-                // Copy the old concatenation to the new one and add the current symbol.
-                System.arraycopy(currentConcatenation, 0, newCandidate, 0, currentLength);
-                newCandidate[currentLength] = transitionSymbol;
-
-                // Now calculate the cutoff-edit distance
-                coDistance = cutOffEditDistance.calcCutOffDistance(misspelledWord, newCandidate, errorThreshold);
-                if (coDistance <= errorThreshold) {
-                    // If it is below the threshold, add it to the agenda.
-                    agenda.push(new AgendaItem(newCandidate, currentTrie.getSubtrieByTransitionSymbol(transitionSymbol)));
+            // Check the budget only every few hundred nodes.
+            if (budget != null && ++sinceCheck == SearchBudget.CHECK_INTERVAL) {
+                sinceCheck = 0;
+                if (!budget.charge(SearchBudget.CHECK_INTERVAL)) {
+                    return;
                 }
-
             }
-            // Also, if the state of the current candidate is final and the edit distance is ok, it is a valid cadidate.
-            edDistance = editDistance.calcDistance(misspelledWord, currentConcatenation);
-            if (edDistance <= errorThreshold && currentTrie.isFinal()) {
-                // Retrive the wordid of the candidate from the lexicon and add it to the first cell of the context array.
-                context[0] = data.getWordID(currentConcatenation);
+            if (stats != null) {
+                stats.countPop();
+            }
+            expand(agenda.pop(), misspelledWord, profile, errorThreshold, editDistance, cutOffEditDistance, agenda, candidates, stats);
+        }
+        // Small subtries of a parallel search never reach the interval, so the rest is charged, too.
+        if (budget != null && sinceCheck > 0) {
+            budget.charge(sinceCheck);
+        }
+    }
 
-                double backOffDistance = data.getBackOffProbability(context);
+    // Adds all successors of an item, that are within the threshold, to 'successors'
+    // and the item itself to the candidates, if it is a word within the threshold.
+    private void expand(AgendaItem currentItem, int[] misspelledWord, SymbolProfile profile, int errorThreshold,
+            EditDistance editDistance, CutOffEditDistance cutOffEditDistance,
+            List<AgendaItem> successors, CandidateSet candidates, SearchStats stats) {
+        int[] currentConcatenation = currentItem.getConcatenation();// current word
+        LexiconTrie currentTrie = currentItem.getTrie();                   // current 'state'
+        int currentLength = currentConcatenation.length;
+        int wordLength = misspelledWord.length;
 
-                // Make sure, the context is found in the model
-                if (backOffDistance < Double.POSITIVE_INFINITY) {
-                    // This is not the best way to weight the edit distance and the probability, but at least
-                    // it is way...
-                    double p;
-                    if (backOffDistance == 0) { // Probaility of 1
-                        p = edDistance; //Avoid divistion by 0
-                    } else {
-                        p = edDistance - (1 / backOffDistance);
+        // Iterate over all outgoing transitions
+        IntIterator symbolIt = currentTrie.getAllTransitions().iterator();
+        while (symbolIt.hasNext()) {
+            int transitionSymbol = symbolIt.next();
+            LexiconTrie nextTrie = currentTrie.getSubtrieByTransitionSymbol(transitionSymbol);
+
+            // Skip the subtrie, if the lengths of its words or their symbols alone
+            // differ too much from the misspelled word. Both are lower bounds of the
+            // edit distance, so no candidate is lost.
+            long pathMask = currentItem.getSymbolMask() | LexiconTrie.symbolBit(transitionSymbol);
+            if (pruning) {
+                int minLength = currentLength + 1 + nextTrie.getMinRemainingLength();
+                int maxLength = currentLength + 1 + nextTrie.getMaxRemainingLength();
+                if (minLength - wordLength > errorThreshold || wordLength - maxLength > errorThreshold) {
+                    if (stats != null) {
+                        stats.countPruned();
                     }
-//                    System.err.println("b=" + backOffDistance);
-//                    System.err.println("w=" + StringTrie.intArrayToString(currentConcatenation));
-//                    System.err.println("W=" + StringTrie.intArrayToString(misspelledWord));
-//                    System.err.println("e=" + edDistance);
-//                    System.err.println("p=" + p + "\n");
-                    WeightedWord word = new WeightedWord(context[0], p);
-                    if (!candidates.contains(word)) {
-                        candidates.add(word);
+                    continue;
+                }
+                if (profile.countMissing(pathMask | nextTrie.getSymbolMask()) > errorThreshold) {
+                    if (stats != null) {
+                        stats.countPruned();
                     }
+                    continue;
                 }
             }
+
+            // Creat the array for the new candidate. This candidate is like the
+            // current one, but with another symbol appended.
+            int[] newCandidate = new int[currentLength + 1];
+            // Copy the old concatenation to the new one and add the current symbol.
+            System.arraycopy(currentConcatenation, 0, newCandidate, 0, currentLength);
+            newCandidate[currentLength] = transitionSymbol;
+
+            // Now calculate the cutoff-edit distance
+            int coDistance = cutOffEditDistance.calcCutOffDistance(misspelledWord, newCandidate, errorThreshold);
+            if (stats != null) {
+                stats.countCutOffDistance(wordLength, newCandidate.length, errorThreshold);
+            }
+            if (coDistance <= errorThreshold) {
+                // If it is below the threshold, add it to the agenda.
+                successors.add(new AgendaItem(newCandidate, nextTrie, pathMask));
+                if (stats != null) {
+                    stats.countPush();
+                }
+            }
+
         }
+        // Also, if the state of the current candidate is final and the edit distance is ok, it is a valid cadidate.
+        if (currentTrie.isFinal()) {
+            int edDistance = editDistance.calcDistance(misspelledWord, currentConcatenation);
+            if (stats != null) {
+                stats.countDistance(wordLength, currentLength);
+            }
+            // The state of a final candidate holds its wordID.
+            int wordID = currentTrie.getID();
 
-        return candidates;
+            // Make sure, the word is found in the model
+            if (edDistance <= errorThreshold && data.isInLanguageModel(wordID)) {
+                candidates.add(wordID, edDistance);
+            }
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -228,10 +985,17 @@ public class Corrector {
 
         private final int[] concatenation;
         private final LexiconTrie subTrie;
+        private final long symbolMask;
 
-        public AgendaItem(int[] concatenation, LexiconTrie subTrie) {
+        public AgendaItem(int[] concatenation, LexiconTrie subTrie, long symbolMask) {
             this.concatenation = concatenation;
             this.subTrie = subTrie;
+            this.symbolMask = symbolMask;
+        }
+
+        // Mask of the symbols in the concatenation.
+        public long getSymbolMask() {
+            return symbolMask;
         }
 
         public int[] getConcatenation() {
@@ -249,53 +1013,109 @@ public class Corrector {
     }
 
     /**
-     * Holds a word as a wordID and its weight. Used for sorting in a
-     * PriorityQueue.
+     * Searches the subtrie below an agenda item. The successors of the item,
+     * that have large subtries, are searched by tasks of their own, that are
+     * stolen by idle threads of the pool. The small ones are searched by this
+     * task. Every task collects its candidates in a set of its own, the sets
+     * are merged when the tasks are joined.
      */
-    private class WeightedWord {
+    private class SubtrieSearch extends RecursiveTask<CandidateSet> {
 
-        private final int wordID;
-        private final double weight;
+        private static final long serialVersionUID = 1L;
 
-        public WeightedWord(int wordID, double weight) {
-            this.wordID = wordID;
-            this.weight = weight;
-        }
-
-        public int getWordID() {
-            return wordID;
-        }
+        private final int[] misspelledWord;
+        private final SymbolProfile profile;
+        private final int errorThreshold;
+        private final AgendaItem item;
+        private final SearchBudget budget;
+        // Counters of this task and the tasks it has joined or null.
+        private final SearchStats stats;
 
-        public double getWeight() {
-            return weight;
+        SubtrieSearch(int[] misspelledWord, SymbolProfile profile, int errorThreshold, AgendaItem item, SearchBudget budget,
+                SearchStats stats) {
+            this.misspelledWord = misspelledWord;
+            this.profile = profile;
+            this.errorThreshold = errorThreshold;
+            this.item = item;
+            this.budget = budget;
+            this.stats = stats;
         }
 
         @Override
-        public int hashCode() {
-            int hash = 5;
-            hash = 97 * hash + this.wordID;
-            hash = 97 * hash + (int) (Double.doubleToLongBits(this.weight) ^ (Double.doubleToLongBits(this.weight) >>> 32));
-            return hash;
-        }
+        protected CandidateSet compute() {
+            EditDistance localEditDistance = editDistances.get();
+            CutOffEditDistance localCutOffEditDistance = cutOffEditDistances.get();
+            CandidateSet candidates = new CandidateSet();
+            Stack<AgendaItem> successors = new Stack<AgendaItem>();
+            if (budget != null && budget.isExhausted()) {
+                return candidates;
+            }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
+            // The expansion of the split node is charged, and the deadline checked, before forking.
+            if (budget != null && !budget.charge(1)) {
+                return candidates;
             }
-            if (getClass() != obj.getClass()) {
-                return false;
+            if (stats != null) {
+                stats.countPop();
             }
-            final WeightedWord other = (WeightedWord) obj;
-            if (this.wordID != other.wordID) {
-                return false;
+            expand(item, misspelledWord, profile, errorThreshold, localEditDistance, localCutOffEditDistance, successors, candidates, stats);
+
+            List<SubtrieSearch> tasks = new ArrayList<SubtrieSearch>();
+            Stack<AgendaItem> agenda = new Stack<AgendaItem>();
+            for (AgendaItem successor : successors) {
+                if (isLargeSubtrie(successor.getTrie(), misspelledWord.length, errorThreshold)) {
+                    SubtrieSearch task = new SubtrieSearch(misspelledWord, profile, errorThreshold, successor, budget,
+                            stats == null ? null : new SearchStats());
+                    task.fork();
+                    tasks.add(task);
+                } else {
+                    agenda.push(successor);
+                }
             }
-            return true;
+            search(misspelledWord, profile, errorThreshold, agenda, localEditDistance, localCutOffEditDistance, candidates, budget, stats);
+            // Join the tasks in the reverse order, so that those not stolen are run by this thread.
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                SubtrieSearch task = tasks.get(i);
+                candidates.addAll(task.join());
+                if (stats != null) {
+                    stats.add(task.stats);
+                }
+            }
+            return candidates;
         }
+    }
 
-        @Override
-        public String toString() {
-            return "weightedWord{" + "wordID=" + wordID + ", weight=" + weight + '}';
+    /**
+     * Counts the symbols of the misspelled word by their bit in a symbol mask
+     * (see LexiconTrie.symbolBit(int)). Every symbol of the misspelled word,
+     * that does not occur in a candidate, has to be deleted or substituted, so
+     * their number is a lower bound of the edit distance.
+     */
+    static final class SymbolProfile {
+
+        private final long mask;
+        private final int[] counts;
+
+        SymbolProfile(int[] word) {
+            long wordMask = 0L;
+            int[] wordCounts = new int[64];
+            for (int symbol : word) {
+                wordMask |= LexiconTrie.symbolBit(symbol);
+                ++wordCounts[symbol & 63];
+            }
+            this.mask = wordMask;
+            this.counts = wordCounts;
+        }
+
+        // Returns the number of symbols of the word, that are not in the given mask.
+        int countMissing(long candidateMask) {
+            long missing = mask & ~candidateMask;
+            int ret = 0;
+            while (missing != 0) {
+                ret += counts[Long.numberOfTrailingZeros(missing)];
+                missing &= missing - 1;
+            }
+            return ret;
         }
     }
 }
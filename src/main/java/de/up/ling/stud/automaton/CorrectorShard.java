@@ -0,0 +1,49 @@
+package de.up.ling.stud.automaton;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A part of a model, that is queried by a ShardedCorrector. A shard holds the
+ * words of its part of the lexicon (see ShardPartition) and the n-grams that
+ * end with these words, but the wordIDs are the same in all shards. A shard
+ * can live in the same process (LocalShard) or in a CorrectionServer of
+ * another process (RemoteShard). All methods may be called by many threads
+ * at once.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public interface CorrectorShard extends Closeable {
+
+    /**
+     * Returns the n-gram size of the model.
+     *
+     * @return Number of n-grams.
+     * @throws IOException
+     */
+    int getNGram() throws IOException;
+
+    /**
+     * Looks up the IDs of words of this shard.
+     *
+     * @param words
+     * @return The wordID for every word or StringTrie.UNKNOWN_WORD_ID, if it
+     * is not in this shard. The empty word is StringTrie.DELIMITER_ID.
+     * @throws IOException
+     */
+    int[] getWordIDs(String[] words) throws IOException;
+
+    /**
+     * Searches the candidates for a word in this shard, see
+     * Corrector.searchShard(int[], boolean, int[], int).
+     *
+     * @param word
+     * @param known True, if the word is in the lexicon of any shard.
+     * @param context IDs of the previous words, the nearest one first. The
+     * array may be shorter than getNGram() - 1 at the beginning of a text.
+     * @param maxResults
+     * @return Candidates of this shard.
+     * @throws IOException
+     */
+    ShardResult search(String word, boolean known, int[] context, int maxResults) throws IOException;
+}
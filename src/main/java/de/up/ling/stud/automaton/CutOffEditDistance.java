@@ -56,6 +56,7 @@ public class CutOffEditDistance {
      * @return the calculated cutOffDistance
      */
     public int calcCutOffDistance(int[] incorrectWord, int[] candidate, int error_threshold) {
+        minDistance = Integer.MAX_VALUE; // highes possible value
         int m = incorrectWord.length;
         int n = candidate.length;
         int l = Math.max(1, n - error_threshold);
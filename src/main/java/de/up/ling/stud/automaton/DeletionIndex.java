@@ -0,0 +1,167 @@
+package de.up.ling.stud.automaton;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * Index of deletion variants (symmetric delete spelling correction) that
+ * finds the words of the lexicon within a small edit distance with a few hash
+ * lookups instead of a walk through the trie.
+ *
+ * For every word, the first prefixLength symbols are taken and all variants
+ * with up to maxDistance symbols deleted are stored. If two words have an edit
+ * distance of k, deleting at most k symbols from each of them yields a common
+ * variant. Because only prefixes are indexed, a query looks up the variants of
+ * its own prefixes of length prefixLength - k to prefixLength + k. The hits
+ * are a superset of the words within the distance (variants are only stored
+ * as 64 bit hashes), so they have to be verified with the exact edit distance.
+ *
+ * A longer prefix and a higher maximal distance make the index larger, but
+ * give fewer false hits. The index is read-only after it has been built and
+ * can be shared by many correctors.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class DeletionIndex {
+
+    private final int maxDistance;
+    private final int prefixLength;
+    // Multimap from the hash of a variant to wordIDs: 'heads' points to the last entry
+    // for a hash in 'wordIDs', 'next' links to the previous entry (or -1).
+    private final Long2IntOpenHashMap heads;
+    private final IntArrayList wordIDs;
+    private final IntArrayList next;
+
+    /**
+     * Builds the index for all words of a lexicon.
+     *
+     * @param data
+     * @param maxDistance The maximal edit distance, that can be looked up.
+     * @param prefixLength The number of symbols of each word, that are indexed.
+     */
+    public DeletionIndex(StringTrieView data, int maxDistance, int prefixLength) {
+        if (maxDistance < 0 || prefixLength < 1) {
+            throw new IllegalArgumentException("maxDistance must be >= 0 and prefixLength >= 1.");
+        }
+        this.maxDistance = maxDistance;
+        this.prefixLength = prefixLength;
+        this.heads = new Long2IntOpenHashMap();
+        this.heads.defaultReturnValue(-1);
+        this.wordIDs = new IntArrayList();
+        this.next = new IntArrayList();
+        addWords(data.getLexicon(), new IntArrayList(), new LongOpenHashSet());
+    }
+
+    /**
+     * Returns the maximal edit distance, that can be looked up.
+     *
+     * @return Maximal distance.
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Returns the number of symbols of each word, that are indexed.
+     *
+     * @return Prefix length.
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * Returns the number of stored (variant, word) pairs.
+     *
+     * @return Number of entries.
+     */
+    public int size() {
+        return wordIDs.size();
+    }
+
+    /**
+     * Returns the IDs of all words, that may be within a distance of a word.
+     * The result contains every word within the distance, but also words that
+     * are not.
+     *
+     * @param word
+     * @param distance At most getMaxDistance().
+     * @return Candidate wordIDs without duplicates.
+     */
+    IntOpenHashSet lookup(int[] word, int distance) {
+        if (distance > maxDistance) {
+            throw new IllegalArgumentException("The index only holds variants up to a distance of " + maxDistance);
+        }
+        LongOpenHashSet variants = new LongOpenHashSet();
+        int from = Math.max(0, Math.min(prefixLength, word.length - distance) - distance);
+        int to = Math.min(word.length, prefixLength + distance);
+        for (int length = from; length <= to; length++) {
+            collectVariants(word, length, distance, variants);
+        }
+
+        IntOpenHashSet ret = new IntOpenHashSet();
+        for (long variant : variants) {
+            for (int entry = heads.get(variant); entry >= 0; entry = next.getInt(entry)) {
+                ret.add(wordIDs.getInt(entry));
+            }
+        }
+        return ret;
+    }
+
+    // Adds the variants of all words below the trie. 'word' holds the path to the trie.
+    private void addWords(LexiconTrie trie, IntArrayList word, LongOpenHashSet variants) {
+        if (trie.isFinal()) {
+            int[] symbols = word.toIntArray();
+            variants.clear();
+            collectVariants(symbols, Math.min(prefixLength, symbols.length), maxDistance, variants);
+            for (long variant : variants) {
+                wordIDs.add(trie.getID());
+                next.add(heads.get(variant));
+                heads.put(variant, wordIDs.size() - 1);
+            }
+        }
+        IntIterator symbolIt = trie.getAllTransitions().iterator();
+        while (symbolIt.hasNext()) {
+            int symbol = symbolIt.next();
+            word.add(symbol);
+            addWords(trie.getSubtrieByTransitionSymbol(symbol), word, variants);
+            word.removeInt(word.size() - 1);
+        }
+    }
+
+    // Adds the hashes of all variants of word[0..length[ with up to 'deletions' symbols deleted.
+    private static void collectVariants(int[] word, int length, int deletions, LongOpenHashSet variants) {
+        int[] buffer = new int[length];
+        System.arraycopy(word, 0, buffer, 0, length);
+        collectVariants(buffer, length, 0, deletions, variants);
+    }
+
+    // Deletes symbols at positions >= 'from', so every set of positions is only visited once.
+    private static void collectVariants(int[] buffer, int length, int from, int deletions, LongOpenHashSet variants) {
+        variants.add(hash(buffer, length));
+        if (deletions == 0) {
+            return;
+        }
+        for (int i = from; i < length; i++) {
+            int[] shorter = new int[length - 1];
+            System.arraycopy(buffer, 0, shorter, 0, i);
+            System.arraycopy(buffer, i + 1, shorter, i, length - i - 1);
+            collectVariants(shorter, length - 1, i, deletions - 1, variants);
+        }
+    }
+
+    // 64 bit FNV-1a hash of the symbols and the length.
+    private static long hash(int[] symbols, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            h ^= symbols[i];
+            h *= 0x100000001b3L;
+        }
+        h ^= length;
+        h *= 0x100000001b3L;
+        return h;
+    }
+}
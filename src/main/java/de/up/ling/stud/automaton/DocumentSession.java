@@ -0,0 +1,424 @@
+package de.up.ling.stud.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a document together with the corrections of its tokens, so that an
+ * editor can send its changes instead of the whole text. An edit replaces a
+ * range of characters. Only the tokens at the edited range are tokenized
+ * again, and only the tokens, whose n-gram window contains one of them, are
+ * corrected again. All other tokens keep their results.
+ *
+ * Tokens are the longest runs of letters, like in App --check, and the
+ * context of a token are the n-1 tokens before it, across line breaks.
+ *
+ * The offsets of the tokens behind the last edit are moved lazily, like the
+ * gap of a gap buffer: an edit only updates the tokens between its position
+ * and that of the edit before. The tokens themselves are kept in a gap buffer
+ * with its gap at the same place. So the work for typing at one place does
+ * not depend on the length of the document.
+ *
+ * A session must only be used by one thread at a time, like its Corrector.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class DocumentSession {
+
+    private final Corrector corrector;
+    private final StringTrieView data;
+    private final int nGram;
+    private final int maxResults;
+    private final StringBuilder text;
+    private final TokenBuffer tokens;
+    // The tokens from shiftFrom on have to be moved by shiftBy characters.
+    private int shiftFrom;
+    private int shiftBy;
+    private int lastCorrectedFrom;
+    private int lastCorrectedTo;
+    // Buffers for the current token and its context. Cell 0 of the context is a dummy.
+    private int[] wordBuffer;
+    private final int[] contextIDs;
+
+    private static final class Token {
+
+        private int start;
+        private final String word;
+        private final int wordID;
+        private final ResultBuffer result;
+
+        Token(int start, String word, int wordID, ResultBuffer result) {
+            this.start = start;
+            this.word = word;
+            this.wordID = wordID;
+            this.result = result;
+        }
+    }
+
+    // The tokens in an array with a gap at the place of the last edit. Moving the gap
+    // only copies the tokens between its old and its new place.
+    private static final class TokenBuffer {
+
+        private Token[] array;
+        private int gapStart;
+        private int gapEnd;
+        // Number of tokens, that have been copied to move the gap.
+        private long moved;
+
+        TokenBuffer() {
+            this.array = new Token[16];
+            this.gapStart = 0;
+            this.gapEnd = array.length;
+            this.moved = 0;
+        }
+
+        int size() {
+            return array.length - (gapEnd - gapStart);
+        }
+
+        Token get(int index) {
+            return array[index < gapStart ? index : index + gapEnd - gapStart];
+        }
+
+        // Replaces the tokens from 'from' to 'to' (exclusive). Afterwards the gap is behind the new tokens,
+        // unless their number has not changed.
+        void replace(int from, int to, List<Token> replacement) {
+            if (to - from == replacement.size()) {
+                for (int i = 0; i < replacement.size(); i++) {
+                    array[from + i < gapStart ? from + i : from + i + gapEnd - gapStart] = replacement.get(i);
+                }
+                return;
+            }
+            moveGap(to);
+            Arrays.fill(array, from, gapStart, null);
+            gapStart = from;
+            if (replacement.size() > gapEnd - gapStart) {
+                grow(replacement.size());
+            }
+            for (Token token : replacement) {
+                array[gapStart++] = token;
+            }
+        }
+
+        private void moveGap(int index) {
+            if (index < gapStart) {
+                int count = gapStart - index;
+                System.arraycopy(array, index, array, gapEnd - count, count);
+                Arrays.fill(array, index, Math.min(gapStart, gapEnd - count), null);
+                moved += count;
+            } else if (index > gapStart) {
+                int count = index - gapStart;
+                System.arraycopy(array, gapEnd, array, gapStart, count);
+                Arrays.fill(array, Math.max(gapEnd, index), gapEnd + count, null);
+                moved += count;
+            }
+            gapEnd += index - gapStart;
+            gapStart = index;
+        }
+
+        private void grow(int needed) {
+            int tail = array.length - gapEnd;
+            Token[] larger = new Token[Math.max(2 * array.length, size() + needed + 16)];
+            System.arraycopy(array, 0, larger, 0, gapStart);
+            System.arraycopy(array, gapEnd, larger, larger.length - tail, tail);
+            array = larger;
+            gapEnd = larger.length - tail;
+        }
+    }
+
+    /**
+     * Creates a session for an empty document, that uses the n-gram size of
+     * the data as context.
+     *
+     * @param corrector
+     * @param maxResults Maximal number of candidates, that are kept for every
+     * token.
+     */
+    public DocumentSession(Corrector corrector, int maxResults) {
+        this(corrector, corrector.getData().getNGram(), maxResults);
+    }
+
+    /**
+     * Creates a session for an empty document, that uses the last nGram-1
+     * tokens as context.
+     *
+     * @param corrector
+     * @param nGram
+     * @param maxResults Maximal number of candidates, that are kept for every
+     * token.
+     */
+    public DocumentSession(Corrector corrector, int nGram, int maxResults) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1: " + maxResults);
+        }
+        this.corrector = corrector;
+        this.data = corrector.getData();
+        this.nGram = nGram;
+        this.maxResults = maxResults;
+        this.text = new StringBuilder();
+        this.tokens = new TokenBuffer();
+        this.shiftFrom = 0;
+        this.shiftBy = 0;
+        this.wordBuffer = new int[32];
+        this.contextIDs = new int[nGram];
+    }
+
+    /**
+     * Replaces the whole document and corrects all its tokens.
+     *
+     * @param newText
+     * @return Number of corrected tokens.
+     */
+    public int setText(String newText) {
+        return edit(0, text.length(), newText);
+    }
+
+    /**
+     * Replaces deleteLength characters at an offset with a text and corrects
+     * the tokens, that are affected by the change. Afterwards
+     * getLastCorrectedFrom() and getLastCorrectedTo() return the range of
+     * these tokens.
+     *
+     * @param offset Position of the change in the document (in chars).
+     * @param deleteLength Number of chars that are removed.
+     * @param inserted Text that is inserted at the offset.
+     * @return Number of corrected tokens.
+     */
+    public int edit(int offset, int deleteLength, String inserted) {
+        if (offset < 0 || deleteLength < 0 || offset + deleteLength > text.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + deleteLength + ", document " + text.length());
+        }
+        // The tokens that touch the deleted range, including those right next
+        // to it, because an inserted letter joins them.
+        int first = firstEndingAtOrAfter(offset);
+        int after = firstStartingAfter(offset + deleteLength);
+        settleShift(after);
+
+        int regionStart = offset;
+        int regionEnd = offset + deleteLength;
+        if (first < after) {
+            regionStart = Math.min(regionStart, tokens.get(first).start);
+            Token lastToken = tokens.get(after - 1);
+            regionEnd = Math.max(regionEnd, lastToken.start + lastToken.word.length());
+        }
+        int delta = inserted.length() - deleteLength;
+        text.replace(offset, offset + deleteLength, inserted);
+        List<Token> retokenized = tokenize(regionStart, regionEnd + delta);
+
+        // Tokens at both ends of the region, that did not change, keep their results.
+        int replaced = after - first;
+        int same = 0;
+        while (same < replaced && same < retokenized.size()
+                && tokens.get(first + same).word.equals(retokenized.get(same).word)) {
+            retokenized.set(same, moved(tokens.get(first + same), retokenized.get(same).start));
+            ++same;
+        }
+        int sameAtEnd = 0;
+        while (sameAtEnd < replaced - same && sameAtEnd < retokenized.size() - same
+                && tokens.get(after - 1 - sameAtEnd).word.equals(retokenized.get(retokenized.size() - 1 - sameAtEnd).word)) {
+            int k = retokenized.size() - 1 - sameAtEnd;
+            retokenized.set(k, moved(tokens.get(after - 1 - sameAtEnd), retokenized.get(k).start));
+            ++sameAtEnd;
+        }
+        boolean changed = replaced != retokenized.size() || same < replaced;
+        tokens.replace(first, after, retokenized);
+        shiftFrom = first + retokenized.size();
+        shiftBy += delta;
+
+        // A token is corrected again, if a new token or the place of a removed
+        // one is within its window.
+        lastCorrectedFrom = first + same;
+        lastCorrectedTo = changed ? Math.min(tokens.size(), first + retokenized.size() - sameAtEnd + nGram - 1) : lastCorrectedFrom;
+        for (int i = lastCorrectedFrom; i < lastCorrectedTo; i++) {
+            correct(i);
+        }
+        return lastCorrectedTo - lastCorrectedFrom;
+    }
+
+    // Returns the index of the first token, that ends at or after the offset.
+    private int firstEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getStart(middle) + tokens.get(middle).word.length() < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Returns the index of the first token, that starts after the offset.
+    private int firstStartingAfter(int offset) {
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getStart(middle) <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Moves the pending shift to the given token, so that all tokens before it
+    // have their real offsets. Only the tokens between the old and the new
+    // place of the shift are touched.
+    private void settleShift(int index) {
+        for (int i = shiftFrom; i < index; i++) {
+            tokens.get(i).start += shiftBy;
+        }
+        for (int i = index; i < shiftFrom; i++) {
+            tokens.get(i).start -= shiftBy;
+        }
+        shiftFrom = index;
+    }
+
+    // Splits a range of the text into tokens. Their results are filled later.
+    private List<Token> tokenize(int from, int to) {
+        List<Token> ret = new ArrayList<Token>();
+        int start = -1;
+        for (int i = from; i <= to; ) {
+            int codePoint = (i < to) ? text.codePointAt(i) : ' ';
+            if (Character.isLetter(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String word = text.substring(start, i);
+                int length = encode(word);
+                ret.add(new Token(start, word, data.getWordID(wordBuffer, length), new ResultBuffer(maxResults)));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return ret;
+    }
+
+    // Returns a token at a new offset with the result of the old one.
+    private static Token moved(Token token, int start) {
+        token.start = start;
+        return token;
+    }
+
+    // Corrects a token in the context of the tokens before it.
+    private void correct(int index) {
+        Token token = tokens.get(index);
+        Arrays.fill(contextIDs, StringTrie.DELIMITER_ID);
+        contextIDs[0] = StringTrie.UNKNOWN_WORD_ID; // dummy value
+        for (int i = 1; i < contextIDs.length && index - i >= 0; i++) {
+            contextIDs[i] = tokens.get(index - i).wordID;
+        }
+        int length = encode(token.word);
+        corrector.correctWordInContext(wordBuffer, length, token.wordID, contextIDs, token.result);
+    }
+
+    // Writes the symbol codes of the word to the buffer and returns its length.
+    private int encode(String word) {
+        if (word.length() > wordBuffer.length) {
+            wordBuffer = new int[Math.max(word.length(), 2 * wordBuffer.length)];
+        }
+        return data.getAlphabet().encode(word, wordBuffer);
+    }
+
+    /**
+     * Returns the text of the document.
+     *
+     * @return Text
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Returns the number of tokens in the document.
+     *
+     * @return Number of tokens.
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns a token.
+     *
+     * @param index
+     * @return Token
+     */
+    public String getToken(int index) {
+        return tokens.get(index).word;
+    }
+
+    /**
+     * Returns the offset of the first char of a token.
+     *
+     * @param index
+     * @return Offset in the document.
+     */
+    public int getStart(int index) {
+        Token token = tokens.get(index);
+        return index >= shiftFrom ? token.start + shiftBy : token.start;
+    }
+
+    /**
+     * Returns the offset after the last char of a token.
+     *
+     * @param index
+     * @return Offset in the document.
+     */
+    public int getEnd(int index) {
+        return getStart(index) + tokens.get(index).word.length();
+    }
+
+    /**
+     * Returns the token at an offset.
+     *
+     * @param offset
+     * @return Index of the token, that contains the char at the offset, or -1.
+     */
+    public int indexAt(int offset) {
+        int index = firstStartingAfter(offset) - 1;
+        return (index >= 0 && getEnd(index) > offset) ? index : -1;
+    }
+
+    /**
+     * Returns the candidates of a token. The buffer is refilled, when the
+     * token is corrected again, and must not be changed by the caller.
+     *
+     * @param index
+     * @return Candidates of the token.
+     */
+    public ResultBuffer getResult(int index) {
+        return tokens.get(index).result;
+    }
+
+    // Returns the number of tokens, that have been moved in the list of tokens so far.
+    long getMovedTokens() {
+        return tokens.moved;
+    }
+
+    /**
+     * Returns the index of the first token, that has been corrected by the
+     * last edit.
+     *
+     * @return Index of a token.
+     */
+    public int getLastCorrectedFrom() {
+        return lastCorrectedFrom;
+    }
+
+    /**
+     * Returns the index after the last token, that has been corrected by the
+     * last edit.
+     *
+     * @return Index of a token.
+     */
+    public int getLastCorrectedTo() {
+        return lastCorrectedTo;
+    }
+}
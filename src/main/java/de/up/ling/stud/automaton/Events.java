@@ -0,0 +1,108 @@
+package de.up.ling.stud.automaton;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the phases of building, loading, saving and
+ * using a model. They can be recorded with the standard tools, e.g.
+ * <code>java -XX:StartFlightRecording=filename=run.jfr ...</code>. An event
+ * that is not enabled in the recording costs nearly nothing. The corrections
+ * of single words are only sampled, see Corrector.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    @Name("de.up.ling.stud.automaton.PutFile")
+    @Label("Learn From Corpus")
+    @Category("Spell Checker")
+    @Description("Reads a corpus into the lexicon and the language model (StringTrie.putFile).")
+    static final class PutFile extends Event {
+
+        @Label("File")
+        String file;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+        @Label("Lines")
+        long lines;
+        @Label("Tokens")
+        long tokens;
+        @Label("N-Grams")
+        long nGrams;
+        @Label("Trie Nodes Created")
+        long nodesCreated;
+        @Label("Words")
+        long words;
+    }
+
+    @Name("de.up.ling.stud.automaton.Load")
+    @Label("Load Model")
+    @Category("Spell Checker")
+    @Description("Restores a model from a file.")
+    static final class Load extends Event {
+
+        @Label("File")
+        String file;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+        @Label("Words")
+        long words;
+        @Label("N-Grams")
+        long nGrams;
+    }
+
+    @Name("de.up.ling.stud.automaton.PostProcessing")
+    @Label("Compute Probabilities")
+    @Category("Spell Checker")
+    @Description("Computes the log probabilities of the language model (StringTrie.postProcessing).")
+    static final class PostProcessing extends Event {
+
+        @Label("N-Gram Size")
+        int nGram;
+        @Label("Words")
+        long words;
+    }
+
+    @Name("de.up.ling.stud.automaton.Save")
+    @Label("Save Model")
+    @Category("Spell Checker")
+    @Description("Writes a model to a file.")
+    static final class Save extends Event {
+
+        @Label("File")
+        String file;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+        @Label("Words")
+        long words;
+    }
+
+    @Name("de.up.ling.stud.automaton.Correction")
+    @Label("Correct Word")
+    @Category("Spell Checker")
+    @Description("Corrects a single word. Only every n-th correction of a Corrector is recorded.")
+    static final class Correction extends Event {
+
+        @Label("Word Length")
+        int wordLength;
+        @Label("Known Word")
+        boolean known;
+        @Label("Candidates")
+        int candidates;
+        @Label("Partial")
+        boolean partial;
+        @Label("Sampling Interval")
+        int samplingInterval;
+    }
+}
@@ -18,4 +18,8 @@ class IDCounter {
         ++counter;
         return counter - 1;
     }
+
+    int peekNextID() {
+        return counter;
+    }
 }
@@ -0,0 +1,177 @@
+package de.up.ling.stud.automaton;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+/**
+ * Keeps the k words with the smallest weights. Every word is stored only once:
+ * When a word is offered again with a smaller weight, its entry is updated in
+ * place. Words with the same weight are ordered by their wordID, so the order
+ * does not depend on the order the words have been offered in.
+ *
+ * The words are kept in a binary heap of primitive arrays, whose root is the
+ * worst of the retained words, so that it can be replaced cheaply, when a
+ * better word is offered to a full heap. A map from wordIDs to positions in
+ * the heap finds duplicates in constant time.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class IndexedWordHeap {
+
+    private final int maxSize;
+    private int[] wordIDs;
+    private double[] weights;
+    private int size;
+    // wordID -> position in the heap
+    private final Int2IntOpenHashMap positions;
+
+    /**
+     * Creates a heap without a limit.
+     *
+     * @param initialCapacity
+     */
+    IndexedWordHeap(int initialCapacity) {
+        this(initialCapacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a heap, that retains only the maxSize best words.
+     *
+     * @param initialCapacity
+     * @param maxSize
+     */
+    IndexedWordHeap(int initialCapacity, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+        }
+        int capacity = Math.max(1, Math.min(initialCapacity, maxSize));
+        this.maxSize = maxSize;
+        this.wordIDs = new int[capacity];
+        this.weights = new double[capacity];
+        this.size = 0;
+        this.positions = new Int2IntOpenHashMap(capacity);
+        this.positions.defaultReturnValue(-1);
+    }
+
+    /**
+     * Adds a word or lowers the weight of a word that is already in the heap.
+     *
+     * @param wordID
+     * @param weight
+     * @return True, if the heap has been changed.
+     */
+    boolean offer(int wordID, double weight) {
+        int position = positions.get(wordID);
+        if (position >= 0) {
+            if (!better(wordID, weight, wordIDs[position], weights[position])) {
+                return false;
+            }
+            // The entry gets better, so it moves away from the (worst) root.
+            weights[position] = weight;
+            siftDown(position);
+            return true;
+        }
+
+        if (size == maxSize) {
+            if (!better(wordID, weight, wordIDs[0], weights[0])) {
+                return false;
+            }
+            // Replace the worst word.
+            positions.remove(wordIDs[0]);
+            set(0, wordID, weight);
+            siftDown(0);
+            return true;
+        }
+
+        if (size == wordIDs.length) {
+            int capacity = (int) Math.min((long) maxSize, 2L * size);
+            int[] newIDs = new int[capacity];
+            double[] newWeights = new double[capacity];
+            System.arraycopy(wordIDs, 0, newIDs, 0, size);
+            System.arraycopy(weights, 0, newWeights, 0, size);
+            wordIDs = newIDs;
+            weights = newWeights;
+        }
+        set(size, wordID, weight);
+        siftUp(size++);
+        return true;
+    }
+
+    /**
+     * Returns the number of words in the heap.
+     *
+     * @return Size.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all words from the heap and returns them sorted, the best
+     * word first.
+     *
+     * @return Sorted words and their weights.
+     */
+    RankedCandidates drain() {
+        int[] sortedIDs = new int[size];
+        double[] sortedWeights = new double[size];
+        // The root is the worst word, so fill the arrays from the end.
+        for (int rank = size - 1; rank >= 0; rank--) {
+            sortedIDs[rank] = wordIDs[0];
+            sortedWeights[rank] = weights[0];
+            positions.remove(wordIDs[0]);
+            --size;
+            if (size > 0) {
+                set(0, wordIDs[size], weights[size]);
+                siftDown(0);
+            }
+        }
+        return new RankedCandidates(sortedIDs, sortedWeights);
+    }
+
+    // True, if the first word comes before the second one in the result.
+    private static boolean better(int id1, double weight1, int id2, double weight2) {
+        int cmp = Double.compare(weight1, weight2);
+        return cmp < 0 || (cmp == 0 && id1 < id2);
+    }
+
+    private void set(int position, int wordID, double weight) {
+        wordIDs[position] = wordID;
+        weights[position] = weight;
+        positions.put(wordID, position);
+    }
+
+    // Moves a worse entry towards the root.
+    private void siftUp(int position) {
+        int wordID = wordIDs[position];
+        double weight = weights[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!better(wordIDs[parent], weights[parent], wordID, weight)) {
+                break;
+            }
+            set(position, wordIDs[parent], weights[parent]);
+            position = parent;
+        }
+        set(position, wordID, weight);
+    }
+
+    // Moves a better entry away from the root.
+    private void siftDown(int position) {
+        int wordID = wordIDs[position];
+        double weight = weights[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && better(wordIDs[child], weights[child], wordIDs[right], weights[right])) {
+                child = right; // the worse child
+            }
+            if (!better(wordID, weight, wordIDs[child], weights[child])) {
+                break;
+            }
+            set(position, wordIDs[child], weights[child]);
+            position = child;
+        }
+        set(position, wordID, weight);
+    }
+}
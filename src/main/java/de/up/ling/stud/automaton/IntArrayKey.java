@@ -0,0 +1,87 @@
+package de.up.ling.stud.automaton;
+
+import java.util.Arrays;
+
+/**
+ * Immutable wrapper for an int array that can be used as a key in a hash map.
+ * The hash code is computed only once.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class IntArrayKey {
+
+    private final int[] key;
+    private final int hash;
+
+    /**
+     * Wraps an array. It must not be changed afterwards.
+     *
+     * @param key
+     */
+    IntArrayKey(int[] key) {
+        this.key = key;
+        this.hash = Arrays.hashCode(key);
+    }
+
+    /**
+     * Creates a key for a word and the IDs in context[from..]. The length of
+     * the word is stored as well, so that no two combinations result in the
+     * same key.
+     *
+     * @param word
+     * @param wordLength Number of cells of word that are used.
+     * @param context
+     * @param from
+     * @return Key for word and context.
+     */
+    static IntArrayKey forWordInContext(int[] word, int wordLength, int[] context, int from) {
+        int[] key = new int[1 + wordLength + context.length - from];
+        key[0] = wordLength;
+        System.arraycopy(word, 0, key, 1, wordLength);
+        System.arraycopy(context, from, key, 1 + wordLength, context.length - from);
+        return new IntArrayKey(key);
+    }
+
+    /**
+     * Creates a key for the first cells of an array. The array is copied, so
+     * it can be changed afterwards.
+     *
+     * @param word
+     * @param length
+     * @return Key for the word.
+     */
+    static IntArrayKey copyOf(int[] word, int length) {
+        return new IntArrayKey(Arrays.copyOf(word, length));
+    }
+
+    /**
+     * Returns the wrapped array. It must not be changed.
+     *
+     * @return Array of the key.
+     */
+    int[] getKey() {
+        return key;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final IntArrayKey other = (IntArrayKey) obj;
+        return hash == other.hash && Arrays.equals(key, other.key);
+    }
+
+    @Override
+    public String toString() {
+        return "IntArrayKey{" + Arrays.toString(key) + '}';
+    }
+}
@@ -0,0 +1,159 @@
+package de.up.ling.stud.automaton;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with buckets of a fixed relative
+ * width, like an HdrHistogram: Every power of two is split into 32 buckets, so
+ * a percentile is at most about 3% above the real value. Values from 0 to
+ * MAX_VALUE (about 68 seconds) need 1024 buckets, larger values are counted
+ * as MAX_VALUE.
+ *
+ * Only one thread may record values at a time, but any thread can read the
+ * histogram meanwhile. Recording needs no lock and no compare-and-swap, the
+ * cells are only written with ordered stores.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    /**
+     * The largest value, that is stored exactly enough.
+     */
+    public static final long MAX_VALUE = (1L << 36) - 1;
+    private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+    // cells of 'totals'
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MAX = 2;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray totals;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.totals = new AtomicLongArray(3);
+    }
+
+    // Returns the bucket of a value between 0 and MAX_VALUE.
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int shift = exponent - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    // Returns the largest value of a bucket.
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long sub = SUB_COUNT + (bucket & (SUB_COUNT - 1));
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Counts a value. Must not be called by two threads at once.
+     *
+     * @param nanos Latency in ns. Negative values are counted as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        int bucket = bucket(value);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        totals.lazySet(COUNT, totals.get(COUNT) + 1);
+        totals.lazySet(SUM, totals.get(SUM) + value);
+        if (value > totals.get(MAX)) {
+            totals.lazySet(MAX, value);
+        }
+    }
+
+    /**
+     * Adds all values of another histogram to this one. This counts as
+     * recording, the other histogram may be recorded meanwhile.
+     *
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.lazySet(i, counts.get(i) + count);
+            }
+        }
+        totals.lazySet(COUNT, totals.get(COUNT) + other.totals.get(COUNT));
+        totals.lazySet(SUM, totals.get(SUM) + other.totals.get(SUM));
+        totals.lazySet(MAX, Math.max(totals.get(MAX), other.totals.get(MAX)));
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return Number of values.
+     */
+    public long getCount() {
+        return totals.get(COUNT);
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return Sum in ns.
+     */
+    public long getSum() {
+        return totals.get(SUM);
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return Maximum in ns or 0, if nothing has been recorded.
+     */
+    public long getMax() {
+        return totals.get(MAX);
+    }
+
+    /**
+     * Returns the average of the recorded values.
+     *
+     * @return Mean in ns or 0, if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Returns the value, below which the given percentage of the recorded
+     * values lies. The result is the largest value of its bucket, but not
+     * larger than the maximum.
+     *
+     * @param percentile Between 0 and 100, e.g. 99.9.
+     * @return Value in ns or 0, if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -27,6 +27,11 @@ public class LexiconTrie {
     private IntSet usedIDs;
     private boolean finalState;
     private final IDCounter idCounter;
+    // Bounds for the words below this trie, see computeBounds().
+    private int minRemainingLength;
+    private int maxRemainingLength;
+    private long symbolMask;
+    private int wordCount;
 
     /**
      * Initialize a (sub)trie with a new ID and an idCounter to make sure, that
@@ -40,6 +45,10 @@ public class LexiconTrie {
         this.id = id;
         this.finalState = false;
         this.idCounter = idCounter;
+        this.minRemainingLength = 0;
+        this.maxRemainingLength = Integer.MAX_VALUE;
+        this.symbolMask = -1L; // every symbol can occur, until the bounds are computed
+        this.wordCount = Integer.MAX_VALUE; // every subtrie is large, until the bounds are computed
     }
 
     /**
@@ -154,6 +163,43 @@ public class LexiconTrie {
         }
     }
 
+    /**
+     * Returns the subtrie that is reached by reading a word, without changing
+     * this trie.
+     *
+     * @param needle
+     * @return The subtrie or null, if there is no path for the word.
+     */
+    public LexiconTrie find(int[] needle) {
+        return find(needle, needle.length);
+    }
+
+    /**
+     * Returns the subtrie that is reached by reading the first symbols of a
+     * word, without changing this trie.
+     *
+     * @param needle
+     * @param length Number of symbols of needle that are read.
+     * @return The subtrie or null, if there is no path for the word.
+     */
+    public LexiconTrie find(int[] needle, int length) {
+        LexiconTrie current = this;
+        for (int i = 0; i < length && current != null; i++) {
+            current = current.branches.get(needle[i]);
+        }
+        return current;
+    }
+
+    /**
+     * Returns the ID of this (sub)trie. It is the wordID, if the trie is
+     * final.
+     *
+     * @return ID of this state.
+     */
+    public int getID() {
+        return id;
+    }
+
     /**
      * Returns a Subtrie of this Trie, that starts at the transition with a
      * given symbol.
@@ -183,6 +229,99 @@ public class LexiconTrie {
         return finalState;
     }
 
+    /**
+     * Computes for this trie and all subtries the minimal and maximal number
+     * of symbols that are needed to reach a final state, which symbols can be
+     * read on the way and how many words there are below. The search uses
+     * these bounds to skip subtries without computing an edit distance, and
+     * the word counts to decide, which subtries are searched in parallel. Must
+     * be called again after words have been put into the trie.
+     */
+    public void computeBounds() {
+        int min = finalState ? 0 : Integer.MAX_VALUE;
+        int max = finalState ? 0 : -1;
+        long mask = 0L;
+        int count = finalState ? 1 : 0;
+        for (Int2ObjectMap.Entry<LexiconTrie> branch : branches.int2ObjectEntrySet()) {
+            LexiconTrie nextTrie = branch.getValue();
+            nextTrie.computeBounds();
+            count += nextTrie.wordCount;
+            if (nextTrie.maxRemainingLength >= 0) { // there is a word below
+                min = Math.min(min, nextTrie.minRemainingLength + 1);
+                max = Math.max(max, nextTrie.maxRemainingLength + 1);
+                mask |= symbolBit(branch.getIntKey()) | nextTrie.symbolMask;
+            }
+        }
+        minRemainingLength = min;
+        maxRemainingLength = max;
+        symbolMask = mask;
+        wordCount = count;
+    }
+
+    /**
+     * Returns the minimal number of symbols from this trie to a final state.
+     * Integer.MAX_VALUE, if there is no word below.
+     *
+     * @return Minimal length of the rest of a word.
+     */
+    public int getMinRemainingLength() {
+        return minRemainingLength;
+    }
+
+    /**
+     * Returns the maximal number of symbols from this trie to a final state.
+     * -1, if there is no word below.
+     *
+     * @return Maximal length of the rest of a word.
+     */
+    public int getMaxRemainingLength() {
+        return maxRemainingLength;
+    }
+
+    /**
+     * Returns a bit mask of all symbols on the paths from this trie to final
+     * states. Symbols share a bit, if they are equal modulo 64 (see
+     * symbolBit(int)).
+     *
+     * @return Mask of the reachable symbols.
+     */
+    public long getSymbolMask() {
+        return symbolMask;
+    }
+
+    /**
+     * Returns the number of words in this trie and its subtries.
+     * Integer.MAX_VALUE, until the bounds have been computed.
+     *
+     * @return Number of words below.
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Returns the bit that stands for a symbol in a symbol mask.
+     *
+     * @param symbol
+     * @return Bit for the symbol.
+     */
+    public static long symbolBit(int symbol) {
+        return 1L << (symbol & 63);
+    }
+
+    /**
+     * Counts this trie and all subtries for a ModelReport.
+     *
+     * @param stats
+     * @param depth Depth of this trie, 0 for the root.
+     */
+    void collectStats(ModelReport.TrieStats stats, int depth) {
+        stats.addNode(depth, branches.size(), finalState, 0);
+        for (LexiconTrie nextTrie : branches.values()) {
+            nextTrie.collectStats(stats, depth + 1);
+        }
+    }
+
     /**
      * Get the next possible ID. This is public to help the StringTrie class
      * saving a trie.
@@ -193,24 +332,34 @@ public class LexiconTrie {
         return idCounter.getNextID();
     }
 
+    /**
+     * Returns the next free ID without using it.
+     *
+     * @return The next free ID.
+     */
+    int peekNextID() {
+        return idCounter.peekNextID();
+    }
+
     /**
      * Recursive function that writes all complete words with their IDs in a
      * writer.
      *
      * @param currentWord
      * @param bw
+     * @param alphabet Alphabet to write the characters for the symbols.
      * @throws IOException
      */
-    public void saveWordsAndID(int[] currentWord, BufferedWriter bw) throws IOException {
+    public void saveWordsAndID(int[] currentWord, BufferedWriter bw, Alphabet alphabet) throws IOException {
         for (int a : branches.keySet()) {
             int[] ret = new int[currentWord.length + 1];
             System.arraycopy(currentWord, 0, ret, 0, currentWord.length);
             ret[currentWord.length] = a;
-            branches.get(a).saveWordsAndID(ret, bw);
+            branches.get(a).saveWordsAndID(ret, bw, alphabet);
         }
         if (isFinal()) {
             for (int i = 0; i < currentWord.length; ++i) {
-                bw.write(currentWord[i]);
+                bw.write(Character.toChars(alphabet.decode(currentWord[i])));
                 if (i != currentWord.length - 1) {
                     bw.write(",");
                 }
@@ -259,28 +408,28 @@ public class LexiconTrie {
 
     ////////////////////////////////////////////////////////
     /// Functions for drawing the Trie in graphviz format.
-    private String drawTransitions(IntList history, List<String> nodes) {
+    private String drawTransitions(IntList history, List<String> nodes, Alphabet alphabet) {
         StringBuilder ret = new StringBuilder();
-        String currentState = "T(" + intListToString(history) + ")";
+        String currentState = "T(" + intListToString(alphabet, history) + ")";
         for (int a : branches.keySet()) {
             if (branches.get(a) != null) {
                 String label;
                 if (a == 0) {
                     label = "|";
                 } else {
-                    label = String.valueOf((char) a);
+                    label = new String(Character.toChars(alphabet.decode(a)));
                 }
                 IntList newHistory = new IntArrayList(history);
                 newHistory.add(a);
                 if (branches.get(a).isFinal()) {
-                    nodes.add("node [shape = doublecircle, label=\"T(" + intListToString(newHistory) + ")\\n" + branches.get(a).printExtra()
-                            + "\", fontsize=12] \"T(" + intListToString(newHistory) + ")\";");
+                    nodes.add("node [shape = doublecircle, label=\"T(" + intListToString(alphabet, newHistory) + ")\\n" + branches.get(a).printExtra()
+                            + "\", fontsize=12] \"T(" + intListToString(alphabet, newHistory) + ")\";");
                 } else {
-                    nodes.add("node [shape = circle, label=\"T(" + intListToString(newHistory) + ")\\n" + branches.get(a).printExtra()
-                            + "\", fontsize=12] \"T(" + intListToString(newHistory) + ")\";");
+                    nodes.add("node [shape = circle, label=\"T(" + intListToString(alphabet, newHistory) + ")\\n" + branches.get(a).printExtra()
+                            + "\", fontsize=12] \"T(" + intListToString(alphabet, newHistory) + ")\";");
                 }
-                ret.append("   \"" + currentState + "\" -> \"T(" + intListToString(newHistory) + ")\" [ label = \"" + label + "\" ];\n");
-                ret.append(branches.get(a).drawTransitions(newHistory, nodes));
+                ret.append("   \"" + currentState + "\" -> \"T(" + intListToString(alphabet, newHistory) + ")\" [ label = \"" + label + "\" ];\n");
+                ret.append(branches.get(a).drawTransitions(newHistory, nodes, alphabet));
             }
         }
 
@@ -291,9 +440,10 @@ public class LexiconTrie {
      * Returns a String that can be written in a file to represent this trie in
      * a dot file.
      *
+     * @param alphabet Alphabet to label the transitions.
      * @return String in graphviz format.
      */
-    public String draw() {
+    public String draw(Alphabet alphabet) {
         StringBuilder ret = new StringBuilder();
         IntList history = new IntArrayList();
         List<String> nodes = new ArrayList<String>();
@@ -304,7 +454,7 @@ public class LexiconTrie {
             nodes.add("node [shape = circle, label=\"T()\\n" + printExtra()
                     + "\", fontsize=12] \"T()\";");
         }
-        String transitions = drawTransitions(history, nodes);
+        String transitions = drawTransitions(history, nodes, alphabet);
 
         ret.append("digraph finite_state_machine {\n"
                 + "  rankdir=LR;\n"
@@ -320,11 +470,11 @@ public class LexiconTrie {
         return ret.toString();
     }
 
-    private String intListToString(IntList list) {
+    private String intListToString(Alphabet alphabet, IntList list) {
         StringBuilder ret = new StringBuilder();
         for (int s : list) {
             if (s != 0) {
-                ret.append(String.valueOf((char) s));
+                ret.appendCodePoint(alphabet.decode(s));
             } else {
                 ret.append("|");
             }
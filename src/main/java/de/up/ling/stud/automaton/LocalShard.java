@@ -0,0 +1,74 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * A shard in the same process. Every search takes a Corrector of the current
+ * model of the handle, that no other thread uses at the same time, and gives
+ * it back afterwards. All correctors share the data, the cache and the
+ * deletion index of the model, and no thread keeps an old model after a swap.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class LocalShard implements CorrectorShard {
+
+    private final ModelHandle models;
+
+    /**
+     * Creates a shard for a trie, that has been cut with
+     * StringTrie.extractShard(ShardPartition, int) or loaded from a shard file.
+     * The trie will be frozen.
+     *
+     * @param data
+     */
+    public LocalShard(StringTrie data) {
+        this(new ModelHandle(data));
+    }
+
+    /**
+     * Creates a shard for the models of a handle, so that the shard can be
+     * replaced while it is used.
+     *
+     * @param models
+     */
+    public LocalShard(ModelHandle models) {
+        this.models = models;
+    }
+
+    /**
+     * Returns the handle for the models of this shard.
+     *
+     * @return Handle of the models.
+     */
+    public ModelHandle getModels() {
+        return models;
+    }
+
+    public int getNGram() {
+        return models.get().getData().getNGram();
+    }
+
+    public int[] getWordIDs(String[] words) {
+        StringTrieView data = models.get().getData();
+        int[] ret = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            ret[i] = data.getWordID(words[i]);
+        }
+        return ret;
+    }
+
+    public ShardResult search(String word, boolean known, int[] context, int maxResults) {
+        ModelHandle.Model model = models.get();
+        // The corrector expects the previous words from cell 1 on.
+        int[] contextIDs = new int[context.length + 1];
+        System.arraycopy(context, 0, contextIDs, 1, context.length);
+        Corrector corrector = model.acquireCorrector();
+        try {
+            return corrector.searchShard(model.getData().encode(word), known, contextIDs, maxResults);
+        } finally {
+            model.releaseCorrector(corrector);
+        }
+    }
+
+    public void close() {
+        // nothing to release
+    }
+}
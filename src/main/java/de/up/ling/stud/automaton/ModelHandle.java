@@ -0,0 +1,307 @@
+package de.up.ling.stud.automaton;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the model, that is used to correct words right now, and replaces it
+ * atomically with a new one, e.g. when a new dictionary is rolled out. Every
+ * request reads the current model once with get() and keeps it until it is
+ * answered, so requests that are running during a swap finish on the old
+ * model. Reading the model needs no lock. The old model is freed by the
+ * garbage collector, as soon as no request uses it anymore. Therefore the
+ * correctors of a model are kept in the model itself (see
+ * acquireCorrector()) and not by the threads, that have used them.
+ *
+ * A model has its own cache and deletion index, because both are based on the
+ * wordIDs of its data, so they are replaced together with the data. Before a
+ * new model is swapped in, its cache is filled with the candidates of the
+ * words in the cache of the old model. The first requests after the swap do
+ * not have to search them again. After enableCompletions(), the Completer of
+ * a new model is built before the swap, too.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class ModelHandle {
+
+    private final AtomicReference<Model> current;
+    private final ExecutorService loader;
+    private volatile boolean completions;
+
+    /**
+     * The data of a model together with the cache and the deletion index,
+     * that belong to it.
+     */
+    public static final class Model {
+
+        private final StringTrieView data;
+        private final CorrectionCache cache;
+        private final DeletionIndex deletionIndex;
+        private final int generation;
+        private volatile Completer completer;
+        // Correctors, that are not used by a request right now.
+        private final Queue<Corrector> idleCorrectors;
+
+        private Model(StringTrieView data, CorrectionCache cache, DeletionIndex deletionIndex, int generation) {
+            this.data = data;
+            this.cache = cache;
+            this.deletionIndex = deletionIndex;
+            this.generation = generation;
+            this.idleCorrectors = new ConcurrentLinkedQueue<Corrector>();
+        }
+
+        /**
+         * Returns the frozen data.
+         *
+         * @return Data of the model.
+         */
+        public StringTrieView getData() {
+            return data;
+        }
+
+        /**
+         * Returns the cache for this model.
+         *
+         * @return Cache or null.
+         */
+        public CorrectionCache getCache() {
+            return cache;
+        }
+
+        /**
+         * Returns the deletion index for this model.
+         *
+         * @return Index or null.
+         */
+        public DeletionIndex getDeletionIndex() {
+            return deletionIndex;
+        }
+
+        /**
+         * Returns the number of the model: 1 for the first one, every swap
+         * adds 1.
+         *
+         * @return Generation of the model.
+         */
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Returns the completer for the data. If the handle has not been asked
+         * to build it (see enableCompletions()), it is created, when it is
+         * needed first.
+         *
+         * @return Completer.
+         */
+        public Completer getCompleter() {
+            Completer ret = completer;
+            if (ret == null) {
+                synchronized (this) {
+                    ret = completer;
+                    if (ret == null) {
+                        ret = new Completer(data);
+                        completer = ret;
+                    }
+                }
+            }
+            return ret;
+        }
+
+        // Returns true, if the completer has been built.
+        boolean hasCompleter() {
+            return completer != null;
+        }
+
+        /**
+         * Creates a corrector, that uses the data, the cache and the index of
+         * this model.
+         *
+         * @return New corrector.
+         */
+        public Corrector newCorrector() {
+            Corrector ret = new Corrector(data);
+            ret.setCache(cache);
+            ret.setDeletionIndex(deletionIndex);
+            return ret;
+        }
+
+        /**
+         * Returns an idle corrector of this model or a new one. It must be
+         * given back with releaseCorrector(Corrector), when the request is
+         * answered. The idle correctors are freed together with the model.
+         *
+         * @return Corrector, that is used by no other thread.
+         */
+        public Corrector acquireCorrector() {
+            Corrector ret = idleCorrectors.poll();
+            return ret != null ? ret : newCorrector();
+        }
+
+        /**
+         * Gives back a corrector, that has been returned by
+         * acquireCorrector().
+         *
+         * @param corrector
+         */
+        public void releaseCorrector(Corrector corrector) {
+            idleCorrectors.add(corrector);
+        }
+    }
+
+    /**
+     * Creates a handle for a first model. The trie will be frozen.
+     *
+     * @param data
+     * @param cache Cache or null. The new models get a cache of the same
+     * size.
+     * @param deletionIndex Index for the data or null. The new models get an
+     * index with the same distance and prefix length.
+     */
+    public ModelHandle(StringTrie data, CorrectionCache cache, DeletionIndex deletionIndex) {
+        this.current = new AtomicReference<Model>(new Model(data.freeze(), cache, deletionIndex, 1));
+        this.loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread ret = new Thread(task, "ModelHandle-loader");
+                ret.setDaemon(true);
+                return ret;
+            }
+        });
+    }
+
+    /**
+     * Creates a handle for a first model without cache and index.
+     *
+     * @param data
+     */
+    public ModelHandle(StringTrie data) {
+        this(data, null, null);
+    }
+
+    /**
+     * Returns the current model.
+     *
+     * @return Model.
+     */
+    public Model get() {
+        return current.get();
+    }
+
+    /**
+     * Builds the Completer of the current model now and that of every new
+     * model before it is swapped in, so that no completion request has to
+     * wait for it.
+     */
+    public synchronized void enableCompletions() {
+        completions = true;
+        current.get().getCompleter();
+    }
+
+    /**
+     * Replaces the current model with new data. The cache and the index for
+     * the new data (and the Completer, see enableCompletions()) are built,
+     * before the new model is visible, so this may take a while. Requests that read the model in the meantime still get
+     * the old one.
+     *
+     * @param data The trie will be frozen.
+     * @return The new model.
+     */
+    public synchronized Model swap(StringTrie data) {
+        Model previous = current.get();
+        StringTrieView view = data.freeze();
+        CorrectionCache cache = null;
+        if (previous.cache != null) {
+            cache = new CorrectionCache(previous.cache.getResultCache().getCapacity(),
+                    previous.cache.getCandidateCache().getCapacity());
+        }
+        DeletionIndex deletionIndex = null;
+        if (previous.deletionIndex != null) {
+            deletionIndex = new DeletionIndex(view, previous.deletionIndex.getMaxDistance(),
+                    previous.deletionIndex.getPrefixLength());
+        }
+        Model next = new Model(view, cache, deletionIndex, previous.generation + 1);
+        warmUp(previous, next);
+        if (completions) {
+            next.completer = new Completer(view);
+        }
+        current.set(next);
+        return next;
+    }
+
+    /**
+     * Loads a model from a file in a background thread and swaps it in, see
+     * swap(StringTrie). Reloads are done one after another. If the file can
+     * not be read, the current model is kept and the future fails.
+     *
+     * @param filename
+     * @param encoding
+     * @return Future for the new model.
+     */
+    public Future<Model> reload(final String filename, final String encoding) {
+        return loader.submit(new Callable<Model>() {
+            public Model call() throws IOException {
+                if (!new File(filename).isFile()) {
+                    throw new FileNotFoundException(filename);
+                }
+                StringTrie data = new StringTrie(filename, encoding);
+                if (!data.isRestored()) {
+                    throw new IOException("The file does not contain a valid model: " + filename);
+                }
+                return swap(data);
+            }
+        });
+    }
+
+    /**
+     * Replaces the cache of the current model. The data stays the same.
+     *
+     * @param cache Cache or null.
+     */
+    public synchronized void setCache(CorrectionCache cache) {
+        Model model = current.get();
+        Model next = new Model(model.data, cache, model.deletionIndex, model.generation);
+        next.completer = model.completer;
+        current.set(next);
+    }
+
+    /**
+     * Replaces the deletion index of the current model. The index must have
+     * been built for the data of the current model.
+     *
+     * @param deletionIndex Index or null.
+     */
+    public synchronized void setDeletionIndex(DeletionIndex deletionIndex) {
+        Model model = current.get();
+        Model next = new Model(model.data, model.cache, deletionIndex, model.generation);
+        next.completer = model.completer;
+        current.set(next);
+    }
+
+    // Searches the candidates of the words, that are cached for the old model, with the new one.
+    private static void warmUp(Model previous, Model next) {
+        if (previous.cache == null || next.cache == null) {
+            return;
+        }
+        Corrector corrector = next.newCorrector();
+        Alphabet alphabet = previous.data.getAlphabet();
+        for (IntArrayKey key : previous.cache.getCandidateKeys()) {
+            int[] word = key.getKey();
+            boolean known = true;
+            for (int symbol : word) {
+                known &= symbol != Alphabet.UNKNOWN_SYMBOL;
+            }
+            if (known) {
+                corrector.prefetchCandidates(alphabet.decode(word));
+            }
+        }
+    }
+}
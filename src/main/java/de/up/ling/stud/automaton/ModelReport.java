@@ -0,0 +1,567 @@
+package de.up.ling.stud.automaton;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Describes the size of a model: the number of nodes of the lexicon and of the
+ * language model, how many children their nodes have, the number of n-grams
+ * of each order and how much memory each structure needs. A report is created
+ * with StringTrie.report().
+ *
+ * The memory is estimated for a 64 bit JVM with compressed references: the
+ * objects of the trie nodes and their fastutil hash maps. The compact sizes
+ * are estimates for the same data in flat arrays, where the children of a node
+ * are stored next to each other (symbol or wordID, index of the first child
+ * and ID or count per node).
+ *
+ * project(long) extrapolates the report to a larger corpus with Heaps' law.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class ModelReport {
+
+    /**
+     * Nodes with more children are counted in the last bucket of the
+     * branching histogram.
+     */
+    public static final int BRANCHING_BUCKETS = 17;
+    // Sizes of the objects in bytes, see estimateMapBytes(int, int).
+    private static final int LEXICON_NODE_BYTES = 48;
+    private static final int MODEL_NODE_BYTES = 56;
+    private static final int MAP_BYTES = 56;
+    private static final int LEXICON_COMPACT_NODE_BYTES = 12; // symbol, first child, ID
+    private static final int MODEL_COMPACT_NODE_BYTES = 16; // wordID, first child, count, float probability
+    private final int nGram;
+    private final int alphabetSize;
+    private final int words;
+    private final TrieStats lexicon;
+    private final TrieStats languageModel;
+    private final long wordBytes;
+    private final long compactWordBytes;
+
+    /**
+     * Counts the nodes of a trie. The counters are filled by the tries, see
+     * LexiconTrie.collectStats(TrieStats, int).
+     */
+    public static final class TrieStats {
+
+        private final int nodeBytes;
+        private final int compactNodeBytes;
+        private long nodes;
+        private long finalNodes;
+        private final long[] branching;
+        private int maxDepth;
+        private long[] nodesPerDepth;
+        private long[] singletonsPerDepth;
+        private long[] countsPerDepth;
+        private long bytes;
+
+        TrieStats(int nodeBytes, int compactNodeBytes) {
+            this.nodeBytes = nodeBytes;
+            this.compactNodeBytes = compactNodeBytes;
+            this.branching = new long[BRANCHING_BUCKETS];
+            this.maxDepth = -1;
+            this.nodesPerDepth = new long[8];
+            this.singletonsPerDepth = new long[8];
+            this.countsPerDepth = new long[8];
+        }
+
+        // Counts a node at a depth, that has 'children' outgoing transitions and has
+        // been seen 'count' times (always 0 in the lexicon).
+        void addNode(int depth, int children, boolean isFinal, int count) {
+            if (depth >= nodesPerDepth.length) {
+                int length = Math.max(depth + 1, 2 * nodesPerDepth.length);
+                nodesPerDepth = Arrays.copyOf(nodesPerDepth, length);
+                singletonsPerDepth = Arrays.copyOf(singletonsPerDepth, length);
+                countsPerDepth = Arrays.copyOf(countsPerDepth, length);
+            }
+            ++nodes;
+            if (isFinal) {
+                ++finalNodes;
+            }
+            ++branching[Math.min(children, BRANCHING_BUCKETS - 1)];
+            maxDepth = Math.max(maxDepth, depth);
+            ++nodesPerDepth[depth];
+            if (count == 1) {
+                ++singletonsPerDepth[depth];
+            }
+            countsPerDepth[depth] += count;
+            bytes += nodeBytes + estimateMapBytes(children, 4);
+        }
+
+        /**
+         * Returns the number of nodes, including the root.
+         *
+         * @return Number of nodes.
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Returns the number of final nodes.
+         *
+         * @return Number of final nodes.
+         */
+        public long getFinalNodes() {
+            return finalNodes;
+        }
+
+        /**
+         * Returns the number of transitions.
+         *
+         * @return Number of edges.
+         */
+        public long getEdges() {
+            return Math.max(0, nodes - 1);
+        }
+
+        /**
+         * Returns the number of nodes with the given number of children. The
+         * last bucket counts all nodes with BRANCHING_BUCKETS - 1 or more
+         * children.
+         *
+         * @param children
+         * @return Number of nodes.
+         */
+        public long getBranching(int children) {
+            return branching[Math.min(children, BRANCHING_BUCKETS - 1)];
+        }
+
+        /**
+         * Returns the average number of children of the inner nodes.
+         *
+         * @return Average branching factor.
+         */
+        public double getAverageBranching() {
+            long inner = nodes - branching[0];
+            return inner == 0 ? 0 : (double) getEdges() / inner;
+        }
+
+        /**
+         * Returns the depth of the deepest node. The root has depth 0.
+         *
+         * @return Maximal depth.
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * Returns the number of nodes at a depth. In the language model, this
+         * is the number of distinct n-grams of the order 'depth'.
+         *
+         * @param depth
+         * @return Number of nodes.
+         */
+        public long getNodes(int depth) {
+            return depth < nodesPerDepth.length ? nodesPerDepth[depth] : 0;
+        }
+
+        /**
+         * Returns the number of nodes at a depth, that have been seen once.
+         *
+         * @param depth
+         * @return Number of singletons.
+         */
+        public long getSingletons(int depth) {
+            return depth < singletonsPerDepth.length ? singletonsPerDepth[depth] : 0;
+        }
+
+        /**
+         * Returns the sum of the counts of the nodes at a depth. In the
+         * language model, this is the number of n-grams of the order 'depth'
+         * in the corpus.
+         *
+         * @param depth
+         * @return Sum of the counts.
+         */
+        public long getCount(int depth) {
+            return depth < countsPerDepth.length ? countsPerDepth[depth] : 0;
+        }
+
+        /**
+         * Returns the estimated memory of the nodes and their hash maps.
+         *
+         * @return Bytes.
+         */
+        public long getEstimatedBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the estimated memory of the trie in flat arrays.
+         *
+         * @return Bytes.
+         */
+        public long getCompactBytes() {
+            return compactNodeBytes * nodes;
+        }
+
+        // The estimated bytes per node.
+        double getBytesPerNode() {
+            return nodes == 0 ? nodeBytes : (double) bytes / nodes;
+        }
+
+        void appendTo(StringBuilder buf) {
+            buf.append("  ").append(nodes).append(" nodes, ").append(finalNodes).append(" final, ")
+                    .append(getEdges()).append(" edges, max depth ").append(maxDepth)
+                    .append(String.format(Locale.ROOT, ", %.2f children per inner node\n", getAverageBranching()));
+            buf.append("  children:");
+            for (int i = 0; i < BRANCHING_BUCKETS; i++) {
+                if (branching[i] > 0) {
+                    buf.append(' ').append(i).append(i == BRANCHING_BUCKETS - 1 ? "+:" : ":").append(branching[i]);
+                }
+            }
+            buf.append("\n  nodes per depth:");
+            for (int depth = 0; depth <= maxDepth; depth++) {
+                buf.append(' ').append(depth).append(':').append(nodesPerDepth[depth]);
+            }
+            buf.append('\n');
+        }
+    }
+
+    ModelReport(int nGram, int alphabetSize, int words, TrieStats lexicon, TrieStats languageModel, long wordBytes, long compactWordBytes) {
+        this.nGram = nGram;
+        this.alphabetSize = alphabetSize;
+        this.words = words;
+        this.lexicon = lexicon;
+        this.languageModel = languageModel;
+        this.wordBytes = wordBytes;
+        this.compactWordBytes = compactWordBytes;
+    }
+
+    /**
+     * Returns a new counter for the nodes of a LexiconTrie.
+     *
+     * @return Empty statistics.
+     */
+    static TrieStats newLexiconStats() {
+        return new TrieStats(LEXICON_NODE_BYTES, LEXICON_COMPACT_NODE_BYTES);
+    }
+
+    /**
+     * Returns a new counter for the nodes of a BackOffModelTrie.
+     *
+     * @return Empty statistics.
+     */
+    static TrieStats newModelStats() {
+        return new TrieStats(MODEL_NODE_BYTES, MODEL_COMPACT_NODE_BYTES);
+    }
+
+    /**
+     * Estimates the memory of a fastutil open hash map (fastutil 6) with int
+     * keys: an array of keys, an array of values and an array of used flags.
+     * The arrays start with 32 slots and are doubled, when they are filled to
+     * 75%. They do not shrink.
+     *
+     * @param entries
+     * @param valueBytes Bytes per value (4 for references and ints).
+     * @return Bytes of the map and its arrays.
+     */
+    static long estimateMapBytes(int entries, int valueBytes) {
+        long capacity = 32;
+        while (entries >= (long) Math.ceil(0.75 * capacity)) {
+            capacity *= 2;
+        }
+        return MAP_BYTES + arrayBytes(4 * capacity) + arrayBytes(valueBytes * capacity) + arrayBytes(capacity);
+    }
+
+    // An array with a header of 16 bytes, aligned to 8 bytes.
+    private static long arrayBytes(long contentBytes) {
+        return (16 + contentBytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the n-gram size of the language model.
+     *
+     * @return N-gram size.
+     */
+    public int getNGram() {
+        return nGram;
+    }
+
+    /**
+     * Returns the number of symbols of the alphabet.
+     *
+     * @return Size of the alphabet.
+     */
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    /**
+     * Returns the number of words in the lexicon.
+     *
+     * @return Number of words.
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * Returns the number of tokens, that the language model has been learned
+     * from.
+     *
+     * @return Number of tokens.
+     */
+    public long getTokens() {
+        return languageModel.getCount(1);
+    }
+
+    /**
+     * Returns the number of distinct n-grams of an order.
+     *
+     * @param order Between 1 and getNGram().
+     * @return Number of n-grams.
+     */
+    public long getNGrams(int order) {
+        return languageModel.getNodes(order);
+    }
+
+    /**
+     * Returns the statistics of the lexicon.
+     *
+     * @return Statistics of the LexiconTrie.
+     */
+    public TrieStats getLexicon() {
+        return lexicon;
+    }
+
+    /**
+     * Returns the statistics of the language model. The nodes at depth n are
+     * the n-grams of order n.
+     *
+     * @return Statistics of the BackOffModelTrie.
+     */
+    public TrieStats getLanguageModel() {
+        return languageModel;
+    }
+
+    /**
+     * Returns the estimated memory of the words, that are stored for their
+     * IDs (symbols and index).
+     *
+     * @return Bytes.
+     */
+    public long getWordBytes() {
+        return wordBytes;
+    }
+
+    /**
+     * Returns the estimated memory of the words with an array instead of the
+     * hash map as index.
+     *
+     * @return Bytes.
+     */
+    public long getCompactWordBytes() {
+        return compactWordBytes;
+    }
+
+    /**
+     * Returns the estimated memory of all structures.
+     *
+     * @return Bytes.
+     */
+    public long getEstimatedBytes() {
+        return lexicon.getEstimatedBytes() + languageModel.getEstimatedBytes() + wordBytes;
+    }
+
+    /**
+     * Returns the estimated memory of all structures in flat arrays.
+     *
+     * @return Bytes.
+     */
+    public long getCompactBytes() {
+        return lexicon.getCompactBytes() + languageModel.getCompactBytes() + compactWordBytes;
+    }
+
+    /**
+     * Estimates the exponent of Heaps' law V(T) = k * T^beta for the n-grams
+     * of an order. Its slope at the size of the sample is the share of the
+     * n-grams, that have been seen once.
+     *
+     * @param order
+     * @return Exponent between 0 and 1.
+     */
+    public double getHeapsExponent(int order) {
+        long distinct = languageModel.getNodes(order);
+        return distinct == 0 ? 0 : (double) languageModel.getSingletons(order) / distinct;
+    }
+
+    /**
+     * Extrapolates this report to a corpus with another number of tokens. The
+     * number of n-grams of every order grows with Heaps' law, the lexicon and
+     * the stored words grow with the words and every node keeps its current
+     * size. The lexicon is slightly overestimated, because new words share
+     * prefixes with the known ones.
+     *
+     * @param targetTokens
+     * @return The projection.
+     */
+    public Projection project(long targetTokens) {
+        if (targetTokens <= 0) {
+            throw new IllegalArgumentException("The number of tokens must be positive.");
+        }
+        return new Projection(targetTokens);
+    }
+
+    /**
+     * The sizes of a model for a larger corpus, see project(long).
+     */
+    public final class Projection {
+
+        private final long targetTokens;
+        private final double factor;
+        private final long[] nGrams;
+        private final double wordFactor;
+
+        private Projection(long targetTokens) {
+            this.targetTokens = targetTokens;
+            long tokens = getTokens();
+            this.factor = tokens == 0 ? 1 : (double) targetTokens / tokens;
+            this.nGrams = new long[nGram + 1];
+            for (int order = 1; order <= nGram; order++) {
+                nGrams[order] = Math.round(languageModel.getNodes(order) * Math.pow(factor, getHeapsExponent(order)));
+            }
+            long known = languageModel.getNodes(1);
+            this.wordFactor = known == 0 ? 1 : (double) nGrams[1] / known;
+        }
+
+        /**
+         * Returns the number of tokens of the projected corpus.
+         *
+         * @return Number of tokens.
+         */
+        public long getTargetTokens() {
+            return targetTokens;
+        }
+
+        /**
+         * Returns the projected number of distinct n-grams of an order.
+         *
+         * @param order Between 1 and getNGram().
+         * @return Number of n-grams.
+         */
+        public long getNGrams(int order) {
+            return order < nGrams.length ? nGrams[order] : 0;
+        }
+
+        /**
+         * Returns the projected number of words.
+         *
+         * @return Number of words.
+         */
+        public long getWords() {
+            return Math.round(words * wordFactor);
+        }
+
+        /**
+         * Returns the projected number of nodes of the lexicon.
+         *
+         * @return Number of nodes.
+         */
+        public long getLexiconNodes() {
+            return Math.round(lexicon.getNodes() * wordFactor);
+        }
+
+        /**
+         * Returns the projected number of nodes of the language model.
+         *
+         * @return Number of nodes.
+         */
+        public long getModelNodes() {
+            long ret = 1; // the root
+            for (int order = 1; order <= nGram; order++) {
+                ret += nGrams[order];
+            }
+            return ret;
+        }
+
+        /**
+         * Returns the projected memory of all structures.
+         *
+         * @return Bytes.
+         */
+        public long getEstimatedBytes() {
+            return Math.round(getLexiconNodes() * lexicon.getBytesPerNode()
+                    + getModelNodes() * languageModel.getBytesPerNode()
+                    + wordBytes * wordFactor);
+        }
+
+        /**
+         * Returns the projected memory of all structures in flat arrays.
+         *
+         * @return Bytes.
+         */
+        public long getCompactBytes() {
+            return Math.round(getLexiconNodes() * LEXICON_COMPACT_NODE_BYTES
+                    + getModelNodes() * MODEL_COMPACT_NODE_BYTES
+                    + compactWordBytes * wordFactor);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder();
+            buf.append("Projection for ").append(targetTokens).append(" tokens")
+                    .append(String.format(Locale.ROOT, " (%.1f times the corpus):\n", factor));
+            for (int order = 1; order <= nGram; order++) {
+                buf.append("  ").append(order).append("-grams: ").append(languageModel.getNodes(order))
+                        .append(" -> ").append(nGrams[order])
+                        .append(String.format(Locale.ROOT, " (Heaps exponent %.3f)\n", getHeapsExponent(order)));
+            }
+            buf.append("  words: ").append(words).append(" -> ").append(getWords()).append('\n');
+            buf.append("  lexicon nodes: ").append(lexicon.getNodes()).append(" -> ").append(getLexiconNodes()).append('\n');
+            buf.append("  memory: ").append(formatBytes(getEstimatedBytes()))
+                    .append(", compact ").append(formatBytes(getCompactBytes())).append('\n');
+            return buf.toString();
+        }
+    }
+
+    /**
+     * Formats a number of bytes with a unit.
+     *
+     * @param bytes
+     * @return E.g. "12.3 MB".
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String units = "KMGTPE";
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length() - 1) {
+            value /= 1024;
+            ++unit;
+        }
+        return String.format(Locale.ROOT, "%.1f %sB", value, units.charAt(unit));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("Model: ").append(nGram).append("-grams, ").append(words).append(" words, ")
+                .append(alphabetSize).append(" symbols, ").append(getTokens()).append(" tokens\n");
+        buf.append("Lexicon:\n");
+        lexicon.appendTo(buf);
+        buf.append("Language model:\n");
+        languageModel.appendTo(buf);
+        for (int order = 1; order <= nGram; order++) {
+            buf.append("  ").append(order).append("-grams: ").append(languageModel.getNodes(order))
+                    .append(" distinct, ").append(languageModel.getSingletons(order)).append(" seen once, ")
+                    .append(languageModel.getCount(order)).append(" in the corpus\n");
+        }
+        buf.append("Memory (estimated, compact):\n");
+        buf.append("  lexicon: ").append(formatBytes(lexicon.getEstimatedBytes()))
+                .append(", ").append(formatBytes(lexicon.getCompactBytes())).append('\n');
+        buf.append("  language model: ").append(formatBytes(languageModel.getEstimatedBytes()))
+                .append(", ").append(formatBytes(languageModel.getCompactBytes())).append('\n');
+        buf.append("  words: ").append(formatBytes(wordBytes))
+                .append(", ").append(formatBytes(compactWordBytes)).append('\n');
+        buf.append("  total: ").append(formatBytes(getEstimatedBytes()))
+                .append(", ").append(formatBytes(getCompactBytes())).append('\n');
+        return buf.toString();
+    }
+}
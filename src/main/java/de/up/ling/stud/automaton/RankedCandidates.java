@@ -0,0 +1,51 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * The candidates for a word in a given context as wordIDs, sorted by their
+ * weight (the best candidate first). Instances are immutable, so they can be
+ * shared between threads.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class RankedCandidates {
+
+    private final int[] wordIDs;
+    private final double[] weights;
+    private final boolean partial;
+
+    RankedCandidates(int[] wordIDs, double[] weights) {
+        this(wordIDs, weights, false);
+    }
+
+    private RankedCandidates(int[] wordIDs, double[] weights, boolean partial) {
+        assert wordIDs.length == weights.length;
+        this.wordIDs = wordIDs;
+        this.weights = weights;
+        this.partial = partial;
+    }
+
+    /**
+     * Returns the same ranking, marked as the result of an incomplete search.
+     *
+     * @return Partial ranking.
+     */
+    RankedCandidates asPartial() {
+        return new RankedCandidates(wordIDs, weights, true);
+    }
+
+    boolean isPartial() {
+        return partial;
+    }
+
+    int size() {
+        return wordIDs.length;
+    }
+
+    int getWordID(int rank) {
+        return wordIDs[rank];
+    }
+
+    double getWeight(int rank) {
+        return weights[rank];
+    }
+}
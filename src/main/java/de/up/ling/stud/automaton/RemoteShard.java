@@ -0,0 +1,157 @@
+package de.up.ling.stud.automaton;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A shard, that is served by a CorrectionServer in another process on the
+ * same machine, e.g. one that has been started with a shard file (see App
+ * --save-shards). The connections to the server are kept open and are shared
+ * by the threads, that use the shard: a request takes an idle connection or
+ * opens a new one and gives it back afterwards. At most maxConnections are
+ * opened. An open connection does not keep a worker of the server busy, but
+ * the server refuses connections beyond its limit (see
+ * CorrectionServer.setMaxConnections(int)), so maxConnections must stay below
+ * that limit together with the other clients of the server.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class RemoteShard implements CorrectorShard {
+
+    private final int port;
+    private final Semaphore permits;
+    private final Queue<Connection> idleConnections;
+    private static final String encoding = "UTF-8";
+
+    private static final class Connection {
+
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        Connection(int port) throws IOException {
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), encoding));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), encoding));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Creates a shard for the server on a local port.
+     *
+     * @param port
+     * @param maxConnections Maximal number of requests, that are sent to the
+     * server at once.
+     */
+    public RemoteShard(int port, int maxConnections) {
+        this.port = port;
+        this.permits = new Semaphore(maxConnections);
+        this.idleConnections = new ConcurrentLinkedQueue<Connection>();
+    }
+
+    public int getNGram() throws IOException {
+        return Integer.parseInt(request("NGRAM"));
+    }
+
+    public int[] getWordIDs(String[] words) throws IOException {
+        int[] ret = new int[words.length];
+        if (words.length == 0) {
+            return ret;
+        }
+        StringBuilder buf = new StringBuilder("IDS");
+        for (String word : words) {
+            // The server splits at white space, so the empty word is sent as "-".
+            buf.append(' ').append(word.isEmpty() ? "-" : word);
+        }
+        String[] parts = request(buf.toString()).split(" ");
+        if (parts.length != words.length) {
+            throw new IOException("Expected " + words.length + " IDs from port " + port);
+        }
+        for (int i = 0; i < words.length; i++) {
+            ret[i] = Integer.parseInt(parts[i]);
+        }
+        return ret;
+    }
+
+    public ShardResult search(String word, boolean known, int[] context, int maxResults) throws IOException {
+        StringBuilder buf = new StringBuilder("SHARD ");
+        buf.append(maxResults).append(' ').append(known ? 1 : 0).append(' ').append(word);
+        for (int wordID : context) {
+            buf.append(' ').append(wordID);
+        }
+        try {
+            return ShardResult.parse(request(buf.toString()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Sends a request and returns the answer without the leading OK.
+    private String request(String request) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to port " + port, e);
+        }
+        try {
+            Connection connection = idleConnections.poll();
+            if (connection == null) {
+                connection = new Connection(port);
+            }
+            String answer;
+            try {
+                connection.out.write(request);
+                connection.out.newLine();
+                connection.out.flush();
+                answer = connection.in.readLine();
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+            if (answer == null) {
+                connection.close();
+                throw new IOException("The server on port " + port + " closed the connection.");
+            }
+            idleConnections.add(connection);
+            if (!answer.startsWith("OK")) {
+                throw new IOException("The server on port " + port + " answered: " + answer);
+            }
+            return answer.length() > 2 ? answer.substring(3) : "";
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes the idle connections. Connections, that are used right now, are
+     * closed by the server, when it shuts down.
+     */
+    public void close() {
+        for (Connection connection = idleConnections.poll(); connection != null; connection = idleConnections.poll()) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteShard{" + "port=" + port + '}';
+    }
+}
@@ -0,0 +1,157 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * Reusable buffer for the best candidates of a correction. The candidates are
+ * stored as wordIDs and scores in primitive arrays, sorted by their score
+ * (the best candidate first). A word is only turned into a String, when
+ * getWord() is called, so callers that need only the IDs or the best
+ * candidate do not allocate anything per result.
+ *
+ * A buffer must only be used by one thread at a time.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class ResultBuffer {
+
+    private final int[] wordIDs;
+    private final double[] scores;
+    private int size;
+    private int total;
+    private int queryID;
+    private boolean partial;
+    private StringTrieView data;
+
+    /**
+     * Creates a buffer, that holds at most maxResults candidates.
+     *
+     * @param maxResults
+     */
+    public ResultBuffer(int maxResults) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1: " + maxResults);
+        }
+        this.wordIDs = new int[maxResults];
+        this.scores = new double[maxResults];
+        clear();
+    }
+
+    // Copies the best candidates of a ranking. Called by the Corrector.
+    void fill(RankedCandidates ranking, StringTrieView data, int queryID) {
+        this.data = data;
+        this.queryID = queryID;
+        this.total = ranking.size();
+        this.partial = ranking.isPartial();
+        this.size = Math.min(total, wordIDs.length);
+        for (int rank = 0; rank < size; rank++) {
+            wordIDs[rank] = ranking.getWordID(rank);
+            scores[rank] = ranking.getWeight(rank);
+        }
+    }
+
+    /**
+     * Removes all candidates.
+     */
+    public void clear() {
+        size = 0;
+        total = 0;
+        queryID = StringTrie.UNKNOWN_WORD_ID;
+        partial = false;
+        data = null;
+    }
+
+    /**
+     * Returns the number of candidates in the buffer.
+     *
+     * @return Number of candidates.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of candidates that have been found, including the
+     * ones that did not fit in the buffer.
+     *
+     * @return Number of found candidates.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the maximal number of candidates in the buffer.
+     *
+     * @return Capacity.
+     */
+    public int getMaxResults() {
+        return wordIDs.length;
+    }
+
+    /**
+     * Returns the wordID of a candidate.
+     *
+     * @param rank 0 for the best candidate.
+     * @return wordID
+     */
+    public int getWordID(int rank) {
+        checkRank(rank);
+        return wordIDs[rank];
+    }
+
+    /**
+     * Returns the score of a candidate. The smaller, the better.
+     *
+     * @param rank 0 for the best candidate.
+     * @return Score
+     */
+    public double getScore(int rank) {
+        checkRank(rank);
+        return scores[rank];
+    }
+
+    /**
+     * Returns a candidate as a String.
+     *
+     * @param rank 0 for the best candidate.
+     * @return Candidate
+     */
+    public String getWord(int rank) {
+        checkRank(rank);
+        return data.getWordAsString(wordIDs[rank]);
+    }
+
+    /**
+     * Returns the wordID of the best candidate.
+     *
+     * @return wordID or StringTrie.UNKNOWN_WORD_ID, if no candidate was found.
+     */
+    public int getBestWordID() {
+        return size == 0 ? StringTrie.UNKNOWN_WORD_ID : wordIDs[0];
+    }
+
+    /**
+     * Returns true, if the corrected word is in the lexicon and is its own
+     * best candidate.
+     *
+     * @return True, if the word does not need a correction.
+     */
+    public boolean isCorrect() {
+        return size > 0 && queryID != StringTrie.UNKNOWN_WORD_ID && wordIDs[0] == queryID;
+    }
+
+    /**
+     * Returns true, if the search ran out of its budget, so that better
+     * candidates may be missing.
+     *
+     * @return True, if the result is incomplete.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    private void checkRank(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("rank " + rank + ", size " + size);
+        }
+    }
+}
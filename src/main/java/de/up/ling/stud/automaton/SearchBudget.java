@@ -0,0 +1,65 @@
+package de.up.ling.stud.automaton;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the work of a single correction: the number of expanded trie nodes
+ * and the time until a deadline. The search does not check the budget for
+ * every node, but charges it for CHECK_INTERVAL nodes at once, so the limits
+ * are exact only up to that number of nodes for every running search. All
+ * tasks of a parallel search share the same budget, every task charges its
+ * nodes at the latest when it ends.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class SearchBudget {
+
+    /**
+     * Number of expansions between two checks.
+     */
+    static final int CHECK_INTERVAL = 256;
+    private final AtomicLong remaining;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean exhausted;
+
+    /**
+     * Creates a budget for a single correction.
+     *
+     * @param maxExpansions Maximal number of expanded nodes.
+     * @param timeoutNanos Time in ns from now, or Long.MAX_VALUE for no
+     * deadline.
+     */
+    SearchBudget(long maxExpansions, long timeoutNanos) {
+        this.remaining = new AtomicLong(maxExpansions);
+        this.hasDeadline = timeoutNanos != Long.MAX_VALUE;
+        this.deadline = hasDeadline ? System.nanoTime() + timeoutNanos : 0;
+        this.exhausted = false;
+    }
+
+    /**
+     * Charges the budget for some expansions.
+     *
+     * @param expansions
+     * @return False, if the search has to stop.
+     */
+    boolean charge(int expansions) {
+        if (exhausted) {
+            return false;
+        }
+        if (remaining.addAndGet(-expansions) < 0 || (hasDeadline && System.nanoTime() - deadline > 0)) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true, if a search has run out of this budget.
+     *
+     * @return True, if the budget is used up.
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+}
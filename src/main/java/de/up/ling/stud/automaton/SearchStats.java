@@ -0,0 +1,322 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * Counts the work of a Corrector: how many items went through the agenda,
+ * how many subtries were skipped, how many cells of edit distance matrices
+ * were computed, how often the language model was asked and how many
+ * candidates each threshold gave. A Corrector only fills these counters, if
+ * they have been enabled with Corrector.setStatsEnabled(boolean).
+ *
+ * The counters of a single call and the sum of all calls of a Corrector are
+ * kept in separate objects, see Corrector.getLastStats() and
+ * Corrector.getTotalStats().
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class SearchStats {
+
+    /**
+     * The number of thresholds, whose candidates are counted separately. Higher
+     * thresholds are counted in the last cell.
+     */
+    public static final int THRESHOLDS = 8;
+    private long queries;
+    private long accepted;
+    private long cacheHits;
+    private long agendaPushes;
+    private long agendaPops;
+    private long prunedSubtries;
+    private long distanceCalls;
+    private long distanceCells;
+    private long indexLookups;
+    private long languageModelLookups;
+    private long partialResults;
+    private int maxThreshold;
+    private long thresholdSum;
+    private final long[] searches;
+    private final long[] candidates;
+
+    /**
+     * Creates counters, that are all 0.
+     */
+    public SearchStats() {
+        this.searches = new long[THRESHOLDS];
+        this.candidates = new long[THRESHOLDS];
+        this.maxThreshold = -1;
+    }
+
+    void countQuery() {
+        ++queries;
+    }
+
+    void countAccepted() {
+        ++accepted;
+    }
+
+    void countCacheHit() {
+        ++cacheHits;
+    }
+
+    void countPush() {
+        ++agendaPushes;
+    }
+
+    void countPop() {
+        ++agendaPops;
+    }
+
+    void countPruned() {
+        ++prunedSubtries;
+    }
+
+    // Counts a distance between two words of the given lengths.
+    void countDistance(int firstLength, int secondLength) {
+        ++distanceCalls;
+        distanceCells += (long) firstLength * secondLength;
+    }
+
+    // Counts a cut-off distance: The distance between the candidate and every prefix of
+    // the word, whose length is between l and u (see CutOffEditDistance).
+    void countCutOffDistance(int wordLength, int candidateLength, int errorThreshold) {
+        int l = Math.max(1, candidateLength - errorThreshold);
+        int u = Math.min(wordLength, candidateLength + errorThreshold);
+        if (u >= l) {
+            distanceCalls += u - l + 1;
+            distanceCells += (long) candidateLength * ((long) u * (u + 1) / 2 - (long) (l - 1) * l / 2);
+        }
+    }
+
+    void countIndexLookup() {
+        ++indexLookups;
+    }
+
+    void countLanguageModelLookups(int lookups) {
+        languageModelLookups += lookups;
+    }
+
+    // Counts a search with a threshold, that found some candidates.
+    void countSearch(int threshold, int found) {
+        int cell = Math.min(threshold, THRESHOLDS - 1);
+        ++searches[cell];
+        candidates[cell] += found;
+    }
+
+    // Counts the threshold that has been reached for a word.
+    void countThreshold(int threshold, boolean partial) {
+        maxThreshold = Math.max(maxThreshold, threshold);
+        thresholdSum += threshold;
+        if (partial) {
+            ++partialResults;
+        }
+    }
+
+    /**
+     * Adds all counters of another object to this one.
+     *
+     * @param other
+     */
+    public void add(SearchStats other) {
+        queries += other.queries;
+        accepted += other.accepted;
+        cacheHits += other.cacheHits;
+        agendaPushes += other.agendaPushes;
+        agendaPops += other.agendaPops;
+        prunedSubtries += other.prunedSubtries;
+        distanceCalls += other.distanceCalls;
+        distanceCells += other.distanceCells;
+        indexLookups += other.indexLookups;
+        languageModelLookups += other.languageModelLookups;
+        partialResults += other.partialResults;
+        maxThreshold = Math.max(maxThreshold, other.maxThreshold);
+        thresholdSum += other.thresholdSum;
+        for (int i = 0; i < THRESHOLDS; i++) {
+            searches[i] += other.searches[i];
+            candidates[i] += other.candidates[i];
+        }
+    }
+
+    /**
+     * Sets all counters to 0.
+     */
+    public void reset() {
+        queries = accepted = cacheHits = 0;
+        agendaPushes = agendaPops = prunedSubtries = 0;
+        distanceCalls = distanceCells = indexLookups = languageModelLookups = 0;
+        partialResults = thresholdSum = 0;
+        maxThreshold = -1;
+        for (int i = 0; i < THRESHOLDS; i++) {
+            searches[i] = 0;
+            candidates[i] = 0;
+        }
+    }
+
+    /**
+     * Returns the number of corrected words.
+     *
+     * @return Number of words.
+     */
+    public long getQueries() {
+        return queries;
+    }
+
+    /**
+     * Returns the number of words, that have been accepted by the AcceptRule.
+     *
+     * @return Number of accepted words.
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Returns the number of results and candidate sets, that have been found
+     * in the cache.
+     *
+     * @return Number of hits.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of items, that have been put on the agenda.
+     *
+     * @return Number of pushes.
+     */
+    public long getAgendaPushes() {
+        return agendaPushes;
+    }
+
+    /**
+     * Returns the number of items, that have been taken from the agenda. Every
+     * item is a trie node, that is expanded.
+     *
+     * @return Number of expanded nodes.
+     */
+    public long getAgendaPops() {
+        return agendaPops;
+    }
+
+    /**
+     * Returns the number of subtries, that have been skipped because of the
+     * lengths or symbols of their words.
+     *
+     * @return Number of skipped subtries.
+     */
+    public long getPrunedSubtries() {
+        return prunedSubtries;
+    }
+
+    /**
+     * Returns the number of computed edit distances. A cut-off distance counts
+     * as one distance for every prefix of the word, that it compares.
+     *
+     * @return Number of distances.
+     */
+    public long getDistanceCalls() {
+        return distanceCalls;
+    }
+
+    /**
+     * Returns the number of cells of edit distance matrices, that have been
+     * computed.
+     *
+     * @return Number of cells.
+     */
+    public long getDistanceCells() {
+        return distanceCells;
+    }
+
+    /**
+     * Returns the number of lookups in the DeletionIndex.
+     *
+     * @return Number of lookups.
+     */
+    public long getIndexLookups() {
+        return indexLookups;
+    }
+
+    /**
+     * Returns how often the language model has been asked for a probability.
+     *
+     * @return Number of lookups.
+     */
+    public long getLanguageModelLookups() {
+        return languageModelLookups;
+    }
+
+    /**
+     * Returns the number of words, whose search ran out of its budget.
+     *
+     * @return Number of partial results.
+     */
+    public long getPartialResults() {
+        return partialResults;
+    }
+
+    /**
+     * Returns the highest threshold that has been reached for a word or -1,
+     * if no word has been searched.
+     *
+     * @return Highest threshold.
+     */
+    public int getMaxThreshold() {
+        return maxThreshold;
+    }
+
+    /**
+     * Returns the sum of the thresholds that have been reached for the
+     * searched words.
+     *
+     * @return Sum of the thresholds.
+     */
+    public long getThresholdSum() {
+        return thresholdSum;
+    }
+
+    /**
+     * Returns how often a threshold has been searched.
+     *
+     * @param threshold
+     * @return Number of searches.
+     */
+    public long getSearches(int threshold) {
+        return searches[Math.min(threshold, THRESHOLDS - 1)];
+    }
+
+    /**
+     * Returns the number of candidates, that the searches with a threshold
+     * have found.
+     *
+     * @param threshold
+     * @return Number of candidates.
+     */
+    public long getCandidates(int threshold) {
+        return candidates[Math.min(threshold, THRESHOLDS - 1)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("queries=").append(queries)
+                .append(" accepted=").append(accepted)
+                .append(" cacheHits=").append(cacheHits)
+                .append(" pushes=").append(agendaPushes)
+                .append(" pops=").append(agendaPops)
+                .append(" pruned=").append(prunedSubtries)
+                .append(" distances=").append(distanceCalls)
+                .append(" cells=").append(distanceCells)
+                .append(" indexLookups=").append(indexLookups)
+                .append(" lmLookups=").append(languageModelLookups)
+                .append(" partial=").append(partialResults)
+                .append(" maxThreshold=").append(maxThreshold)
+                .append(" candidates=[");
+        for (int i = 0; i < THRESHOLDS; i++) {
+            if (i > 0) {
+                buf.append(' ');
+            }
+            buf.append(searches[i]).append(':').append(candidates[i]);
+        }
+        return buf.append(']').toString();
+    }
+}
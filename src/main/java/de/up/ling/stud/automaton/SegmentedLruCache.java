@@ -0,0 +1,252 @@
+package de.up.ling.stud.automaton;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map with a maximal size that can be used by many threads at once. The keys
+ * are spread over segments that are locked independently. Every segment is a
+ * segmented LRU list: New entries are put in a probation part, an entry that
+ * is requested again is moved to a protected part. When the segment is full,
+ * entries in the probation part are evicted first, so that a lot of keys that
+ * are only seen once can not push out the entries that are used frequently.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class SegmentedLruCache<K, V> {
+
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final int capacity;
+
+    /**
+     * Creates a cache, that holds at most (about) capacity entries.
+     *
+     * @param capacity
+     */
+    public SegmentedLruCache(int capacity) {
+        int numSegments = 1;
+        while (numSegments < 16 && numSegments * 64 < capacity) {
+            numSegments <<= 1;
+        }
+        this.capacity = capacity;
+        this.mask = numSegments - 1;
+        // Arrays of a generic type can only be created raw.
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment<K, V>[] newSegments = new Segment[numSegments];
+        this.segments = newSegments;
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<K, V>(Math.max(1, capacity / numSegments));
+        }
+    }
+
+    /**
+     * Returns the value for a key or null, if it is not in the cache.
+     *
+     * @param key
+     * @return Value or null.
+     */
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Puts a key and its value in the cache. This may evict other entries.
+     *
+     * @param key
+     * @param value
+     */
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    /**
+     * Removes all entries. The statistics are kept.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns a copy of the keys of all entries. The keys of every segment,
+     * that have been requested more than once, come first.
+     *
+     * @return Keys.
+     */
+    public List<K> keys() {
+        List<K> ret = new ArrayList<K>();
+        for (Segment<K, V> segment : segments) {
+            segment.addKeysTo(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return Number of entries.
+     */
+    public int size() {
+        int ret = 0;
+        for (Segment<K, V> segment : segments) {
+            ret += segment.size();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the maximal number of entries.
+     *
+     * @return Capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of requests that have been answered from the cache.
+     *
+     * @return Number of hits.
+     */
+    public long getHits() {
+        long ret = 0;
+        for (Segment<K, V> segment : segments) {
+            ret += segment.getHits();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of requests for keys that were not in the cache.
+     *
+     * @return Number of misses.
+     */
+    public long getMisses() {
+        long ret = 0;
+        for (Segment<K, V> segment : segments) {
+            ret += segment.getMisses();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of entries that have been removed to make room for
+     * new ones.
+     *
+     * @return Number of evictions.
+     */
+    public long getEvictions() {
+        long ret = 0;
+        for (Segment<K, V> segment : segments) {
+            ret += segment.getEvictions();
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long requests = hits + getMisses();
+        return "size=" + size() + "/" + capacity + " hits=" + hits + " misses=" + (requests - hits)
+                + " evictions=" + getEvictions()
+                + String.format(" hitrate=%.3f", requests == 0 ? 0.0 : (double) hits / requests);
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // use the high bits as well
+        return segments[h & mask];
+    }
+
+    /**
+     * A part of the cache with its own lock. Counters are only changed while
+     * holding the lock, so they do not cause more contention.
+     */
+    private static class Segment<K, V> {
+
+        private final int capacity;
+        private final int protectedCapacity;
+        // insertion order: the eldest entry is evicted first
+        private final LinkedHashMap<K, V> probation;
+        // access order: the least recently used entry is moved back to probation
+        private final LinkedHashMap<K, V> protectedPart;
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+            this.probation = new LinkedHashMap<K, V>(16, 0.75f, false);
+            this.protectedPart = new LinkedHashMap<K, V>(16, 0.75f, true);
+        }
+
+        synchronized V get(K key) {
+            V value = protectedPart.get(key);
+            if (value != null) {
+                ++hits;
+                return value;
+            }
+            value = probation.remove(key);
+            if (value != null) {
+                // second request: promote the entry
+                ++hits;
+                protectedPart.put(key, value);
+                if (protectedPart.size() > protectedCapacity) {
+                    Iterator<Map.Entry<K, V>> eldest = protectedPart.entrySet().iterator();
+                    Map.Entry<K, V> demoted = eldest.next();
+                    eldest.remove();
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+                return value;
+            }
+            ++misses;
+            return null;
+        }
+
+        synchronized void put(K key, V value) {
+            if (protectedPart.containsKey(key)) {
+                protectedPart.put(key, value);
+                return;
+            }
+            probation.put(key, value);
+            while (probation.size() + protectedPart.size() > capacity) {
+                Iterator<Map.Entry<K, V>> eldest = (probation.isEmpty() ? protectedPart : probation).entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                ++evictions;
+            }
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedPart.clear();
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedPart.size();
+        }
+
+        synchronized void addKeysTo(List<K> keys) {
+            keys.addAll(protectedPart.keySet());
+            keys.addAll(probation.keySet());
+        }
+
+        synchronized long getHits() {
+            return hits;
+        }
+
+        synchronized long getMisses() {
+            return misses;
+        }
+
+        synchronized long getEvictions() {
+            return evictions;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * Decides, which shard of a ShardedCorrector holds a word. The words can be
+ * split by their first character, so that the words of a shard share their
+ * beginning, or by a hash of the whole word, which gives shards of about the
+ * same size. The shards of a model must be cut and queried with the same
+ * partition.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class ShardPartition {
+
+    private final int shards;
+    private final boolean byFirstCharacter;
+
+    private ShardPartition(int shards, boolean byFirstCharacter) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("There must be at least one shard: " + shards);
+        }
+        this.shards = shards;
+        this.byFirstCharacter = byFirstCharacter;
+    }
+
+    /**
+     * Splits the words by their first character.
+     *
+     * @param shards Number of shards.
+     * @return Partition.
+     */
+    public static ShardPartition byFirstCharacter(int shards) {
+        return new ShardPartition(shards, true);
+    }
+
+    /**
+     * Splits the words by a hash of the whole word.
+     *
+     * @param shards Number of shards.
+     * @return Partition.
+     */
+    public static ShardPartition byHash(int shards) {
+        return new ShardPartition(shards, false);
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return Number of shards.
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the shard of a word. The empty word belongs to shard 0.
+     *
+     * @param word
+     * @return Number from 0 to getShards() - 1.
+     */
+    public int getShard(String word) {
+        if (word.isEmpty()) {
+            return 0;
+        }
+        int hash = byFirstCharacter ? word.codePointAt(0) : word.hashCode();
+        // Mix the bits, so that the low bits depend on the whole hash.
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % shards;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardPartition{" + "shards=" + shards + ", byFirstCharacter=" + byFirstCharacter + '}';
+    }
+}
@@ -0,0 +1,175 @@
+package de.up.ling.stud.automaton;
+
+import java.util.Arrays;
+
+/**
+ * The candidates, that a single shard has found for a word (see
+ * ShardedCorrector). Besides the candidates with their edit distance and
+ * weight, it holds the threshold up to which the shard has searched and the
+ * number of its candidates for every edit distance. The weights are the same
+ * as those of a corrector for the whole model, so the results of all shards
+ * can be compared. Instances are immutable.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class ShardResult {
+
+    private final int threshold;
+    private final int[] counts;
+    private final boolean partial;
+    private final int[] wordIDs;
+    private final String[] words;
+    private final int[] distances;
+    private final double[] weights;
+
+    ShardResult(int threshold, int[] counts, boolean partial, int[] wordIDs, String[] words, int[] distances, double[] weights) {
+        assert counts.length == threshold + 1;
+        assert wordIDs.length == words.length && words.length == distances.length && distances.length == weights.length;
+        this.threshold = threshold;
+        this.counts = counts;
+        this.partial = partial;
+        this.wordIDs = wordIDs;
+        this.words = words;
+        this.distances = distances;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the threshold, up to which the shard has searched. All
+     * candidates of the shard with a smaller or equal edit distance have been
+     * found, unless the result is partial.
+     *
+     * @return Error threshold.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the number of candidates of the shard with an edit distance,
+     * including those that have been left out of this result.
+     *
+     * @param distance From 0 to getThreshold().
+     * @return Number of candidates.
+     */
+    public int getCount(int distance) {
+        return counts[distance];
+    }
+
+    /**
+     * Returns true, if the search has been stopped by the budget of the
+     * shard.
+     *
+     * @return True, if the result is incomplete.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Returns the number of candidates in this result.
+     *
+     * @return Number of candidates.
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Returns the ID of a candidate. The IDs are the same in all shards of a
+     * model and break ties between equal weights.
+     *
+     * @param index
+     * @return wordID
+     */
+    public int getWordID(int index) {
+        return wordIDs[index];
+    }
+
+    public String getWord(int index) {
+        return words[index];
+    }
+
+    public int getDistance(int index) {
+        return distances[index];
+    }
+
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Writes the result as a single line of tokens, that are separated by
+     * spaces: the threshold, 1 or 0 for partial, the counts for every
+     * distance and the ID, word, distance and weight of every candidate.
+     *
+     * @return Text that can be read by parse(String).
+     */
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append(threshold).append(' ').append(partial ? 1 : 0);
+        for (int count : counts) {
+            buf.append(' ').append(count);
+        }
+        for (int i = 0; i < words.length; i++) {
+            buf.append(' ').append(wordIDs[i]).append(' ').append(words[i]).append(' ').append(distances[i]).append(' ').append(weights[i]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Reads a result, that has been written with toString().
+     *
+     * @param line
+     * @return The result.
+     * @throws IllegalArgumentException If the line is malformed.
+     */
+    public static ShardResult parse(String line) {
+        String[] tokens = line.trim().split(" ");
+        try {
+            int threshold = Integer.parseInt(tokens[0]);
+            boolean partial = tokens[1].equals("1");
+            int[] counts = new int[threshold + 1];
+            for (int d = 0; d <= threshold; d++) {
+                counts[d] = Integer.parseInt(tokens[2 + d]);
+            }
+            int first = 3 + threshold;
+            if ((tokens.length - first) % 4 != 0) {
+                throw new IllegalArgumentException("Incomplete candidate: " + line);
+            }
+            int size = (tokens.length - first) / 4;
+            int[] wordIDs = new int[size];
+            String[] words = new String[size];
+            int[] distances = new int[size];
+            double[] weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                wordIDs[i] = Integer.parseInt(tokens[first + 4 * i]);
+                words[i] = tokens[first + 4 * i + 1];
+                distances[i] = Integer.parseInt(tokens[first + 4 * i + 2]);
+                weights[i] = Double.parseDouble(tokens[first + 4 * i + 3]);
+            }
+            return new ShardResult(threshold, counts, partial, wordIDs, words, distances, weights);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a shard result: " + line, e);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Not a shard result: " + line, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ShardResult)) {
+            return false;
+        }
+        ShardResult other = (ShardResult) obj;
+        return threshold == other.threshold && partial == other.partial && Arrays.equals(counts, other.counts)
+                && Arrays.equals(wordIDs, other.wordIDs) && Arrays.equals(words, other.words)
+                && Arrays.equals(distances, other.distances) && Arrays.equals(weights, other.weights);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(wordIDs) + Arrays.hashCode(weights);
+    }
+}
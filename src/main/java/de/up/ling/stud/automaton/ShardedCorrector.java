@@ -0,0 +1,268 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Corrects words with a model, that has been split into shards (see
+ * StringTrie.extractShard(ShardPartition, int)). Every shard searches only
+ * its part of the lexicon, so the shards can be searched in parallel and a
+ * model can be larger than the memory of a single process.
+ *
+ * A word is corrected in two steps: First, the IDs of the word and of its
+ * context are looked up in the shards, that hold them. Then all shards search
+ * their candidates at once and the results are merged. Each shard returns the
+ * number of its candidates for every edit distance, so the threshold of the
+ * whole model can be found and the result is the same as that of a single
+ * Corrector for the whole model (without cache of results and accept rule).
+ *
+ * The corrector can be used by many threads at once.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public class ShardedCorrector {
+
+    private final List<CorrectorShard> shards;
+    private final ShardPartition partition;
+    private final ExecutorService pool;
+    private final int nGram;
+    private static final Comparator<Candidate> byWeight = new Comparator<Candidate>() {
+        public int compare(Candidate c1, Candidate c2) {
+            int cmp = Double.compare(c1.weight, c2.weight);
+            return cmp != 0 ? cmp : Integer.compare(c1.wordID, c2.wordID);
+        }
+    };
+
+    // A candidate of any shard.
+    private static final class Candidate {
+
+        private final int wordID;
+        private final String word;
+        private final double weight;
+
+        Candidate(int wordID, String word, double weight) {
+            this.wordID = wordID;
+            this.word = word;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Creates a corrector for the shards of a model.
+     *
+     * @param shards One shard for every part of the partition, in the order of
+     * the parts.
+     * @param partition The partition, that the shards have been cut with.
+     * @param pool Threads that query the shards. The pool is not shut down by
+     * this class.
+     * @throws IOException If the n-gram size can not be read from the first
+     * shard.
+     */
+    public ShardedCorrector(List<? extends CorrectorShard> shards, ShardPartition partition, ExecutorService pool) throws IOException {
+        if (shards.size() != partition.getShards()) {
+            throw new IllegalArgumentException("Expected " + partition.getShards() + " shards, but got " + shards.size());
+        }
+        this.shards = new ArrayList<CorrectorShard>(shards);
+        this.partition = partition;
+        this.pool = pool;
+        this.nGram = this.shards.get(0).getNGram();
+    }
+
+    /**
+     * Splits a trie into shards, that are kept in this process. The trie will
+     * be frozen. Afterwards the trie can be dropped, the shards keep what
+     * they need.
+     *
+     * @param data
+     * @param partition
+     * @param pool Threads that query the shards.
+     * @return Corrector for the shards.
+     */
+    public static ShardedCorrector split(StringTrie data, ShardPartition partition, ExecutorService pool) {
+        data.freeze();
+        List<CorrectorShard> shards = new ArrayList<CorrectorShard>();
+        for (int shard = 0; shard < partition.getShards(); shard++) {
+            shards.add(new LocalShard(data.extractShard(partition, shard)));
+        }
+        try {
+            return new ShardedCorrector(shards, partition, pool);
+        } catch (IOException e) {
+            throw new AssertionError(e); // local shards do not throw
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return Number of shards.
+     */
+    public int getShards() {
+        return shards.size();
+    }
+
+    /**
+     * Corrects the last word in a given context.
+     *
+     * @param context [PrevWord1, PrevWord2, MisspelledWord]
+     * @param maxResults Maximal number of candidates.
+     * @return The best candidates with their weight, the best one first.
+     * @throws IOException If a shard can not be reached.
+     */
+    public List<Pair<String, Double>> correctWordInContext(String[] context, int maxResults) throws IOException {
+        // Use the last n words as window, like the Corrector.
+        final String[] window = new String[Math.min(nGram, context.length)];
+        System.arraycopy(context, context.length - window.length, window, 0, window.length);
+        int[] wordIDs = lookUpWordIDs(window);
+
+        final String word = window[window.length - 1];
+        final boolean known = wordIDs[window.length - 1] != StringTrie.UNKNOWN_WORD_ID;
+        final int[] previousIDs = new int[window.length - 1];
+        for (int i = 0; i < previousIDs.length; i++) {
+            previousIDs[i] = wordIDs[window.length - 2 - i];
+        }
+        final int localMaxResults = maxResults;
+        List<Callable<ShardResult>> searches = new ArrayList<Callable<ShardResult>>();
+        for (final CorrectorShard shard : shards) {
+            searches.add(new Callable<ShardResult>() {
+                public ShardResult call() throws IOException {
+                    return shard.search(word, known, previousIDs, localMaxResults);
+                }
+            });
+        }
+        return merge(invokeAll(searches), maxResults);
+    }
+
+    /**
+     * Delivers possible candidates for a word without context.
+     *
+     * @param misspelledWord
+     * @param maxResults
+     * @return The best candidates with their weight, the best one first.
+     * @throws IOException If a shard can not be reached.
+     */
+    public List<Pair<String, Double>> correctWord(String misspelledWord, int maxResults) throws IOException {
+        return correctWordInContext(new String[]{misspelledWord}, maxResults);
+    }
+
+    // Asks the shard of every word for its ID. Each shard is asked only once.
+    private int[] lookUpWordIDs(final String[] words) throws IOException {
+        final List<List<Integer>> positions = new ArrayList<List<Integer>>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            positions.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < words.length; i++) {
+            positions.get(partition.getShard(words[i])).add(i);
+        }
+        List<Callable<int[]>> lookups = new ArrayList<Callable<int[]>>();
+        final List<Integer> askedShards = new ArrayList<Integer>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            final List<Integer> shardPositions = positions.get(shard);
+            if (shardPositions.isEmpty()) {
+                continue;
+            }
+            final CorrectorShard correctorShard = shards.get(shard);
+            askedShards.add(shard);
+            lookups.add(new Callable<int[]>() {
+                public int[] call() throws IOException {
+                    String[] shardWords = new String[shardPositions.size()];
+                    for (int k = 0; k < shardWords.length; k++) {
+                        shardWords[k] = words[shardPositions.get(k)];
+                    }
+                    return correctorShard.getWordIDs(shardWords);
+                }
+            });
+        }
+        List<int[]> found = invokeAll(lookups);
+        int[] ret = new int[words.length];
+        for (int k = 0; k < found.size(); k++) {
+            List<Integer> shardPositions = positions.get(askedShards.get(k));
+            for (int j = 0; j < shardPositions.size(); j++) {
+                ret[shardPositions.get(j)] = found.get(k)[j];
+            }
+        }
+        return ret;
+    }
+
+    // Finds the threshold of the whole model and takes the best candidates within it.
+    private static List<Pair<String, Double>> merge(List<ShardResult> results, int maxResults) {
+        // Every shard has all its candidates up to its own threshold, so the counts
+        // are complete up to the smallest one.
+        int complete = Integer.MAX_VALUE;
+        for (ShardResult result : results) {
+            complete = Math.min(complete, result.getThreshold());
+        }
+        int threshold = 0;
+        int candidates = 0;
+        while (true) {
+            for (ShardResult result : results) {
+                candidates += result.getCount(threshold);
+            }
+            if (candidates >= Corrector.MIN_CANDIDATES || threshold >= complete) {
+                break;
+            }
+            ++threshold;
+        }
+
+        List<Candidate> merged = new ArrayList<Candidate>();
+        for (ShardResult result : results) {
+            for (int i = 0; i < result.size(); i++) {
+                if (result.getDistance(i) <= threshold) {
+                    merged.add(new Candidate(result.getWordID(i), result.getWord(i), result.getWeight(i)));
+                }
+            }
+        }
+        Collections.sort(merged, byWeight);
+        List<Pair<String, Double>> ret = new ArrayList<Pair<String, Double>>();
+        for (int i = 0; i < maxResults && i < merged.size(); i++) {
+            ret.add(new Pair<String, Double>(merged.get(i).word, merged.get(i).weight));
+        }
+        return ret;
+    }
+
+    // Runs the tasks on the pool and waits for all of them. A single task runs on the calling thread.
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> ret = new ArrayList<T>(tasks.size());
+        try {
+            if (tasks.size() == 1) {
+                ret.add(tasks.get(0).call());
+                return ret;
+            }
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                ret.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the shards.", e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return ret;
+    }
+
+    /**
+     * Closes all shards, e.g. the connections of remote shards. The pool is
+     * not shut down.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        for (CorrectorShard shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -4,10 +4,11 @@
  */
 package de.up.ling.stud.automaton;
 
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -34,10 +35,24 @@ public class StringTrie {
 
     private LexiconTrie lexiconTrie;
     private BackOffModelTrie contextTrie;
-    private final Int2ObjectMap<int[]> idToWordMap;
+    private final WordArena words;
+    private Alphabet alphabet;
     private int context;
     private final static int delimiter = 0;
+    /**
+     * The ID of the delimiter between sentences (the empty word).
+     */
+    public final static int DELIMITER_ID = delimiter;
+    /**
+     * The ID for all words, that are not in the lexicon. It is never used for
+     * a real word, so the language model backs off for it.
+     */
+    public final static int UNKNOWN_WORD_ID = -1;
     private boolean verbose = false;
+    private boolean processed = false;
+    private boolean restored = false; // true, if a file has been read completely
+    private boolean shard = false; // true, if this trie holds only a part of the words of a model (see extractShard)
+    private StringTrieView view = null; // not null, when frozen
     // Define a pattern for the tokenizer, that matches all characters, that are not letters.
     // This includes german umlauts as well. Taken from: http://stackoverflow.com/a/1612015
     private static final Pattern tokenizerPattern = Pattern.compile("[^\\p{L}]");
@@ -50,7 +65,7 @@ public class StringTrie {
      * the trie and call the 'postProcessing()'-method afterwards.
      */
     public StringTrie() {
-        idToWordMap = new Int2ObjectOpenHashMap<int[]>();
+        words = new WordArena();
         init(3);
     }
 
@@ -61,7 +76,7 @@ public class StringTrie {
      * @param context
      */
     public StringTrie(int context) {
-        idToWordMap = new Int2ObjectOpenHashMap<int[]>();
+        words = new WordArena();
         init(context);
     }
 
@@ -74,10 +89,12 @@ public class StringTrie {
      */
     public StringTrie(String filename, String encoding) {
         // Initializing
-        idToWordMap = new Int2ObjectOpenHashMap<int[]>();
+        words = new WordArena();
         int[] delimiterWord = new int[1];
         delimiterWord[0] = 0;
-        idToWordMap.put(0, delimiterWord);
+        words.put(0, delimiterWord);
+        Events.Load event = new Events.Load();
+        event.begin();
 
         try {
             // Open file and decode the gzip compressed data on the fly.
@@ -89,7 +106,7 @@ public class StringTrie {
                 if (verbose) {
                     System.err.println("Restoring a trie from the file " + filename);
                 }
-                restoreConfig(buffer);
+                int total = restoreConfig(buffer);
                 if (verbose) {
                     System.err.println("Basic configuration restored!");
                 }
@@ -97,7 +114,11 @@ public class StringTrie {
                 if (verbose) {
                     System.err.println("Lexicon restored!");
                 }
-                restoreLanguageModel(buffer);
+                event.nGrams = restoreLanguageModel(buffer);
+                if (shard) {
+                    contextTrie.setCount(total);
+                }
+                restored = true;
                 if (verbose) {
                     System.err.println("Language model restored. \n"
                             + "Done restoring from file.");
@@ -108,6 +129,12 @@ public class StringTrie {
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.bytes = new File(filename).length();
+            event.words = words.size() - 1; // without the delimiter
+            event.commit();
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -120,6 +147,12 @@ public class StringTrie {
      * @throws IOException
      */
     public void putFile(String filename, String encoding) throws IOException {
+        checkNotFrozen();
+        Events.PutFile event = new Events.PutFile();
+        event.begin();
+        int firstNode = lexiconTrie.peekNextID();
+        int firstWords = words.size();
+        long tokens = 0;
         InputStream textInputStream = new FileInputStream(new File(filename));
         Reader textInReader = new InputStreamReader(textInputStream, encoding);
         BufferedReader buffer = new BufferedReader(textInReader);
@@ -158,6 +191,7 @@ public class StringTrie {
                     idWindow[0] = currentID;
 
                     putContext(idWindow); // Store the ids for the words in the language model
+                    ++tokens;
                 }
             }
 
@@ -173,6 +207,16 @@ public class StringTrie {
         if (verbose) {
             System.err.println("\nFile read successfully.");
         }
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.bytes = new File(filename).length();
+            event.lines = (long) currentLineNumber;
+            event.tokens = tokens;
+            event.nGrams = tokens; // one n-gram for every token
+            event.nodesCreated = lexiconTrie.peekNextID() - firstNode;
+            event.words = words.size() - firstWords;
+            event.commit();
+        }
     }
 
     /**
@@ -182,9 +226,10 @@ public class StringTrie {
      * @return The ID for the entered word.
      */
     public int put(String key) {
-        int[] decodedWord = stringToIntArray(key);
+        checkNotFrozen();
+        int[] decodedWord = alphabet.addWord(key);
         int id = lexiconTrie.put(decodedWord);
-        idToWordMap.put(id, decodedWord);
+        words.put(id, decodedWord);
         return id;
     }
 
@@ -198,7 +243,7 @@ public class StringTrie {
      * @return True if needle is in the lexicon
      */
     public boolean contains(String needle) {
-        return lexiconTrie.contains(stringToIntArray(needle));
+        return lexiconTrie.contains(alphabet.encode(needle));
     }
 
     /**
@@ -237,8 +282,53 @@ public class StringTrie {
      * this method, it can not be changed anymore!
      */
     public void postProcessing() {
-//        contextTrie.calculateMLE();
-        contextTrie.calculateMLElog();
+        if (!processed) {
+            Events.PostProcessing event = new Events.PostProcessing();
+            event.begin();
+//            contextTrie.calculateMLE();
+            contextTrie.calculateMLElog();
+            processed = true;
+            if (event.shouldCommit()) {
+                event.nGram = context;
+                event.words = words.size() - 1; // without the delimiter
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Calls postProcessing() if needed and returns a read-only view on this
+     * trie, that can be used by many threads at once. Afterwards no more words
+     * can be put into the trie.
+     *
+     * @return View for queries.
+     */
+    public synchronized StringTrieView freeze() {
+        if (view == null) {
+            postProcessing();
+            lexiconTrie.computeBounds();
+            view = new StringTrieView(lexiconTrie, contextTrie, words, alphabet, context);
+        }
+        return view;
+    }
+
+    /**
+     * Returns true, if this trie has been restored from a file without an
+     * error.
+     *
+     * @return False, if the file could not be read.
+     */
+    boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Returns true, if freeze() has been called.
+     *
+     * @return True, if the trie is frozen.
+     */
+    public boolean isFrozen() {
+        return view != null;
     }
 
     /**
@@ -249,6 +339,58 @@ public class StringTrie {
     public int getNGram() {
         return context;
     }
+
+    /**
+     * Counts the nodes of the lexicon and of the language model and estimates
+     * their memory. This walks through both tries, so it must not be called
+     * while words are put into the trie.
+     *
+     * @return Report on the size of the model.
+     */
+    public ModelReport report() {
+        ModelReport.TrieStats lexiconStats = ModelReport.newLexiconStats();
+        lexiconTrie.collectStats(lexiconStats, 0);
+        ModelReport.TrieStats modelStats = ModelReport.newModelStats();
+        contextTrie.collectStats(modelStats, 0);
+        long wordBytes = words.getSymbolBytes() + words.getIndexBytes();
+        // Arrays of the exact size and an array from wordIDs to words instead of the hash map.
+        long compactWordBytes = 2L * words.getSymbolCount() + 4L * (words.size() + 1) + 4L * lexiconTrie.peekNextID();
+        return new ModelReport(context, alphabet.size(), words.size() - 1, // without the delimiter
+                lexiconStats, modelStats, wordBytes, compactWordBytes);
+    }
+    /**
+     * Returns a new trie with the words of a single shard. It keeps the
+     * n-grams that end with these words and the count of the whole model, so
+     * a word gets the same probability in its shard as in this trie. The IDs
+     * of the words do not change. Words that are not in the language model
+     * are left out, because they are never candidates. The new trie shares the
+     * n-grams with this one, it must not be changed.
+     *
+     * @param partition
+     * @param shard Number of the shard.
+     * @return Trie for the shard, that can be saved or frozen.
+     */
+    public StringTrie extractShard(ShardPartition partition, int shard) {
+        StringTrie ret = new StringTrie(context);
+        ret.alphabet = Alphabet.parse(alphabet.toString());
+        int nextID = lexiconTrie.peekNextID();
+        ret.lexiconTrie = new LexiconTrie(nextID, new IDCounter(nextID));
+        IntSet wordIDs = new IntOpenHashSet();
+        IntIterator wordIt = contextTrie.getWords().iterator();
+        while (wordIt.hasNext()) {
+            int wordID = wordIt.nextInt();
+            int[] word = words.get(wordID);
+            if (word != null && wordID != delimiter && partition.getShard(alphabet.decode(word)) == shard) {
+                ret.lexiconTrie.putWithID(word, wordID);
+                ret.words.put(wordID, word);
+                wordIDs.add(wordID);
+            }
+        }
+        ret.contextTrie = contextTrie.restrictTo(wordIDs);
+        ret.shard = true;
+        return ret;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     ///// Helper functions
     ////////////////////////////////////////////////////////////////////////////
@@ -257,14 +399,31 @@ public class StringTrie {
         this.context = context;
         lexiconTrie = new LexiconTrie(0, new IDCounter(1));
         contextTrie = new BackOffModelTrie(context, context);
+        alphabet = new Alphabet();
         int[] delimiterWord = new int[1];
         delimiterWord[0] = 0;
-        idToWordMap.put(0, delimiterWord);
+        words.put(0, delimiterWord);
     }
 
-    // Returns the ID for a given word
+    /**
+     * Returns the ID for a given word. This does not change the lexicon.
+     *
+     * @param word
+     * @return The wordID or UNKNOWN_WORD_ID, if the word is not in the
+     * lexicon.
+     */
     public int getWordID(int[] word) {
-        return lexiconTrie.put(word);
+        if (word.length == 0) {
+            return delimiter;
+        }
+        LexiconTrie subTrie = lexiconTrie.find(word);
+        return (subTrie != null && subTrie.isFinal()) ? subTrie.getID() : UNKNOWN_WORD_ID;
+    }
+
+    private void checkNotFrozen() {
+        if (view != null) {
+            throw new IllegalStateException("The trie is frozen and can not be changed anymore.");
+        }
     }
 
     /**
@@ -274,7 +433,49 @@ public class StringTrie {
      * @return Word for the ID.
      */
     public int[] getWordByID(int id) {
-        return idToWordMap.get(id);
+        return words.get(id);
+    }
+
+    /**
+     * Returns the word for a given ID as a String.
+     *
+     * @param id
+     * @return Word for the ID or null, if the ID is unknown.
+     */
+    public String getWordAsString(int id) {
+        StringBuilder buf = new StringBuilder();
+        return words.appendTo(buf, id, alphabet) ? buf.toString() : null;
+    }
+
+    /**
+     * Returns the ID for a given word. This does not change the lexicon.
+     *
+     * @param word
+     * @return The wordID or UNKNOWN_WORD_ID, if the word is not in the
+     * lexicon.
+     */
+    public int getWordID(String word) {
+        return getWordID(alphabet.encode(word));
+    }
+
+    /**
+     * Converts a word to the symbol codes of this trie. Characters, that are
+     * not in the lexicon, are encoded as Alphabet.UNKNOWN_SYMBOL.
+     *
+     * @param word
+     * @return Symbol codes of the word.
+     */
+    public int[] encode(String word) {
+        return alphabet.encode(word);
+    }
+
+    /**
+     * Returns the alphabet, that maps the characters to symbol codes.
+     *
+     * @return The alphabet of the lexicon.
+     */
+    public Alphabet getAlphabet() {
+        return alphabet;
     }
 
     // Transforms a list of word-IDs to a String, each word seperatd by 0
@@ -282,8 +483,7 @@ public class StringTrie {
         StringBuilder ret = new StringBuilder();
 
         for (int i = 0; i < ids.size(); i++) {
-            int[] currentWord = getWordByID(ids.get(i));
-            ret.append(intArrayToString(currentWord));
+            words.appendTo(ret, ids.get(i), alphabet);
             ret.append((i < ids.size() - 1) ? String.format("%d", delimiter) : "");
         }
         return ret.toString();
@@ -296,11 +496,14 @@ public class StringTrie {
 
     /**
      * Converts a String into an int array, that holds the numeric values of the
-     * chars.
+     * chars. These are not the symbol codes of a trie, use encode(String) to
+     * look up words.
      *
      * @param word
      * @return Int array for the given string.
+     * @deprecated The lexicon uses the codes of its Alphabet.
      */
+    @Deprecated
     public static int[] stringToIntArray(String word) {
         int[] ret = new int[word.length()];
 
@@ -315,7 +518,10 @@ public class StringTrie {
      *
      * @param word
      * @return String for the given int array.
+     * @deprecated The lexicon uses the codes of its Alphabet, see
+     * getWordAsString(int).
      */
+    @Deprecated
     public static String intArrayToString(int[] word) {
         StringBuilder buf = new StringBuilder();
 
@@ -325,11 +531,11 @@ public class StringTrie {
         return buf.toString();
     }
 
-    // Converts a list of ints to a String by casting them to char.
+    // Converts a reversed list of symbol codes to a String.
     private String intListToString(IntList word) {
         StringBuilder buf = new StringBuilder();
         for (int i = word.size() - 1; i >= 0; i--) {
-            buf.append((char) word.getInt(i));
+            alphabet.appendSymbol(buf, word.getInt(i));
         }
         return buf.toString();
     }
@@ -433,7 +639,7 @@ public class StringTrie {
         try {
             File file = new File(filename);
             BufferedWriter output = new BufferedWriter(new FileWriter(file));
-            output.write(lexiconTrie.draw());
+            output.write(lexiconTrie.draw(alphabet));
             output.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -447,6 +653,8 @@ public class StringTrie {
      * @throws IOException
      */
     public void saveToFile(String filename, String encoding) throws IOException {
+        Events.Save event = new Events.Save();
+        event.begin();
         try {
             GZIPOutputStream zip = new GZIPOutputStream(new FileOutputStream(new File(filename)));
             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(zip, encoding));
@@ -460,7 +668,7 @@ public class StringTrie {
                 System.out.println("Writing lexicon...");
             }
             bw.write(String.format("%d", lexiconTrie.getNextID()) + "\n");
-            lexiconTrie.saveWordsAndID(new int[0], bw);
+            lexiconTrie.saveWordsAndID(new int[0], bw, alphabet);
             bw.write("#\n");
             if (verbose) {
                 System.out.println("Writing language model...");
@@ -474,44 +682,66 @@ public class StringTrie {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.bytes = new File(filename).length();
+            event.words = words.size() - 1; // without the delimiter
+            event.commit();
+        }
     }
 
     private void saveConfig(BufferedWriter bw) throws IOException {
         bw.write("ngram : " + context + "\n");
+        bw.write("alphabet : " + alphabet + "\n");
+        if (shard) {
+            // The count of the whole model can not be restored from the n-grams of a shard.
+            bw.write("total : " + contextTrie.getCount() + "\n");
+        }
         bw.write("#\n");
         bw.flush();
     }
 
-    private void restoreConfig(BufferedReader br) throws IOException {
-        String line = br.readLine();
-        context = Integer.parseInt(line.substring("ngram : ".length()));
+    // Returns the count of the whole model for a shard.
+    private int restoreConfig(BufferedReader br) throws IOException {
+        // Files of older versions have no alphabet. It is then built from the lexicon.
+        alphabet = new Alphabet();
+        int total = 0;
+        for (String line = br.readLine(); !line.equals("#"); line = br.readLine()) {
+            if (line.startsWith("ngram : ")) {
+                context = Integer.parseInt(line.substring("ngram : ".length()));
+            } else if (line.startsWith("alphabet : ")) {
+                alphabet = Alphabet.parse(line.substring("alphabet : ".length()));
+            } else if (line.startsWith("total : ")) {
+                shard = true;
+                total = Integer.parseInt(line.substring("total : ".length()));
+            }
+        }
+        return total;
     }
 
     private void restoreLexicon(BufferedReader buffer) throws IOException {
-        buffer.readLine(); // get rid of the # character
         int oldMaxID = Integer.parseInt(buffer.readLine());
         lexiconTrie = new LexiconTrie(oldMaxID, new IDCounter(oldMaxID));
         for (String currentLine = buffer.readLine(); !currentLine.equals("#"); currentLine = buffer.readLine()) {
-            // Line = 123,123,45,56 : 12
+            // Line = h,o,u,s,e:12
             String[] parts = currentLine.split(":"); // seperate the word from the id
-            String[] word = parts[0].split(","); // seperate the characters
             int id = Integer.parseInt(parts[1]); // parse the id to int
-            int[] decodedWord = new int[word.length];
-
-            for (int i = 0; i < word.length; i++) {
-                decodedWord[i] = word[i].charAt(0); // transform the chars to ints
-            }
+            // Join the characters, so that surrogate pairs that older versions saved
+            // as two characters become a single symbol.
+            int[] decodedWord = alphabet.addWord(parts[0].replace(",", ""));
 
             // save the word in the trie with the stored id.
             // note that the ids of the final states will be restored from file,
             // while other states maybe get a different id than before.
             lexiconTrie.putWithID(decodedWord, id);
-            idToWordMap.put(id, decodedWord);
+            words.put(id, decodedWord);
         }
     }
 
-    private void restoreLanguageModel(BufferedReader buffer) throws IOException {
+    // Returns the number of restored n-grams.
+    private int restoreLanguageModel(BufferedReader buffer) throws IOException {
         contextTrie = new BackOffModelTrie(context, context);
+        int ret = 0;
         for (String currentLine = buffer.readLine(); currentLine != null; currentLine = buffer.readLine()) {
             // line: 0,2,3:9999  (wordIDs:count)
             String[] parts = currentLine.split(":"); // seperate the words from the counts
@@ -523,8 +753,9 @@ public class StringTrie {
             }
 
             contextTrie.putWithCount(wordIDs, context, counts);
-
+            ++ret;
         }
+        return ret;
     }
 
     /**
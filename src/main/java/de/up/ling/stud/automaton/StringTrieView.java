@@ -0,0 +1,177 @@
+package de.up.ling.stud.automaton;
+
+/**
+ * Read-only view on a frozen StringTrie that is used to answer queries. No
+ * method of this class changes the lexicon or the language model, so any
+ * number of threads can use the same view at once without locking. Words that
+ * are not in the lexicon are mapped to StringTrie.UNKNOWN_WORD_ID. Use
+ * StringTrie.freeze() to get a view.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+public final class StringTrieView {
+
+    private final LexiconTrie lexiconTrie;
+    private final BackOffModelTrie contextTrie;
+    private final WordArena words;
+    private final Alphabet alphabet;
+    private final int context;
+
+    StringTrieView(LexiconTrie lexiconTrie, BackOffModelTrie contextTrie, WordArena words, Alphabet alphabet, int context) {
+        this.lexiconTrie = lexiconTrie;
+        this.contextTrie = contextTrie;
+        this.words = words;
+        this.alphabet = alphabet;
+        this.context = context;
+    }
+
+    /**
+     * Returns the ID of a word. The empty word stands for the delimiter
+     * between sentences.
+     *
+     * @param word
+     * @return The wordID or StringTrie.UNKNOWN_WORD_ID, if the word is not in
+     * the lexicon.
+     */
+    public int getWordID(int[] word) {
+        return getWordID(word, word.length);
+    }
+
+    /**
+     * Returns the ID of the word in the first cells of an array, so that a
+     * buffer can be used for many words.
+     *
+     * @param word
+     * @param length Length of the word.
+     * @return The wordID or StringTrie.UNKNOWN_WORD_ID, if the word is not in
+     * the lexicon.
+     */
+    public int getWordID(int[] word, int length) {
+        if (length == 0) {
+            return StringTrie.DELIMITER_ID;
+        }
+        LexiconTrie subTrie = lexiconTrie.find(word, length);
+        return (subTrie != null && subTrie.isFinal()) ? subTrie.getID() : StringTrie.UNKNOWN_WORD_ID;
+    }
+
+    /**
+     * Returns the ID of a word.
+     *
+     * @param word
+     * @return The wordID or StringTrie.UNKNOWN_WORD_ID, if the word is not in
+     * the lexicon.
+     */
+    public int getWordID(String word) {
+        return getWordID(alphabet.encode(word));
+    }
+
+    /**
+     * Check, if a given word as int-array is in the lexicon
+     *
+     * @param needle
+     * @return True if needle is in the lexicon
+     */
+    public boolean contains(int[] needle) {
+        return lexiconTrie.contains(needle);
+    }
+
+    /**
+     * Check, if a given String is in the lexicon
+     *
+     * @param needle
+     * @return True if needle is in the lexicon
+     */
+    public boolean contains(String needle) {
+        return lexiconTrie.contains(alphabet.encode(needle));
+    }
+
+    /**
+     * Return the Backoff-Probability for a given key. Each cell of the array
+     * must store the ID of a word, unknown words back off.
+     *
+     * @param key
+     * @return Probability
+     */
+    public double getBackOffProbability(int[] key) {
+        return contextTrie.getProbability(key);
+    }
+
+    /**
+     * Check, if a word has been seen by the language model. Words that are
+     * not in it get an infinite probability in every context.
+     *
+     * @param wordID
+     * @return True, if the language model knows the word.
+     */
+    public boolean isInLanguageModel(int wordID) {
+        return contextTrie.containsWord(wordID);
+    }
+
+    /**
+     * Returns how often a word has been seen while learning.
+     *
+     * @param wordID
+     * @return Frequency of the word.
+     */
+    public int getFrequency(int wordID) {
+        return contextTrie.getWordCount(wordID);
+    }
+
+    /**
+     * Returns the word for a given ID.
+     *
+     * @param id
+     * @return Word for the ID.
+     */
+    public int[] getWordByID(int id) {
+        return words.get(id);
+    }
+
+    /**
+     * Returns the word for a given ID as a String.
+     *
+     * @param id
+     * @return Word for the ID or null, if the ID is unknown.
+     */
+    public String getWordAsString(int id) {
+        StringBuilder buf = new StringBuilder();
+        return words.appendTo(buf, id, alphabet) ? buf.toString() : null;
+    }
+
+    /**
+     * Converts a word to the symbol codes of the lexicon.
+     *
+     * @param word
+     * @return Symbol codes of the word.
+     */
+    public int[] encode(String word) {
+        return alphabet.encode(word);
+    }
+
+    /**
+     * Returns the alphabet, that maps the characters to symbol codes.
+     *
+     * @return The alphabet of the lexicon.
+     */
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Returns the lexicon. It must not be changed.
+     *
+     * @return lexicon trie
+     */
+    public LexiconTrie getLexicon() {
+        return lexiconTrie;
+    }
+
+    /**
+     * Returns the number of nGrams
+     *
+     * @return Number of used ngrams.
+     */
+    public int getNGram() {
+        return context;
+    }
+}
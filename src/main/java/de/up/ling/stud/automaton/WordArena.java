@@ -0,0 +1,140 @@
+package de.up.ling.stud.automaton;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import java.util.Arrays;
+
+/**
+ * Stores the symbol codes of all words in a single char array instead of one
+ * int array per word. A word is found by its wordID. Words are only added
+ * while the lexicon is learned, afterwards many threads can read at once.
+ *
+ * @author Johannes Gontrum <gontrum@uni-potsdam.de>
+ */
+final class WordArena {
+
+    private char[] symbols;
+    private int length;
+    // start of the i-th word in 'symbols', the end is the start of the next one
+    private int[] starts;
+    private int size;
+    // wordID -> index of the word
+    private final Int2IntOpenHashMap indices;
+
+    WordArena() {
+        this.symbols = new char[1024];
+        this.length = 0;
+        this.starts = new int[257];
+        this.size = 0;
+        this.indices = new Int2IntOpenHashMap();
+        this.indices.defaultReturnValue(-1);
+    }
+
+    /**
+     * Stores a word for an ID. A word that has been stored for the ID before
+     * is kept.
+     *
+     * @param wordID
+     * @param word Symbol codes, each smaller than Alphabet.MAX_SIZE.
+     */
+    void put(int wordID, int[] word) {
+        if (indices.containsKey(wordID)) {
+            return;
+        }
+        if (length + word.length > symbols.length) {
+            symbols = Arrays.copyOf(symbols, Math.max(length + word.length, 2 * symbols.length));
+        }
+        if (size + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, 2 * starts.length);
+        }
+        for (int symbol : word) {
+            symbols[length++] = (char) symbol;
+        }
+        indices.put(wordID, size);
+        ++size;
+        starts[size] = length;
+    }
+
+    /**
+     * Returns true, if a word is stored for the ID.
+     *
+     * @param wordID
+     * @return True, if the ID is known.
+     */
+    boolean contains(int wordID) {
+        return indices.containsKey(wordID);
+    }
+
+    /**
+     * Returns a copy of the word for an ID.
+     *
+     * @param wordID
+     * @return Symbol codes or null, if the ID is unknown.
+     */
+    int[] get(int wordID) {
+        int index = indices.get(wordID);
+        if (index < 0) {
+            return null;
+        }
+        int[] ret = new int[starts[index + 1] - starts[index]];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = symbols[starts[index] + i];
+        }
+        return ret;
+    }
+
+    /**
+     * Appends the word for an ID to a buffer.
+     *
+     * @param buf
+     * @param wordID
+     * @param alphabet
+     * @return False, if the ID is unknown.
+     */
+    boolean appendTo(StringBuilder buf, int wordID, Alphabet alphabet) {
+        int index = indices.get(wordID);
+        if (index < 0) {
+            return false;
+        }
+        for (int i = starts[index]; i < starts[index + 1]; i++) {
+            alphabet.appendSymbol(buf, symbols[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of stored words.
+     *
+     * @return Number of words.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of symbols of all stored words.
+     *
+     * @return Number of symbols.
+     */
+    int getSymbolCount() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes used by the arrays of the arena (without
+     * the index).
+     *
+     * @return Approximate memory usage.
+     */
+    long getSymbolBytes() {
+        return 2L * symbols.length + 4L * starts.length;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the index of the wordIDs.
+     *
+     * @return Approximate memory usage.
+     */
+    long getIndexBytes() {
+        return ModelReport.estimateMapBytes(size, 4);
+    }
+}
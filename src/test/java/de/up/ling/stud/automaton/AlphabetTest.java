@@ -0,0 +1,47 @@
+package de.up.ling.stud.automaton;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Checks the mapping of characters to dense codes and that it survives
+ * saving and loading a trie.
+ */
+public class AlphabetTest extends TestCase {
+
+    // "a", MATHEMATICAL BOLD CAPITAL A (outside the basic plane), "b"
+    private static final String supplementary = "a\uD835\uDC00b";
+
+    public void testDenseCodes() {
+        Alphabet alphabet = new Alphabet();
+        assertTrue(Arrays.equals(new int[]{1, 2, 3}, alphabet.addWord(supplementary)));
+        assertTrue(Arrays.equals(new int[]{3, 1}, alphabet.addWord("ba")));
+        assertEquals(4, alphabet.size());
+        assertEquals(supplementary, alphabet.decode(alphabet.encode(supplementary)));
+
+        int[] unknown = alphabet.encode("ax");
+        assertEquals(Alphabet.UNKNOWN_SYMBOL, unknown[1]);
+        assertEquals(4, alphabet.size());
+
+        Alphabet restored = Alphabet.parse(alphabet.toString());
+        assertEquals(alphabet.size(), restored.size());
+        assertTrue(Arrays.equals(alphabet.encode(supplementary), restored.encode(supplementary)));
+    }
+
+    public void testSaveAndLoad() throws IOException {
+        StringTrie data = new StringTrie(2);
+        int id = data.put(supplementary);
+        data.put("house");
+        File file = File.createTempFile("model", ".spell");
+        file.deleteOnExit();
+        data.saveToFile(file.getPath(), "UTF-8");
+
+        StringTrie restored = new StringTrie(file.getPath(), "UTF-8");
+        assertEquals(id, restored.getWordID(supplementary));
+        assertEquals(supplementary, restored.getWordAsString(id));
+        assertEquals(3, restored.getWordByID(id).length);
+        assertTrue(restored.contains("house"));
+    }
+}
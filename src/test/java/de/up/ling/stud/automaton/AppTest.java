@@ -1,5 +1,19 @@
 package de.up.ling.stud.automaton;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Random;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -35,4 +49,141 @@ public class AppTest
     {
         assertTrue( true );
     }
+
+    /**
+     * The chunks of --threads get the last words of the chunk before as
+     * context, so the output (with the scores) must be the same as that of a
+     * single thread.
+     */
+    public void testParallelSameAsSerial() throws IOException
+    {
+        String[] words = { "the", "house", "hause", "is", "smal", "small", "and", "garden", "gardn", "green", "mouse", "in", "qwertz" };
+        Random random = new Random( 3 );
+        // More lines than fit in a few chunks, also empty ones and lines without letters.
+        String[] lines = new String[ 1000 ];
+        for ( int line = 0; line < lines.length; line++ )
+        {
+            StringBuilder text = new StringBuilder();
+            for ( int i = random.nextInt( 5 ); i > 0; i-- )
+            {
+                text.append( words[ random.nextInt( words.length ) ] ).append( random.nextInt( 4 ) == 0 ? ", " : " " );
+            }
+            lines[ line ] = ( line % 50 == 0 ) ? "..." : text.toString();
+        }
+        File corpus = TestCorpus.write( 20, TestCorpus.HOUSE );
+        File text = TestCorpus.write( 1, lines );
+        File serial = File.createTempFile( "serial", ".txt" );
+        serial.deleteOnExit();
+        File parallel = File.createTempFile( "parallel", ".txt" );
+        parallel.deleteOnExit();
+
+        App.main( new String[] { "--corpus", corpus.getPath(), "--check", text.getPath(), "--result", serial.getPath(), "--details" } );
+        App.main( new String[] { "--corpus", corpus.getPath(), "--check", text.getPath(), "--result", parallel.getPath(), "--details", "--threads", "4" } );
+        String expected = read( serial );
+        assertTrue( expected.length() > 0 );
+        assertEquals( expected, read( parallel ) );
+    }
+
+    /**
+     * --line-sync writes exactly one line for every input line, also for
+     * empty lines and lines without letters.
+     */
+    public void testLineSync() throws IOException
+    {
+        String output = pipe( "the hause is smal\n\n...\nthe gardn\n", "--line-sync" );
+        assertEquals( "the house is small\n\n\nthe garden\n", output.replace( System.lineSeparator(), "\n" ) );
+
+        // Every line is flushed on its own.
+        CountingWriter out = new CountingWriter();
+        App.correctStream( new BufferedReader( new StringReader( "the hause\nis smal\n\n" ) ), out, true, -1 );
+        assertEquals( 3, out.flushes );
+    }
+
+    /**
+     * Without --line-sync, the output is written with one word per line and
+     * only flushed, when the input has no more data or the interval is over.
+     */
+    public void testPipeFlushes() throws IOException
+    {
+        String output = pipe( "the hause is smal\n\nthe gardn\n", "--pipe" );
+        assertEquals( "the \nhouse \nis \nsmall \nthe \ngarden \n", output );
+
+        StringBuilder text = new StringBuilder();
+        for ( int i = 0; i < 100; i++ )
+        {
+            text.append( "the mouse is in the hause\n" );
+        }
+        // Input, that is always ready, is not flushed before the interval is over.
+        CountingWriter out = new CountingWriter();
+        App.correctStream( new BufferedReader( new StringReader( text.toString() ) ), out, false, Long.MAX_VALUE );
+        assertEquals( 0, out.flushes );
+        // An interval of 0 flushes after every line, but never after a single token.
+        out = new CountingWriter();
+        App.correctStream( new BufferedReader( new StringReader( text.toString() ) ), out, false, 0 );
+        assertEquals( 100, out.flushes );
+        // Input, that would block, flushes the output before it is read. The reader
+        // buffers no further line, so it asks the input after every line.
+        out = new CountingWriter();
+        App.correctStream( new BufferedReader( new NeverReady( new StringReader( text.toString() ) ), 1 ), out, false, Long.MAX_VALUE );
+        assertEquals( 100, out.flushes );
+    }
+
+    // Runs the App on the house corpus with the text on stdin and returns stdout.
+    private static String pipe( String text, String mode ) throws IOException
+    {
+        File corpus = TestCorpus.write( 20, TestCorpus.HOUSE );
+        InputStream stdin = System.in;
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try
+        {
+            System.setIn( new ByteArrayInputStream( text.getBytes( "UTF-8" ) ) );
+            System.setOut( new PrintStream( output, true, "UTF-8" ) );
+            App.main( new String[] { "--corpus", corpus.getPath(), mode } );
+        }
+        finally
+        {
+            System.setIn( stdin );
+            System.setOut( stdout );
+        }
+        return output.toString( "UTF-8" );
+    }
+
+    // Counts how often the output is flushed.
+    private static class CountingWriter extends BufferedWriter
+    {
+        private int flushes = 0;
+
+        CountingWriter()
+        {
+            super( new StringWriter() );
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            ++flushes;
+            super.flush();
+        }
+    }
+
+    // Input, that never has data available without blocking.
+    private static class NeverReady extends FilterReader
+    {
+        NeverReady( Reader in )
+        {
+            super( in );
+        }
+
+        @Override
+        public boolean ready()
+        {
+            return false;
+        }
+    }
+
+    private static String read( File file ) throws IOException
+    {
+        return new String( Files.readAllBytes( file.toPath() ), "UTF-8" );
+    }
 }
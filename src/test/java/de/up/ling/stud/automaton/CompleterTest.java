@@ -0,0 +1,101 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ * Compares the completions with those found by looking at every word of the
+ * lexicon.
+ */
+public class CompleterTest extends TestCase {
+
+    private static final String[] prefixes = {"", "h", "ha", "hau", "ma", "ten", "rokis", "x"};
+    private StringTrieView data;
+    private Set<String> vocabulary;
+
+    @Override
+    protected void setUp() throws Exception {
+        List<String> words = TestCorpus.randomWords(11, TestCorpus.SYLLABLES, 1, 3, 200);
+        data = TestCorpus.random(11, 3, words, 300, 8).freeze();
+        // The words, that occur in the corpus.
+        vocabulary = new TreeSet<String>();
+        for (String word : words) {
+            if (data.getWordID(word) != StringTrie.UNKNOWN_WORD_ID) {
+                vocabulary.add(word);
+            }
+        }
+    }
+
+    public void testComplete() {
+        Completer stored = new Completer(data, 5, 1);
+        Completer collected = new Completer(data, 5, Integer.MAX_VALUE);
+        assertTrue(stored.getStoredLists() > 0);
+        assertEquals(0, collected.getStoredLists());
+        for (String prefix : prefixes) {
+            List<String> expected = expectedCompletions(prefix);
+            assertEquals(prefix, expected, words(stored.complete(prefix, 5)));
+            assertEquals(prefix, expected, words(collected.complete(prefix, 5)));
+        }
+    }
+
+    public void testCompleteInContext() {
+        Completer completer = new Completer(data, 10, 4);
+        List<Pair<String, Double>> completions = completer.completeInContext(new String[]{"", "ha", "ma"}, 10);
+        assertFalse(completions.isEmpty());
+        for (int i = 0; i < completions.size(); i++) {
+            assertTrue(completions.get(i).left.startsWith("ma"));
+            if (i > 0) {
+                assertTrue(completions.get(i - 1).right >= completions.get(i).right);
+            }
+        }
+        // The same words as without context, only in another order.
+        assertEquals(new TreeSet<String>(words(completer.complete("ma", 10))), new TreeSet<String>(words(completions)));
+    }
+
+    public void testCompleteWithErrors() {
+        Completer completer = new Completer(data, 5, 8);
+        for (String prefix : prefixes) {
+            assertEquals(prefix, words(completer.complete(prefix, 5)), words(completer.completeWithErrors(prefix, 0, 5)));
+        }
+        // A changed character, the correct prefix comes first.
+        List<String> completions = words(completer.completeWithErrors("gxr", 1, 100));
+        List<String> exact = expectedCompletions("gar");
+        assertFalse(exact.isEmpty());
+        assertEquals(exact, completions.subList(0, exact.size()));
+        // A missing character.
+        assertTrue(words(completer.completeWithErrors("tn", 1, 100)).containsAll(expectedCompletions("ten")));
+    }
+
+    // The most frequent words of the vocabulary, that start with the prefix.
+    private List<String> expectedCompletions(String prefix) {
+        List<String> ret = new ArrayList<String>();
+        for (String word : vocabulary) {
+            if (word.startsWith(prefix)) {
+                ret.add(word);
+            }
+        }
+        Collections.sort(ret, new Comparator<String>() {
+            public int compare(String word1, String word2) {
+                int id1 = data.getWordID(word1);
+                int id2 = data.getWordID(word2);
+                int cmp = Integer.compare(data.getFrequency(id2), data.getFrequency(id1));
+                return cmp != 0 ? cmp : Integer.compare(id1, id2);
+            }
+        });
+        return ret.subList(0, Math.min(5, ret.size()));
+    }
+
+    private static List<String> words(List<Pair<String, Double>> completions) {
+        List<String> ret = new ArrayList<String>();
+        for (Pair<String, Double> completion : completions) {
+            ret.add(completion.left);
+        }
+        return ret;
+    }
+}
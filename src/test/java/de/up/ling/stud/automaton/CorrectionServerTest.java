@@ -0,0 +1,212 @@
+package de.up.ling.stud.automaton;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Talks to a CorrectionServer over the loopback interface.
+ */
+public class CorrectionServerTest extends TestCase {
+
+    private CorrectionServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        StringTrie data = TestCorpus.house();
+        data.postProcessing();
+
+        server = new CorrectionServer(data, 0, 2);
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.shutdown(1000);
+    }
+
+    public void testHealth() throws IOException {
+        assertEquals("OK", request("HEALTH"));
+    }
+
+    public void testCorrect() throws IOException {
+        String[] answer = request("CORRECT 3 the hause").split(" ");
+        assertEquals("OK", answer[0]);
+        assertEquals("house", answer[1]);
+        Double.parseDouble(answer[2]);
+        assertTrue(answer.length <= 7);
+    }
+
+    public void testUnknownCommand() throws IOException {
+        assertTrue(request("FOO").startsWith("ERR"));
+        assertTrue(request("CORRECT x hause").startsWith("ERR"));
+    }
+
+    public void testConcurrentClients() throws Exception {
+        final List<String> answers = new ArrayList<String>();
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread client = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            String answer = request("CORRECT 1 the garden is gren");
+                            synchronized (answers) {
+                                answers.add(answer);
+                            }
+                        }
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        assertEquals(40, answers.size());
+        for (String answer : answers) {
+            assertTrue(answer, answer.startsWith("OK green "));
+        }
+    }
+
+    public void testIdleConnectionsDoNotBlockWorkers() throws IOException {
+        // More open connections than the server has workers.
+        List<Socket> idle = new ArrayList<Socket>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                socket.setSoTimeout(10000);
+                idle.add(socket);
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                out.write("CORRECT 1 the hause\n");
+                out.flush();
+                assertTrue(in.readLine().startsWith("OK house "));
+            }
+            assertEquals("OK", request("HEALTH"));
+            assertTrue(request("CORRECT 3 the hause").startsWith("OK house "));
+            assertTrue(request("GET /metrics HTTP/1.0\n").startsWith("HTTP/1.0 200"));
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+    }
+
+    public void testMaxConnections() throws IOException {
+        server.shutdown(1000);
+        server = new CorrectionServer(TestCorpus.house(), 0, 2);
+        server.setMaxConnections(1);
+        server.start();
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out.write("HEALTH\n");
+            out.flush();
+            assertEquals("OK", in.readLine());
+            assertEquals("ERR too many connections", request("HEALTH"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testMetrics() throws IOException {
+        request("CORRECT 3 the hause");
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out.write("METRICS\n");
+            out.flush();
+            List<String> lines = new ArrayList<String>();
+            for (String line = in.readLine(); line.length() > 0; line = in.readLine()) {
+                lines.add(line);
+            }
+            assertTrue(lines.contains("spellchecker_corrections_total 1"));
+            assertEquals("OK", request("HEALTH"));
+        } finally {
+            socket.close();
+        }
+        assertTrue(request("GET /metrics HTTP/1.0\n").startsWith("HTTP/1.0 200"));
+    }
+
+    public void testReload() throws IOException {
+        server.getModels().setCache(new CorrectionCache(100, 100));
+        assertTrue(request("CORRECT 1 the hause").startsWith("OK house "));
+
+        StringTrie data = TestCorpus.learn(3, 20, "the mause is in the garden");
+        File model = File.createTempFile("model", ".spell");
+        model.deleteOnExit();
+        data.saveToFile(model.getPath(), "UTF-8");
+
+        assertTrue(request("RELOAD " + model.getPath() + ".missing").startsWith("ERR"));
+        assertEquals(1, server.getModels().get().getGeneration());
+        assertEquals("OK generation 2", request("RELOAD " + model.getPath()));
+        // The new cache has been filled with the words of the old one.
+        assertEquals(1, server.getModels().get().getCache().getCandidateCache().size());
+        assertTrue(request("CORRECT 1 the hause").startsWith("OK mause "));
+    }
+
+    public void testCompleterIsBuiltBeforeRequests() throws IOException {
+        assertTrue(server.getModels().get().hasCompleter());
+        assertTrue(request("COMPLETE 2 ho").startsWith("OK house "));
+
+        File model = File.createTempFile("model", ".spell");
+        model.deleteOnExit();
+        TestCorpus.learn(3, 20, "the mause is in the garden").saveToFile(model.getPath(), "UTF-8");
+        assertEquals("OK generation 2", request("RELOAD " + model.getPath()));
+        assertTrue(server.getModels().get().hasCompleter());
+        assertTrue(request("COMPLETE 2 ma").startsWith("OK mause "));
+    }
+
+    public void testOldModelIsFreed() throws Exception {
+        assertTrue(request("CORRECT 1 the hause").startsWith("OK house "));
+        WeakReference<ModelHandle.Model> old = new WeakReference<ModelHandle.Model>(server.getModels().get());
+
+        File model = File.createTempFile("model", ".spell");
+        model.deleteOnExit();
+        TestCorpus.learn(3, 20, "the mause is in the garden").saveToFile(model.getPath(), "UTF-8");
+        assertEquals("OK generation 2", request("RELOAD " + model.getPath()));
+
+        // No worker thread keeps the model of its last request.
+        for (int i = 0; i < 50 && old.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(old.get());
+    }
+
+    public void testShutdown() throws Exception {
+        assertEquals("OK", request("SHUTDOWN"));
+        server.awaitTermination();
+        assertFalse(server.isRunning());
+    }
+
+    private String request(String line) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10000); // fail instead of waiting forever
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out.write(line + "\n");
+            out.flush();
+            return in.readLine();
+        } finally {
+            socket.close();
+        }
+    }
+}
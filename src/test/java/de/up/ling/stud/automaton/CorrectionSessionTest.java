@@ -0,0 +1,94 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Checks that a session gives the same corrections as moving a window of
+ * Strings over the text.
+ */
+public class CorrectionSessionTest extends TestCase {
+
+    private static final String[] text = {"the", "hause", "is", "smal", "and", "the", "gardn", "is", "gren", "qwertzuiopasdfghjklyxcvbnm", "the", "mouse"};
+    private StringTrie data;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = TestCorpus.house();
+    }
+
+    public void testSameAsWindow() {
+        Corrector corrector = new Corrector(data);
+        CorrectionSession session = new CorrectionSession(corrector);
+        String[] window = {"", "", ""};
+        for (String word : text) {
+            System.arraycopy(window, 1, window, 0, window.length - 1);
+            window[window.length - 1] = word;
+            assertEquals(format(corrector.correctWordInContext(window)), format(session.correctNext(word)));
+        }
+    }
+
+    public void testPushAndReset() {
+        Corrector corrector = new Corrector(data);
+        CorrectionSession session = new CorrectionSession(corrector);
+        session.push("the");
+        String inContext = format(session.correctNext("hause"));
+        assertEquals(format(corrector.correctWordInContext(new String[]{"", "the", "hause"})), inContext);
+
+        session.reset();
+        assertEquals(format(corrector.correctWordInContext(new String[]{"", "", "hause"})), format(session.correctNext("hause")));
+    }
+
+    public void testPushLongWord() throws IOException {
+        // Longer than the first buffer for the symbols of a word.
+        String longWord = "donaudampfschifffahrtsgesellschaftskapitaen";
+        Corrector corrector = new Corrector(TestCorpus.learn(3, 20, "the " + longWord + " is on the boat"));
+        CorrectionSession session = new CorrectionSession(corrector);
+        session.push(longWord);
+        assertEquals(format(corrector.correctWordInContext(new String[]{"", longWord, "is"})), format(session.correctNext("is")));
+    }
+
+    public void testResultBuffer() {
+        Corrector corrector = new Corrector(data);
+        CorrectionSession session = new CorrectionSession(corrector);
+        ResultBuffer result = new ResultBuffer(2);
+        String[] window = {"", "", ""};
+        for (String word : text) {
+            System.arraycopy(window, 1, window, 0, window.length - 1);
+            window[window.length - 1] = word;
+            session.correctNext(word, result);
+
+            StringBuilder expected = new StringBuilder();
+            int rank = 0;
+            for (Pair<String, Double> candidate : corrector.correctWordInContext(window)) {
+                if (rank < 2) {
+                    expected.append(candidate.left).append(' ').append(candidate.right).append(' ');
+                }
+                ++rank;
+            }
+            StringBuilder actual = new StringBuilder();
+            for (int i = 0; i < result.size(); i++) {
+                actual.append(result.getWord(i)).append(' ').append(result.getScore(i)).append(' ');
+            }
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(rank, result.getTotal());
+        }
+
+        assertEquals(1, corrector.correctWordInContext(new String[]{"the", "garden", "is"}, new ResultBuffer(1)));
+        result = new ResultBuffer(5);
+        corrector.correctWordInContext(new String[]{"the", "garden", "is"}, result);
+        assertTrue(result.isCorrect());
+        assertEquals(data.getWordID("is"), result.getBestWordID());
+        corrector.correctWordInContext(new String[]{"the", "garden", "iss"}, result);
+        assertFalse(result.isCorrect());
+    }
+
+    private static String format(Iterable<Pair<String, Double>> candidates) {
+        StringBuilder ret = new StringBuilder();
+        for (Pair<String, Double> candidate : candidates) {
+            ret.append(candidate.left).append(' ').append(candidate.right).append(' ');
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,278 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Checks the limits of a Corrector on a lexicon of random words.
+ */
+public class CorrectorTest extends TestCase {
+
+    private StringTrie data;
+
+    @Override
+    protected void setUp() throws Exception {
+        // Words of three to ten letters.
+        List<String> vocabulary = TestCorpus.randomWords(7, new String[]{"a", "b", "c", "d", "e", "f"}, 3, 10, 4000);
+        data = TestCorpus.random(7, 2, vocabulary, 200, 20);
+    }
+
+    public void testBudgetGivesPartialResult() {
+        String[] query = {"", "abcdefabcdef"};
+        Corrector unlimited = new Corrector(data);
+        int all = count(unlimited.correctWordInContext(query));
+        assertFalse(unlimited.isLastResultPartial());
+
+        Corrector limited = new Corrector(data);
+        limited.setBudget(SearchBudget.CHECK_INTERVAL, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        ResultBuffer result = new ResultBuffer(5);
+        limited.correctWordInContext(query, result);
+        assertTrue(limited.isLastResultPartial());
+        assertTrue(result.isPartial());
+        assertTrue(result.getTotal() < all);
+
+        // The limit does not apply to the next word.
+        limited.setBudget(Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        assertEquals(all, count(limited.correctWordInContext(query)));
+        assertFalse(limited.isLastResultPartial());
+    }
+
+    public void testBudgetInParallelSearch() {
+        String[] query = {"", "abcdefabcdef"};
+        Corrector serial = new Corrector(data);
+        Corrector parallel = new Corrector(data);
+        parallel.setParallelSearch(new ForkJoinPool(4));
+        for (Corrector corrector : new Corrector[]{serial, parallel}) {
+            corrector.setStatsEnabled(true);
+            corrector.setBudget(SearchBudget.CHECK_INTERVAL, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            corrector.correctWordInContext(query);
+            assertTrue(corrector.isLastResultPartial());
+        }
+        // Every task can overrun the budget by less than one interval.
+        assertTrue(parallel.getLastStats().getAgendaPops() <= serial.getLastStats().getAgendaPops() + 5 * SearchBudget.CHECK_INTERVAL);
+
+        // A deadline, that has passed, stops the search before it is split.
+        for (Corrector corrector : new Corrector[]{serial, parallel}) {
+            corrector.setBudget(Long.MAX_VALUE, 0, TimeUnit.MILLISECONDS);
+            corrector.correctWordInContext(query);
+            assertTrue(corrector.isLastResultPartial());
+        }
+        assertTrue(parallel.getLastStats().getAgendaPops() <= serial.getLastStats().getAgendaPops());
+    }
+
+    public void testParallelSearchSplitsLargeSubtriesOnly() throws IOException {
+        // The lexicon of the house corpus is too small for a task of its own.
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Corrector small = new Corrector(TestCorpus.house());
+        small.setParallelSearch(pool);
+        assertTrue(asList(small.correctWordInContext(new String[]{"", "the", "gardenhouse"})).size() > 0);
+        assertEquals(0, pool.getPoolSize());
+
+        String[] query = {"", "abcdefabcdef"};
+        Corrector large = new Corrector(data);
+        large.setParallelSearch(pool);
+        assertEquals(asList(new Corrector(data).correctWordInContext(query)), asList(large.correctWordInContext(query)));
+        assertTrue(pool.getPoolSize() > 0);
+    }
+
+    public void testPartialResultsAreNotCached() {
+        String[] query = {"", "abcdefabcdef"};
+        Corrector corrector = new Corrector(data);
+        corrector.setCache(new CorrectionCache(100, 100));
+        corrector.setBudget(Long.MAX_VALUE, 0, TimeUnit.MILLISECONDS);
+        corrector.correctWordInContext(query);
+        assertTrue(corrector.isLastResultPartial());
+
+        corrector.setBudget(Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        corrector.correctWordInContext(query);
+        assertFalse(corrector.isLastResultPartial());
+    }
+
+    public void testDeletionIndexFindsTheSameCandidates() {
+        Corrector search = new Corrector(data);
+        Corrector lookup = new Corrector(data);
+        // A short prefix, so that the lookup of prefixes is tested as well.
+        lookup.setDeletionIndex(new DeletionIndex(data.freeze(), 2, 4));
+        Random random = new Random(11);
+        for (int n = 0; n < 200; n++) {
+            int length = 1 + random.nextInt(10);
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(7)));
+            }
+            String[] query = {"", word.toString()};
+            assertEquals(word.toString(), asList(search.correctWordInContext(query)), asList(lookup.correctWordInContext(query)));
+        }
+    }
+
+    public void testAcceptRule() throws IOException {
+        Corrector corrector = new Corrector(TestCorpus.house());
+        // "house" is seen 40 times, "mouse" only 20 times.
+        corrector.setAcceptRule(new AcceptRule(30, Double.NEGATIVE_INFINITY));
+        corrector.setStatsEnabled(true);
+
+        List<String> accepted = asList(corrector.correctWordInContext(new String[]{"", "the", "house"}));
+        assertEquals(1, accepted.size());
+        assertTrue(accepted.get(0).startsWith("house "));
+        assertEquals(1, corrector.getLastStats().getAccepted());
+        assertEquals(0, corrector.getLastStats().getAgendaPops());
+
+        // A rare word is compared with its neighbours.
+        List<String> searched = asList(corrector.correctWordInContext(new String[]{"", "the", "mouse"}));
+        assertEquals(0, corrector.getLastStats().getAccepted());
+        assertTrue(corrector.getLastStats().getAgendaPops() > 0);
+        assertEquals(2, searched.size());
+        assertTrue(searched.get(0).startsWith("mouse ") || searched.get(1).startsWith("mouse "));
+        assertTrue(searched.get(0).startsWith("house ") || searched.get(1).startsWith("house "));
+
+        // An implausible context is not accepted either.
+        corrector.setAcceptRule(new AcceptRule(0, 0.0));
+        corrector.correctWordInContext(new String[]{"", "the", "house"});
+        assertEquals(0, corrector.getLastStats().getAccepted());
+    }
+
+    public void testAcceptRuleNeedsLanguageModel() throws IOException {
+        StringTrie house = TestCorpus.house();
+        // In the lexicon, but not in the language model.
+        house.put("hause");
+        Corrector corrector = new Corrector(house);
+        corrector.setAcceptRule(new AcceptRule(0, -10.0));
+        corrector.setStatsEnabled(true);
+
+        List<String> candidates = asList(corrector.correctWordInContext(new String[]{"", "the", "hause"}));
+        assertEquals(0, corrector.getLastStats().getAccepted());
+        assertTrue(corrector.getLastStats().getAgendaPops() > 0);
+        assertTrue(candidates.get(0).startsWith("house "));
+    }
+
+    public void testPruningKeepsResults() {
+        Corrector pruned = new Corrector(data);
+        Corrector unpruned = new Corrector(data);
+        unpruned.setPruning(false);
+        pruned.setStatsEnabled(true);
+        Random random = new Random(17);
+        List<String> words = new ArrayList<String>();
+        words.add("a");
+        words.add("fff");
+        words.add("abcdefabcdefabcdefabcdef");
+        for (int n = 0; n < 40; n++) {
+            // Very short and very long words, whose lengths differ most from the lexicon.
+            int length = (n % 2 == 0) ? 1 + random.nextInt(2) : 12 + random.nextInt(10);
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(7)));
+            }
+            words.add(word.toString());
+        }
+        for (String word : words) {
+            String[] query = {"", word};
+            assertEquals(word, asList(unpruned.correctWordInContext(query)), asList(pruned.correctWordInContext(query)));
+        }
+        assertTrue(pruned.getTotalStats().getPrunedSubtries() > 0);
+    }
+
+    public void testBatchGivesSameResults() {
+        Corrector single = new Corrector(data);
+        Corrector batch = new Corrector(data);
+        batch.setCache(new CorrectionCache(100, 100));
+        Random random = new Random(13);
+        List<String[]> contexts = new ArrayList<String[]>();
+        for (int n = 0; n < 100; n++) {
+            int length = random.nextInt(12);
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(7)));
+            }
+            contexts.add(new String[]{"", word.toString()});
+        }
+        contexts.add(new String[]{"", "abcdefabcdef"});
+        contexts.add(contexts.get(0)); // the same word twice
+
+        List<Iterable<Pair<String, Double>>> results = batch.correctBatch(contexts);
+        assertEquals(contexts.size(), results.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            List<String> expected = asList(single.correctWordInContext(contexts.get(i)));
+            assertEquals(contexts.get(i)[1], expected, asList(results.get(i)));
+            // The results of the batch are cached.
+            assertEquals(expected, asList(batch.correctWordInContext(contexts.get(i))));
+        }
+    }
+
+    public void testStats() {
+        String[] query = {"", "abcdefabcdef"};
+        Corrector corrector = new Corrector(data);
+        corrector.correctWordInContext(query);
+        assertNull(corrector.getLastStats());
+        assertNull(corrector.getTotalStats());
+
+        corrector.setStatsEnabled(true);
+        int found = count(corrector.correctWordInContext(query));
+        SearchStats stats = corrector.getLastStats();
+        assertEquals(1, stats.getQueries());
+        assertTrue(stats.getAgendaPops() > 0);
+        assertTrue(stats.getDistanceCells() >= stats.getDistanceCalls());
+        assertEquals(found, stats.getLanguageModelLookups());
+        assertEquals(found, stats.getCandidates(stats.getMaxThreshold()));
+        assertEquals(stats.getMaxThreshold() + 1, stats.getSearches(0) + stats.getSearches(1) + stats.getSearches(2)
+                + stats.getSearches(3) + stats.getSearches(4) + stats.getSearches(5));
+
+        // The parallel search does the same work.
+        corrector.setParallelSearch(new ForkJoinPool(4));
+        corrector.correctWordInContext(query);
+        assertEquals(stats.toString(), corrector.getLastStats().toString());
+        assertEquals(2, corrector.getTotalStats().getQueries());
+        assertEquals(2 * stats.getAgendaPops(), corrector.getTotalStats().getAgendaPops());
+    }
+
+    public void testMetrics() {
+        CorrectionMetrics metrics = new CorrectionMetrics();
+        Corrector corrector = new Corrector(data);
+        corrector.setCache(new CorrectionCache(100, 100));
+        corrector.setMetrics(metrics);
+        String[] query = {"", "abcdefabcdef"};
+        corrector.correctWordInContext(query);
+        corrector.correctWordInContext(query);
+        corrector.correctWordInContext(new String[]{"abcdef", "abcdefabcdef"});
+
+        assertEquals(3, metrics.getCorrections());
+        assertEquals(1, metrics.getResultCacheHits());
+        assertEquals(1, metrics.getCandidateCacheHits());
+        assertEquals(3, metrics.getLatencies(false).getCount());
+        assertEquals(0, metrics.getLatencies(true).getCount());
+        assertEquals(1, metrics.getLatencies(false, CorrectionMetrics.CACHED).getCount());
+        assertTrue(metrics.toText().contains("spellchecker_corrections_total 3\n"));
+
+        // A percentile is at most about 3% above the real value.
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(1000L * i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500000 && median <= 515625);
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+    }
+
+    private static List<String> asList(Iterable<Pair<String, Double>> candidates) {
+        List<String> ret = new ArrayList<String>();
+        for (Pair<String, Double> candidate : candidates) {
+            ret.add(candidate.left + " " + candidate.right);
+        }
+        return ret;
+    }
+
+    private static int count(Iterable<Pair<String, Double>> candidates) {
+        int ret = 0;
+        for (Pair<String, Double> candidate : candidates) {
+            ++ret;
+        }
+        return ret;
+    }
+}
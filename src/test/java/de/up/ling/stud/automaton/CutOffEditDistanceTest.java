@@ -0,0 +1,47 @@
+package de.up.ling.stud.automaton;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Checks that a calculator gives the same distance, no matter which words it
+ * has seen before.
+ */
+public class CutOffEditDistanceTest extends TestCase {
+
+    public void testNoMinimumOfAnEarlierCall() {
+        CutOffEditDistance calculator = new CutOffEditDistance(new EditDistance());
+        assertEquals(0, calculator.calcCutOffDistance(new int[]{1, 2, 3}, new int[]{1, 2, 3}, 1));
+        // Without a reset, the minimum of the call before (0) would be returned.
+        assertEquals(2, calculator.calcCutOffDistance(new int[]{1, 2, 3}, new int[]{4, 5}, 1));
+    }
+
+    public void testSameAsStringVersion() {
+        CutOffEditDistance reused = new CutOffEditDistance(new EditDistance());
+        CutOffEditDistance strings = new CutOffEditDistance(new EditDistance());
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            int[] word = randomWord(random, 1 + random.nextInt(8));
+            int[] candidate = randomWord(random, 1 + random.nextInt(8));
+            int threshold = random.nextInt(3);
+            assertEquals(strings.calcCutOffDistance(asString(word), asString(candidate), threshold),
+                    reused.calcCutOffDistance(word, candidate, threshold));
+        }
+    }
+
+    private static int[] randomWord(Random random, int length) {
+        int[] ret = new int[length];
+        for (int i = 0; i < length; i++) {
+            ret[i] = 1 + random.nextInt(4);
+        }
+        return ret;
+    }
+
+    private static String asString(int[] word) {
+        StringBuilder ret = new StringBuilder();
+        for (int symbol : word) {
+            ret.append((char) ('a' + symbol));
+        }
+        return ret.toString();
+    }
+}
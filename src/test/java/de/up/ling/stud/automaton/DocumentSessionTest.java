@@ -0,0 +1,108 @@
+package de.up.ling.stud.automaton;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Checks that a document, that is edited many times, has the same corrections
+ * as its text corrected from the beginning.
+ */
+public class DocumentSessionTest extends TestCase {
+
+    private static final String[] inserts = {"a", "e", " ", "\n", "hause ", "the ", ", ", "gardn", "", "\u00fc"};
+    private StringTrie data;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = TestCorpus.house();
+    }
+
+    public void testRandomEdits() {
+        Corrector corrector = new Corrector(data);
+        DocumentSession document = new DocumentSession(corrector, 3);
+        document.setText("the hause is smal,\nand the gardn is gren.");
+        assertSameAsText(document, corrector);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            int offset = random.nextInt(document.getText().length() + 1);
+            int deleteLength = random.nextInt(Math.min(4, document.getText().length() - offset) + 1);
+            document.edit(offset, deleteLength, inserts[random.nextInt(inserts.length)]);
+            assertSameAsText(document, corrector);
+        }
+    }
+
+    public void testWorkPerEdit() {
+        Corrector corrector = new Corrector(data);
+        DocumentSession document = new DocumentSession(corrector, 3);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("the mouse is in the hause\n");
+        }
+        assertEquals(1200, document.setText(text.toString()));
+
+        // A changed word is corrected with the next two words.
+        int offset = 100 * 26 + 20; // "hause" in the middle of the text
+        assertEquals(3, document.edit(offset + 1, 1, "o"));
+        assertEquals("house", document.getToken(document.indexAt(offset)));
+        assertEquals(document.indexAt(offset), document.getLastCorrectedFrom());
+        // White space between words changes nothing.
+        assertEquals(0, document.edit(offset + 6, 0, "   "));
+        // Neither edit has changed the number of tokens, so no token has been moved.
+        assertEquals(0, document.getMovedTokens());
+        // A new word changes the window of the next two words.
+        assertEquals(3, document.edit(offset, 0, "small "));
+        assertEquals("small", document.getToken(document.indexAt(offset)));
+        // Joining two words.
+        long moved = document.getMovedTokens();
+        assertEquals(3, document.edit(offset + 5, 1, ""));
+        assertEquals("smallhouse", document.getToken(document.indexAt(offset)));
+        assertSameAsText(document, corrector);
+
+        // Typing at the same place only moves the tokens next to it, not the rest of the document.
+        for (int i = 0; i < 20; i++) {
+            document.edit(offset, 0, (i % 2 == 0) ? "a" : " ");
+        }
+        assertTrue(document.getMovedTokens() - moved < 20 * 3);
+        assertSameAsText(document, corrector);
+    }
+
+    public void testLongWord() throws IOException {
+        // Longer than the first buffer for the symbols of a token.
+        String longWord = "donaudampfschifffahrtsgesellschaftskapitaen";
+        Corrector corrector = new Corrector(TestCorpus.learn(3, 20, "the " + longWord + " is on the boat"));
+        DocumentSession document = new DocumentSession(corrector, 3);
+        document.setText("the " + longWord + " is on the boat");
+        assertEquals(longWord, document.getToken(1));
+        assertTrue(document.getResult(1).isCorrect());
+        assertTrue(document.getResult(2).isCorrect());
+        assertSameAsText(document, corrector);
+    }
+
+    private static void assertSameAsText(DocumentSession document, Corrector corrector) {
+        List<String> words = new ArrayList<String>();
+        for (String word : document.getText().split("[^\\p{L}]")) {
+            if (word.length() > 0) {
+                words.add(word);
+            }
+        }
+        assertEquals(words.size(), document.size());
+        CorrectionSession session = new CorrectionSession(corrector);
+        ResultBuffer expected = new ResultBuffer(3);
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(words.get(i), document.getToken(i));
+            assertEquals(words.get(i), document.getText().substring(document.getStart(i), document.getEnd(i)));
+            assertEquals(i, document.indexAt(document.getStart(i)));
+            session.correctNext(words.get(i), expected);
+            ResultBuffer actual = document.getResult(i);
+            assertEquals(expected.size(), actual.size());
+            for (int rank = 0; rank < expected.size(); rank++) {
+                assertEquals(expected.getWordID(rank), actual.getWordID(rank));
+                assertEquals(expected.getScore(rank), actual.getScore(rank), 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.up.ling.stud.automaton;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Checks the order, the updates and the limit of an IndexedWordHeap.
+ */
+public class IndexedWordHeapTest extends TestCase {
+
+    public void testSortedWithTieBreak() {
+        IndexedWordHeap heap = new IndexedWordHeap(2);
+        heap.offer(7, 2.0);
+        heap.offer(3, 1.0);
+        heap.offer(5, 2.0);
+        heap.offer(1, 3.0);
+        heap.offer(4, 2.0);
+        assertRanking(heap.drain(), new int[]{3, 4, 5, 7, 1});
+        assertEquals(0, heap.size());
+    }
+
+    public void testDecreaseKey() {
+        IndexedWordHeap heap = new IndexedWordHeap(4);
+        heap.offer(1, 1.0);
+        heap.offer(2, 2.0);
+        heap.offer(3, 3.0);
+        assertFalse(heap.offer(1, 5.0)); // worse weights are ignored
+        assertTrue(heap.offer(3, 0.5));
+        assertEquals(3, heap.size());
+        RankedCandidates ranking = heap.drain();
+        assertRanking(ranking, new int[]{3, 1, 2});
+        assertEquals(0.5, ranking.getWeight(0));
+    }
+
+    public void testBoundedMatchesUnbounded() {
+        Random random = new Random(42);
+        IndexedWordHeap all = new IndexedWordHeap(16);
+        IndexedWordHeap best = new IndexedWordHeap(16, 10);
+        for (int i = 0; i < 1000; i++) {
+            int wordID = random.nextInt(200);
+            double weight = random.nextInt(50) / 10.0;
+            all.offer(wordID, weight);
+            best.offer(wordID, weight);
+        }
+        RankedCandidates expected = all.drain();
+        RankedCandidates actual = best.drain();
+        assertEquals(10, actual.size());
+        for (int rank = 0; rank < actual.size(); rank++) {
+            assertEquals(expected.getWordID(rank), actual.getWordID(rank));
+            assertEquals(expected.getWeight(rank), actual.getWeight(rank));
+        }
+    }
+
+    private static void assertRanking(RankedCandidates ranking, int[] expected) {
+        assertEquals(expected.length, ranking.size());
+        for (int rank = 0; rank < expected.length; rank++) {
+            assertEquals(expected[rank], ranking.getWordID(rank));
+        }
+    }
+}
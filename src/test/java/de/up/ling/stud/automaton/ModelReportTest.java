@@ -0,0 +1,60 @@
+package de.up.ling.stud.automaton;
+
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/**
+ * Checks the counts of a ModelReport and its projection to larger corpora.
+ */
+public class ModelReportTest extends TestCase {
+
+    public void testCounts() throws IOException {
+        ModelReport report = TestCorpus.house().report();
+        assertEquals(3, report.getNGram());
+        assertEquals(9, report.getWords());
+        assertEquals(300, report.getTokens());
+        assertEquals(9, report.getNGrams(1));
+        assertEquals(9, report.getLexicon().getFinalNodes());
+        assertEquals(report.getLexicon().getNodes() - 1, report.getLexicon().getEdges());
+        long nodes = 1;
+        for (int order = 1; order <= 3; order++) {
+            nodes += report.getNGrams(order);
+        }
+        assertEquals(nodes, report.getLanguageModel().getNodes());
+        assertTrue(report.getCompactBytes() < report.getEstimatedBytes());
+    }
+
+    public void testProjectionOfTheSameSize() throws IOException {
+        ModelReport report = randomReport();
+        ModelReport.Projection projection = report.project(report.getTokens());
+        for (int order = 1; order <= report.getNGram(); order++) {
+            assertEquals(report.getNGrams(order), projection.getNGrams(order));
+        }
+        assertEquals(report.getWords(), projection.getWords());
+        assertEquals(report.getLexicon().getNodes(), projection.getLexiconNodes());
+        assertEquals(report.getLanguageModel().getNodes(), projection.getModelNodes());
+        assertEquals(report.getEstimatedBytes(), projection.getEstimatedBytes());
+        assertEquals(report.getCompactBytes(), projection.getCompactBytes());
+    }
+
+    public void testProjectionGrowsWithTheCorpus() throws IOException {
+        ModelReport report = randomReport();
+        ModelReport.Projection previous = report.project(report.getTokens());
+        for (long tokens = 10 * report.getTokens(); tokens <= 100000000L; tokens *= 10) {
+            ModelReport.Projection projection = report.project(tokens);
+            for (int order = 1; order <= report.getNGram(); order++) {
+                assertTrue(projection.getNGrams(order) >= previous.getNGrams(order));
+            }
+            // Words, that are seen once, make the model grow.
+            assertTrue(projection.getEstimatedBytes() > previous.getEstimatedBytes());
+            assertTrue(projection.getCompactBytes() > previous.getCompactBytes());
+            assertTrue(projection.getCompactBytes() < projection.getEstimatedBytes());
+            previous = projection;
+        }
+    }
+
+    // A model with many n-grams, that have been seen once.
+    private static ModelReport randomReport() throws IOException {
+        return TestCorpus.random(5, 3, TestCorpus.randomWords(5, TestCorpus.SYLLABLES, 1, 3, 300), 100, 8).report();
+    }
+}
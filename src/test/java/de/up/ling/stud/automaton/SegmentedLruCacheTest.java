@@ -0,0 +1,32 @@
+package de.up.ling.stud.automaton;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the eviction order and the statistics of the cache.
+ */
+public class SegmentedLruCacheTest extends TestCase {
+
+    public void testHitsAndMisses() {
+        SegmentedLruCache<String, Integer> cache = new SegmentedLruCache<String, Integer>(10);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testFrequentEntriesSurviveAScan() {
+        SegmentedLruCache<String, Integer> cache = new SegmentedLruCache<String, Integer>(10);
+        cache.put("frequent", 0);
+        cache.get("frequent"); // promoted to the protected part
+        for (int i = 0; i < 100; i++) {
+            cache.put("once" + i, i);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(Integer.valueOf(0), cache.get("frequent"));
+        assertNull(cache.get("once0"));
+        assertEquals(91, cache.getEvictions());
+    }
+}
@@ -0,0 +1,107 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+/**
+ * Compares the results of sharded models with those of a single corrector.
+ */
+public class ShardedCorrectorTest extends TestCase {
+
+    private StringTrie data;
+    private Corrector corrector;
+    private ExecutorService pool;
+    private List<String[]> queries;
+
+    @Override
+    protected void setUp() throws Exception {
+        List<String> vocabulary = TestCorpus.randomWords(7, TestCorpus.SYLLABLES, 1, 3, 150);
+        data = TestCorpus.random(7, 3, vocabulary, 300, 8);
+        corrector = new Corrector(data);
+        pool = Executors.newFixedThreadPool(4);
+
+        // Misspell some words by changing, adding or removing a character.
+        Random random = new Random(7);
+        queries = new ArrayList<String[]>();
+        for (int i = 0; i < 40; i++) {
+            String word = vocabulary.get(random.nextInt(vocabulary.size()));
+            int position = random.nextInt(word.length());
+            switch (i % 4) {
+                case 0:
+                    word = word.substring(0, position) + "x" + word.substring(position + 1);
+                    break;
+                case 1:
+                    word = word.substring(0, position) + "e" + word.substring(position);
+                    break;
+                case 2:
+                    word = word.substring(0, position) + word.substring(position + 1);
+                    break;
+                default:
+                    break; // a known word
+            }
+            String previous = vocabulary.get(random.nextInt(vocabulary.size()));
+            queries.add(i % 5 == 0 ? new String[]{word} : new String[]{"", previous, word});
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    public void testLocalShards() throws IOException {
+        for (ShardPartition partition : new ShardPartition[]{ShardPartition.byHash(1), ShardPartition.byHash(3),
+            ShardPartition.byFirstCharacter(4)}) {
+            ShardedCorrector sharded = ShardedCorrector.split(data, partition, pool);
+            for (String[] query : queries) {
+                assertSameResults(query, corrector.correctWordInContext(query), sharded.correctWordInContext(query, 5));
+            }
+        }
+    }
+
+    public void testRemoteShards() throws IOException {
+        ShardPartition partition = ShardPartition.byHash(2);
+        List<CorrectionServer> servers = new ArrayList<CorrectionServer>();
+        List<CorrectorShard> shards = new ArrayList<CorrectorShard>();
+        for (int shard = 0; shard < partition.getShards(); shard++) {
+            // A shard file must give the same probabilities as the shard in memory.
+            File file = File.createTempFile("shard", ".spell");
+            file.deleteOnExit();
+            data.extractShard(partition, shard).saveToFile(file.getPath(), "UTF-8");
+            CorrectionServer server = new CorrectionServer(new StringTrie(file.getPath(), "UTF-8"), 0, 4);
+            server.start();
+            servers.add(server);
+            shards.add(new RemoteShard(server.getPort(), 4));
+        }
+        ShardedCorrector sharded = new ShardedCorrector(shards, partition, pool);
+        try {
+            for (String[] query : queries) {
+                assertSameResults(query, corrector.correctWordInContext(query), sharded.correctWordInContext(query, 5));
+            }
+        } finally {
+            sharded.close();
+            for (CorrectionServer server : servers) {
+                server.shutdown(1000);
+            }
+        }
+    }
+
+    private static void assertSameResults(String[] query, Iterable<Pair<String, Double>> expected, List<Pair<String, Double>> actual) {
+        Iterator<Pair<String, Double>> expectedIt = expected.iterator();
+        for (Pair<String, Double> candidate : actual) {
+            assertTrue(expectedIt.hasNext());
+            Pair<String, Double> expectedCandidate = expectedIt.next();
+            assertEquals(query[query.length - 1], expectedCandidate.left, candidate.left);
+            assertEquals(expectedCandidate.right, candidate.right, 1e-12);
+        }
+        assertTrue(actual.size() == 5 || !expectedIt.hasNext());
+    }
+}
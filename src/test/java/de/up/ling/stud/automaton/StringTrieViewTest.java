@@ -0,0 +1,100 @@
+package de.up.ling.stud.automaton;
+
+import de.saar.basic.Pair;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Checks that queries on a frozen StringTrie never change it and that many
+ * threads can query it at once.
+ */
+public class StringTrieViewTest extends TestCase {
+
+    private static final String[][] queries = {
+        {"the", "hause"},
+        {"zzz", "garden"},
+        {"the", "gardn"},
+        {"qwertz", "mause"},
+        {"", "smal"},
+        {"is", "qwertz"}
+    };
+    private StringTrie data;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = TestCorpus.house();
+    }
+
+    public void testLookupsDoNotChangeTheLexicon() {
+        StringTrieView view = data.freeze();
+        assertEquals(StringTrie.UNKNOWN_WORD_ID, view.getWordID("zzz"));
+        assertEquals(StringTrie.UNKNOWN_WORD_ID, view.getWordID("hous"));
+        assertEquals(StringTrie.DELIMITER_ID, view.getWordID(""));
+        assertTrue(view.getWordID("house") > 0);
+
+        Corrector corrector = new Corrector(view);
+        for (String[] query : queries) {
+            corrector.correctWordInContext(query);
+        }
+        assertFalse(view.contains("zzz"));
+        assertFalse(view.contains("qwertz"));
+        assertFalse(view.contains(""));
+        assertEquals(StringTrie.UNKNOWN_WORD_ID, data.getWordID("qwertz"));
+    }
+
+    public void testFrozenTrieCanNotBeChanged() {
+        data.freeze();
+        assertTrue(data.isFrozen());
+        assertSame(data.freeze(), data.freeze());
+        try {
+            data.put("zzz");
+            fail("put must fail on a frozen trie");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testConcurrentReaders() throws Exception {
+        final StringTrieView view = data.freeze();
+        final List<String> expected = new ArrayList<String>();
+        Corrector corrector = new Corrector(view);
+        for (String[] query : queries) {
+            expected.add(format(corrector.correctWordInContext(query)));
+        }
+
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    Corrector corrector = new Corrector(view);
+                    for (int i = 0; i < 50; i++) {
+                        for (int q = 0; q < queries.length; q++) {
+                            if (!expected.get(q).equals(format(corrector.correctWordInContext(queries[q])))) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            };
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
+    private static String format(Iterable<Pair<String, Double>> candidates) {
+        StringBuilder ret = new StringBuilder();
+        for (Pair<String, Double> candidate : candidates) {
+            ret.append(candidate.left).append(' ').append(candidate.right).append(' ');
+        }
+        return ret.toString();
+    }
+}
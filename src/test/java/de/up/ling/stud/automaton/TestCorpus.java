@@ -0,0 +1,119 @@
+package de.up.ling.stud.automaton;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Small corpora for the tests, that are written to temporary files.
+ */
+final class TestCorpus {
+
+    // The corpus most tests use, repeated 20 times.
+    static final String[] HOUSE = {"the house is small and the garden is green", "the mouse is in the house"};
+    // Syllables for words, that share many prefixes.
+    static final String[] SYLLABLES = {"ha", "us", "ma", "ten", "gar", "del", "ro", "ki", "sel", "bu", "ne", "lo"};
+
+    private TestCorpus() {
+    }
+
+    /**
+     * Writes the lines to a temporary file, that is deleted on exit.
+     *
+     * @param repeat How often all lines are written.
+     * @param lines
+     * @return The file.
+     * @throws IOException
+     */
+    static File write(int repeat, String... lines) throws IOException {
+        File corpus = File.createTempFile("corpus", ".txt");
+        corpus.deleteOnExit();
+        Writer out = new OutputStreamWriter(new FileOutputStream(corpus), "UTF-8");
+        for (int i = 0; i < repeat; i++) {
+            for (String line : lines) {
+                out.write(line + "\n");
+            }
+        }
+        out.close();
+        return corpus;
+    }
+
+    /**
+     * Learns a trie from the lines.
+     *
+     * @param nGram
+     * @param repeat How often all lines are learned.
+     * @param lines
+     * @return The trie.
+     * @throws IOException
+     */
+    static StringTrie learn(int nGram, int repeat, String... lines) throws IOException {
+        StringTrie data = new StringTrie(nGram);
+        data.putFile(write(repeat, lines).getPath(), "UTF-8");
+        return data;
+    }
+
+    /**
+     * Creates random words. A word may occur more than once.
+     *
+     * @param seed
+     * @param syllables
+     * @param minSyllables
+     * @param maxSyllables
+     * @param count Number of words.
+     * @return The words.
+     */
+    static List<String> randomWords(long seed, String[] syllables, int minSyllables, int maxSyllables, int count) {
+        Random random = new Random(seed);
+        List<String> ret = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int s = minSyllables + random.nextInt(maxSyllables - minSyllables + 1); s > 0; s--) {
+                word.append(syllables[random.nextInt(syllables.length)]);
+            }
+            ret.add(word.toString());
+        }
+        return ret;
+    }
+
+    /**
+     * Learns a trie from lines of random words of a vocabulary. The
+     * first words of the vocabulary are preferred, so that the frequencies
+     * differ. Not every word has to occur.
+     *
+     * @param seed
+     * @param nGram
+     * @param vocabulary
+     * @param lines Number of lines.
+     * @param wordsPerLine
+     * @return The trie.
+     * @throws IOException
+     */
+    static StringTrie random(long seed, int nGram, List<String> vocabulary, int lines, int wordsPerLine) throws IOException {
+        Random random = new Random(seed);
+        String[] text = new String[lines];
+        for (int line = 0; line < lines; line++) {
+            StringBuilder words = new StringBuilder();
+            for (int i = 0; i < wordsPerLine; i++) {
+                words.append(vocabulary.get(random.nextInt(1 + random.nextInt(vocabulary.size())))).append(' ');
+            }
+            text[line] = words.toString();
+        }
+        return learn(nGram, 1, text);
+    }
+
+    /**
+     * Learns a trigram trie from the house corpus.
+     *
+     * @return The trie.
+     * @throws IOException
+     */
+    static StringTrie house() throws IOException {
+        return learn(3, 20, HOUSE);
+    }
+}